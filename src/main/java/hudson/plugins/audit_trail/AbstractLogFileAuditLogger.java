@@ -2,34 +2,67 @@ package hudson.plugins.audit_trail;
 
 import static java.util.logging.Level.CONFIG;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.EnvVars;
 import hudson.Util;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.NoSuchFileException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.logging.FileHandler;
 import java.util.logging.Formatter;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
+import org.kohsuke.stapler.DataBoundSetter;
 
 public abstract class AbstractLogFileAuditLogger extends AuditLogger {
 
     private static final Logger LOGGER = Logger.getLogger(AbstractLogFileAuditLogger.class.getName());
     static final String DEFAULT_LOG_SEPARATOR = " ";
+    static final TimestampRenderer LINE_TIMESTAMPS = TimestampRenderer.of("MMM d, yyyy h:mm:ss,SSS aa");
+    static final long DEFAULT_DURABILITY_INTERVAL = 1000;
+    static final int DEFAULT_DURABILITY_EVENTS = 100;
+    static final String DEFAULT_DURABLE_EVENT_TYPES = AuditEvent.Type.SCRIPT_EXECUTION.name();
+    static final int DEFAULT_COMPRESSION_THREADS = 1;
+    static final int DEFAULT_INDEX_EVENTS = AuditLogIndex.DEFAULT_EVENTS;
+    static final int DEFAULT_INDEX_SIZE = (int) (AuditLogIndex.DEFAULT_BYTES / 1024);
 
     @NonNull
     private String logSeparator;
 
     private String log;
     private int count = 1;
+    private boolean groupCommit;
+    private boolean memoryMapped;
+    private Durability durability = Durability.NONE;
+    private long durabilityInterval = DEFAULT_DURABILITY_INTERVAL;
+    private int durabilityEvents = DEFAULT_DURABILITY_EVENTS;
+    private String durableEventTypes = DEFAULT_DURABLE_EVENT_TYPES;
+    private Compression compression = Compression.NONE;
+    private int compressionThreads = DEFAULT_COMPRESSION_THREADS;
+    private LogFormat format = LogFormat.TEXT;
+    private boolean indexed;
+    private int indexEvents = DEFAULT_INDEX_EVENTS;
+    private int indexSize = DEFAULT_INDEX_SIZE;
 
     private transient FileHandler handler;
+    private transient AuditLogOutput writer;
+    private transient Set<AuditEvent.Type> durableTypes;
+    private transient AuditLogOutput.SyncStatistics syncStatistics;
+    private transient AuditLogCompressor compressor;
+    private transient AuditLogCompressor.Statistics compressionStatistics;
+    private transient volatile boolean settingsChanged;
+    // guarded by this
+    private transient boolean closed;
 
     public AbstractLogFileAuditLogger(String log, int count, String logSeparator) {
         this.log = Util.replaceMacro(log, EnvVars.masterEnvVars);
@@ -44,10 +77,51 @@ public abstract class AbstractLogFileAuditLogger extends AuditLogger {
         if (logSeparator == null) {
             logSeparator = DEFAULT_LOG_SEPARATOR;
         }
+        if (durability == null) {
+            durability = Durability.NONE;
+            durabilityInterval = DEFAULT_DURABILITY_INTERVAL;
+            durabilityEvents = DEFAULT_DURABILITY_EVENTS;
+            durableEventTypes = DEFAULT_DURABLE_EVENT_TYPES;
+        }
+        if (compression == null) {
+            compression = Compression.NONE;
+            compressionThreads = DEFAULT_COMPRESSION_THREADS;
+        }
+        if (format == null) {
+            format = LogFormat.TEXT;
+        }
         return this;
     }
 
+    /**
+     * The {@link FileHandler} having no way to force its file to the disk, an {@link AuditLogOutput} is also used as
+     * soon as a {@link Durability} is selected. Likewise, the generations of a {@link FileHandler} are rotated without
+     * notice, so they can only be compressed by an {@link AuditLogOutput}. JSON Lines are written without the
+     * {@link FileHandler} formatting as well, and only an {@link AuditLogOutput} knows the offset of the lines to
+     * index.
+     */
+    final boolean usesWriter() {
+        return groupCommit
+                || memoryMapped
+                || getDurability() != Durability.NONE
+                || getCompression() != Compression.NONE
+                || getFormat() != LogFormat.TEXT
+                || indexed
+                || requiresWriter();
+    }
+
+    /**
+     * @return whether subclasses need an {@link AuditLogOutput}, for instance to know the size of the current file
+     */
+    boolean requiresWriter() {
+        return false;
+    }
+
     final void configure() {
+        if (usesWriter()) {
+            configureWriter();
+            return;
+        }
         // looks like https://bugs.java.com/bugdatabase/view_bug.do?bug_id=6244047 is somehow still there
         // there is no way for us to know before hand what path we are looking to create as it would
         // mean having access to FileHandler#generate so either reflexion or catching the exception and retrieving
@@ -66,14 +140,14 @@ public abstract class AbstractLogFileAuditLogger extends AuditLogger {
             }
             if (h != null) {
                 h.setFormatter(new Formatter() {
-                    SimpleDateFormat dateFormat = new SimpleDateFormat("MMM d, yyyy h:mm:ss,SSS aa");
-
                     @Override
-                    public synchronized String format(LogRecord record) {
-                        return dateFormat.format(new Date(record.getMillis()))
-                                + getLogSeparator()
-                                + record.getMessage()
-                                + '\n';
+                    public String format(LogRecord record) {
+                        return LINE_TIMESTAMPS
+                                .appendTo(new StringBuilder(64 + record.getMessage().length()), record.getMillis())
+                                .append(getLogSeparator())
+                                .append(record.getMessage())
+                                .append('\n')
+                                .toString();
                     }
                 });
                 h.setLevel(CONFIG);
@@ -87,21 +161,277 @@ public abstract class AbstractLogFileAuditLogger extends AuditLogger {
         }
     }
 
+    private void configureWriter() {
+        try {
+            writer = getLogFileWriter();
+            applyDurability();
+            applyIndex();
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't configure the plugin, you should report this issue", ex);
+        }
+    }
+
+    private void applyDurability() {
+        durableTypes = parseEventTypes(getDurableEventTypes());
+        AuditLogOutput w = writer;
+        if (w != null) {
+            w.setDurability(getDurability(), getDurabilityInterval(), getDurabilityEvents());
+        }
+    }
+
+    private void applyIndex() {
+        AuditLogOutput w = writer;
+        if (w != null) {
+            w.setIndex(getIndexSettings());
+        }
+    }
+
+    @CheckForNull
+    private AuditLogIndex.Settings getIndexSettings() {
+        return indexed
+                ? new AuditLogIndex.Settings(getIndexEvents(), getIndexSize() * 1024L, getTimestampParser())
+                : null;
+    }
+
+    private AuditLogIndex.TimestampParser getTimestampParser() {
+        return AuditLogIndex.parserOf(getFormat(), LINE_TIMESTAMPS.getPattern());
+    }
+
+    /**
+     * Reads the lines of the events of a time range from one of the files of this logger, seeking to the start of the
+     * range with the index of the file if there is one.
+     *
+     * @param logFile a file written by this logger, which may have been compressed since
+     * @param from the start of the range, in milliseconds since the epoch, included
+     * @param to the end of the range, in milliseconds since the epoch, included
+     * @param lines receives the lines of the events of the range, in the order they were written
+     */
+    public void readEvents(@NonNull File logFile, long from, long to, @NonNull Consumer<String> lines)
+            throws IOException {
+        AuditLogIndex.read(logFile.toPath(), from, to, getTimestampParser(), lines);
+    }
+
+    static Set<AuditEvent.Type> parseEventTypes(String types) {
+        Set<AuditEvent.Type> parsed = EnumSet.noneOf(AuditEvent.Type.class);
+        for (String type : Util.fixNull(types).split("[,\\s]+")) {
+            if (type.isEmpty()) {
+                continue;
+            }
+            try {
+                parsed.add(AuditEvent.Type.valueOf(type.toUpperCase(Locale.ENGLISH)));
+            } catch (IllegalArgumentException ex) {
+                LOGGER.log(Level.WARNING, "Ignoring the unknown audit event type {0}", type);
+            }
+        }
+        return Collections.unmodifiableSet(parsed);
+    }
+
+    /**
+     * Closes the current log file, {@link #configure()} opening the next one.
+     */
+    final void closeOutput() {
+        if (handler != null) {
+            handler.close();
+            handler = null;
+        }
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't close the audit log file", ex);
+            }
+            writer = null;
+        }
+    }
+
+    /**
+     * Called before each line is logged, so that subclasses can switch to another file.
+     */
+    void rotateIfNeeded() {
+        // default does nothing
+    }
+
     @Override
     public void log(String event) {
-        if (handler == null) return;
-        handler.publish(new LogRecord(CONFIG, event));
+        applySettings();
+        rotateIfNeeded();
+        // the output may be closed concurrently, when rotated on schedule or reconfigured
+        synchronized (this) {
+            AuditLogOutput w = writer;
+            if (w != null) {
+                try {
+                    long timestamp = System.currentTimeMillis();
+                    if (getFormat() == LogFormat.JSON_LINES) {
+                        StringBuilder line = jsonLinePrefix(timestamp);
+                        AuditEventJson.appendString(line.append("\"message\":"), event).append('}');
+                        w.appendLine(timestamp, "", line);
+                    } else {
+                        w.appendLine(timestamp, linePrefix(timestamp), event);
+                    }
+                    // called directly by scripts and other plugins, which don't end batches as the event bus does
+                    w.flush();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Couldn't write to the audit log file", ex);
+                }
+                return;
+            }
+            if (handler == null) return;
+            handler.publish(new LogRecord(CONFIG, event));
+        }
+    }
+
+    /**
+     * Writes the encoding shared by every logger when the group commit is enabled, instead of encoding the message
+     * again. JSON Lines share the JSON document sent to Elastic Search, the time in milliseconds being inserted first.
+     */
+    @Override
+    public void log(AuditEvent event) {
+        applySettings();
+        if (!usesWriter()) {
+            super.log(event);
+            return;
+        }
+        rotateIfNeeded();
+        try {
+            // synced under the same lock, so that the file appended to is not rotated or closed before it is synced
+            synchronized (this) {
+                AuditLogOutput w = writer;
+                if (w == null) return;
+                if (getFormat() == LogFormat.JSON_LINES) {
+                    ByteBuffer json = event.getJsonBytes();
+                    // skips the opening brace, written by the prefix
+                    json.position(json.position() + 1);
+                    w.appendLine(event.getTimestamp(), jsonLinePrefix(event.getTimestamp()), json);
+                } else {
+                    w.appendLine(event.getTimestamp(), linePrefix(event.getTimestamp()), event.getMessageBytes());
+                }
+                Set<AuditEvent.Type> types = durableTypes;
+                if (getDurability() == Durability.PER_EVENT_TYPE && types != null && types.contains(event.getType())) {
+                    w.sync();
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't write to the audit log file", ex);
+        }
+    }
+
+    private CharSequence linePrefix(long timestamp) {
+        return LINE_TIMESTAMPS.appendTo(new StringBuilder(48), timestamp).append(getLogSeparator());
+    }
+
+    /**
+     * @return the opening of a JSON Lines document, up to its first field included and a comma
+     */
+    private static StringBuilder jsonLinePrefix(long timestamp) {
+        return new StringBuilder(32).append("{\"timestamp\":").append(timestamp).append(',');
+    }
+
+    /**
+     * Writes the lines buffered since the end of the previous batch, in a single write.
+     */
+    @Override
+    public synchronized void flush() {
+        AuditLogOutput w = writer;
+        if (w != null) {
+            try {
+                w.flush();
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't write to the audit log file", ex);
+            }
+        }
+    }
+
+    /**
+     * @return the size of the current file, {@code 0} if it is written by the {@link FileHandler}
+     */
+    final long getOutputLength() {
+        AuditLogOutput w = writer;
+        return w != null ? w.length() : 0;
     }
 
+    /**
+     * Closes the output for good, the tasks still scheduled for this logger checking {@link #isClosed()}.
+     */
     @Override
     public void cleanUp() throws SecurityException {
-        if (handler != null) {
-            handler.close();
+        synchronized (this) {
+            closed = true;
+            closeOutput();
+            if (compressor != null) {
+                compressor.shutdown();
+                compressor = null;
+            }
         }
     }
 
+    /**
+     * @return whether this logger was cleaned up, which must be checked holding its lock before reopening its output
+     */
+    final synchronized boolean isClosed() {
+        return closed;
+    }
+
     abstract FileHandler getLogFileHandler() throws IOException;
 
+    abstract AuditLogOutput getLogFileWriter() throws IOException;
+
+    /**
+     * @param limit the size in bytes after which files are rotated, {@code 0} for no limit
+     */
+    final AuditLogOutput openOutput(String pattern, long limit, int count) throws IOException {
+        AuditLogOutput output = memoryMapped
+                ? new AuditLogSegmentWriter(pattern, limit, count, getSyncStatistics())
+                : new AuditLogFileWriter(pattern, limit, count, getSyncStatistics());
+        output.setCompressor(getCompressor());
+        output.setIndex(getIndexSettings());
+        return output;
+    }
+
+    final AuditLogOutput.SyncStatistics getSyncStatistics() {
+        if (syncStatistics == null) {
+            syncStatistics = new AuditLogOutput.SyncStatistics();
+        }
+        return syncStatistics;
+    }
+
+    /**
+     * @return the compressor of the rotated files, {@code null} if they are kept as they are
+     */
+    @CheckForNull
+    final synchronized AuditLogCompressor getCompressor() {
+        if (compressor == null && getCompression() != Compression.NONE) {
+            compressor = new AuditLogCompressor(getCompression(), getCompressionThreads(), getCompressionStatistics());
+        }
+        return compressor;
+    }
+
+    final AuditLogCompressor.Statistics getCompressionStatistics() {
+        if (compressionStatistics == null) {
+            compressionStatistics = new AuditLogCompressor.Statistics();
+        }
+        return compressionStatistics;
+    }
+
+    /**
+     * Replaces the compressor once its settings changed, the pending compressions completing in the background.
+     */
+    private synchronized void replaceCompressor() {
+        if (compressor != null) {
+            compressor.shutdown();
+            compressor = null;
+        }
+        if (writer != null) {
+            writer.setCompressor(getCompressor());
+        }
+    }
+
+    /**
+     * Called once the compression settings changed, so that subclasses can compress the files they rotated before.
+     */
+    void compressionChanged() {
+        // default does nothing
+    }
+
     @NonNull
     public String getLogSeparator() {
         return logSeparator;
@@ -115,6 +445,253 @@ public abstract class AbstractLogFileAuditLogger extends AuditLogger {
         return count;
     }
 
+    public boolean isGroupCommit() {
+        return groupCommit;
+    }
+
+    /**
+     * Replaces the {@link FileHandler}, which writes and flushes every line on its own, by an
+     * {@link AuditLogFileWriter} only writing when the delivery queue of this logger is drained.
+     */
+    @DataBoundSetter
+    public void setGroupCommit(boolean groupCommit) {
+        this.groupCommit = groupCommit;
+        settingsChanged();
+    }
+
+    /**
+     * Called by the setters, which only record the new value: the output is reopened once, with every setting bound,
+     * before the next line is written.
+     */
+    final void settingsChanged() {
+        settingsChanged = true;
+    }
+
+    /**
+     * Reopens the output if a setting changed since it was opened, replacing the compressor only if the compression
+     * settings changed so that the pending compressions aren't started again.
+     */
+    final void applySettings() {
+        if (!settingsChanged) {
+            return;
+        }
+        synchronized (this) {
+            if (!settingsChanged) {
+                return;
+            }
+            settingsChanged = false;
+            boolean compressionChanged = compressor != null
+                    ? !compressor.compresses(getCompression(), getCompressionThreads())
+                    : getCompression() != Compression.NONE;
+            if (compressionChanged) {
+                replaceCompressor();
+            }
+            reopenOutput();
+            if (compressionChanged) {
+                compressionChanged();
+            }
+        }
+    }
+
+    /**
+     * Closes the output and opens it again with the current settings.
+     */
+    void reopenOutput() {
+        closeOutput();
+        configure();
+    }
+
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Writes the file through an {@link AuditLogSegmentWriter} rather than an {@link AuditLogFileWriter}.
+     */
+    @DataBoundSetter
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+        settingsChanged();
+    }
+
+    @NonNull
+    public Durability getDurability() {
+        return durability != null ? durability : Durability.NONE;
+    }
+
+    @DataBoundSetter
+    public void setDurability(Durability durability) {
+        this.durability = durability != null ? durability : Durability.NONE;
+        settingsChanged();
+    }
+
+    /**
+     * @return the time between two syncs with {@link Durability#INTERVAL}, in milliseconds
+     */
+    public long getDurabilityInterval() {
+        return durabilityInterval > 0 ? durabilityInterval : DEFAULT_DURABILITY_INTERVAL;
+    }
+
+    @DataBoundSetter
+    public void setDurabilityInterval(long durabilityInterval) {
+        this.durabilityInterval = durabilityInterval;
+        settingsChanged();
+    }
+
+    /**
+     * @return the number of events between two syncs with {@link Durability#EVERY_N_EVENTS}
+     */
+    public int getDurabilityEvents() {
+        return durabilityEvents > 0 ? durabilityEvents : DEFAULT_DURABILITY_EVENTS;
+    }
+
+    @DataBoundSetter
+    public void setDurabilityEvents(int durabilityEvents) {
+        this.durabilityEvents = durabilityEvents;
+        settingsChanged();
+    }
+
+    /**
+     * @return the comma separated {@link AuditEvent.Type}s synced on every event with
+     *     {@link Durability#PER_EVENT_TYPE}
+     */
+    public String getDurableEventTypes() {
+        return durableEventTypes != null ? durableEventTypes : DEFAULT_DURABLE_EVENT_TYPES;
+    }
+
+    @DataBoundSetter
+    public void setDurableEventTypes(String durableEventTypes) {
+        this.durableEventTypes = Util.fixNull(durableEventTypes).trim();
+        settingsChanged();
+    }
+
+    /**
+     * @return the number of times the log file was forced to the storage device
+     */
+    public long getSyncCount() {
+        return getSyncStatistics().getCount();
+    }
+
+    /**
+     * @return the mean duration of a sync, in nanoseconds
+     */
+    public long getAverageSyncNanos() {
+        return getSyncStatistics().getAverageNanos();
+    }
+
+    /**
+     * @return the longest duration of a sync, in nanoseconds
+     */
+    public long getMaxSyncNanos() {
+        return getSyncStatistics().getMaxNanos();
+    }
+
+    /**
+     * @return the duration of the last sync, in nanoseconds
+     */
+    public long getLastSyncNanos() {
+        return getSyncStatistics().getLastNanos();
+    }
+
+    @NonNull
+    public Compression getCompression() {
+        return compression != null ? compression : Compression.NONE;
+    }
+
+    @DataBoundSetter
+    public void setCompression(Compression compression) {
+        this.compression = compression != null ? compression : Compression.NONE;
+        settingsChanged();
+    }
+
+    /**
+     * @return the number of rotated files compressed in parallel
+     */
+    public int getCompressionThreads() {
+        return compressionThreads > 0 ? compressionThreads : DEFAULT_COMPRESSION_THREADS;
+    }
+
+    @DataBoundSetter
+    public void setCompressionThreads(int compressionThreads) {
+        this.compressionThreads = compressionThreads;
+        settingsChanged();
+    }
+
+    /**
+     * @return the number of rotated files compressed
+     */
+    public long getCompressedFileCount() {
+        return getCompressionStatistics().getFiles();
+    }
+
+    /**
+     * @return the size of the compressed files relative to the original ones, {@code 1} if nothing was compressed
+     */
+    public double getCompressionRatio() {
+        return getCompressionStatistics().getRatio();
+    }
+
+    /**
+     * @return the number of bytes of rotated files compressed per second
+     */
+    public long getCompressionThroughput() {
+        return getCompressionStatistics().getThroughput();
+    }
+
+    @NonNull
+    public LogFormat getFormat() {
+        return format != null ? format : LogFormat.TEXT;
+    }
+
+    /**
+     * With {@link LogFormat#JSON_LINES}, the separator is ignored.
+     */
+    @DataBoundSetter
+    public void setFormat(LogFormat format) {
+        this.format = format != null ? format : LogFormat.TEXT;
+        settingsChanged();
+    }
+
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * Maintains a sparse {@link AuditLogIndex} of each file, so that the events of a time range are read without
+     * reading the whole file.
+     */
+    @DataBoundSetter
+    public void setIndexed(boolean indexed) {
+        this.indexed = indexed;
+        settingsChanged();
+    }
+
+    /**
+     * @return the number of events between two entries of the index
+     */
+    public int getIndexEvents() {
+        return indexEvents > 0 ? indexEvents : DEFAULT_INDEX_EVENTS;
+    }
+
+    @DataBoundSetter
+    public void setIndexEvents(int indexEvents) {
+        this.indexEvents = indexEvents;
+        settingsChanged();
+    }
+
+    /**
+     * @return the number of kilobytes between two entries of the index
+     */
+    public int getIndexSize() {
+        return indexSize > 0 ? indexSize : DEFAULT_INDEX_SIZE;
+    }
+
+    @DataBoundSetter
+    public void setIndexSize(int indexSize) {
+        this.indexSize = indexSize;
+        settingsChanged();
+    }
+
     public FileHandler getHandler() {
         return handler;
     }
@@ -127,9 +704,20 @@ public abstract class AbstractLogFileAuditLogger extends AuditLogger {
         AbstractLogFileAuditLogger that = (AbstractLogFileAuditLogger) o;
 
         if (count != that.count) return false;
+        if (groupCommit != that.groupCommit) return false;
+        if (memoryMapped != that.memoryMapped) return false;
+        if (getDurability() != that.getDurability()) return false;
+        if (getDurabilityInterval() != that.getDurabilityInterval()) return false;
+        if (getDurabilityEvents() != that.getDurabilityEvents()) return false;
+        if (!getDurableEventTypes().equals(that.getDurableEventTypes())) return false;
+        if (getCompression() != that.getCompression()) return false;
+        if (getCompressionThreads() != that.getCompressionThreads()) return false;
+        if (getFormat() != that.getFormat()) return false;
+        if (indexed != that.indexed) return false;
+        if (getIndexEvents() != that.getIndexEvents()) return false;
+        if (getIndexSize() != that.getIndexSize()) return false;
         if (!logSeparator.equals(that.logSeparator)) return false;
-        if (log != null ? !log.equals(that.log) : that.log != null) return false;
-        return handler != null ? handler.equals(that.handler) : that.handler == null;
+        return log != null ? log.equals(that.log) : that.log == null;
     }
 
     @Override
@@ -137,7 +725,18 @@ public abstract class AbstractLogFileAuditLogger extends AuditLogger {
         int result = logSeparator.hashCode();
         result = 31 * result + (log != null ? log.hashCode() : 0);
         result = 31 * result + count;
-        result = 31 * result + (handler != null ? handler.hashCode() : 0);
+        result = 31 * result + (groupCommit ? 1 : 0);
+        result = 31 * result + (memoryMapped ? 1 : 0);
+        result = 31 * result + getDurability().hashCode();
+        result = 31 * result + Long.hashCode(getDurabilityInterval());
+        result = 31 * result + getDurabilityEvents();
+        result = 31 * result + getDurableEventTypes().hashCode();
+        result = 31 * result + getCompression().hashCode();
+        result = 31 * result + getCompressionThreads();
+        result = 31 * result + getFormat().hashCode();
+        result = 31 * result + (indexed ? 1 : 0);
+        result = 31 * result + getIndexEvents();
+        result = 31 * result + getIndexSize();
         return result;
     }
 }
@@ -0,0 +1,524 @@
+package hudson.plugins.audit_trail;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded queue handing audit entries over to a single dispatcher thread.
+ * <p>
+ * Unlike the unbounded queue of {@link java.util.concurrent.Executors#newSingleThreadExecutor()}, the number of
+ * pending entries is capped. Once the cap is reached, the configured {@link OverflowPolicy} decides whether the
+ * producer waits, an entry is dropped or the entry is spilled to disk and replayed once the queue has drained.
+ *
+ * @param <E> the type of the queued entries
+ */
+final class AuditDispatchQueue<E> implements AuditDispatcher<E> {
+
+    private static final Logger LOGGER = Logger.getLogger(AuditDispatchQueue.class.getName());
+    private static final long DROP_WARNING_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    static final int DEFAULT_CAPACITY = 10_000;
+    static final OverflowPolicy DEFAULT_POLICY = OverflowPolicy.BLOCK;
+    static final long DEFAULT_BLOCK_TIMEOUT = 1000;
+
+    /**
+     * Converts queue entries to and from a single line of text so they can be spilled to disk.
+     */
+    interface SpillCodec<E> {
+        @NonNull
+        String encode(@NonNull E element);
+
+        @CheckForNull
+        E decode(@NonNull String line);
+    }
+
+    private final String name;
+    private final Consumer<? super E> handler;
+
+    @CheckForNull
+    private final SpillCodec<E> codec;
+
+    @CheckForNull
+    private final File spillFile;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition spillsWritten = lock.newCondition();
+
+    // all guarded by lock
+    private final ArrayDeque<E> queue = new ArrayDeque<>();
+    private int capacity = DEFAULT_CAPACITY;
+    private OverflowPolicy policy = DEFAULT_POLICY;
+    private long blockTimeoutMillis = DEFAULT_BLOCK_TIMEOUT;
+    private int highWaterMark;
+    private boolean spillPending;
+    private int spillWrites;
+    private boolean stopped;
+
+    /**
+     * Written by the producers outside of {@link #lock}, so that neither the other producers nor the dispatcher wait
+     * for the disk, and only closed by whoever holds the lock once no entry is being spilled.
+     */
+    private final Object spillWriterLock = new Object();
+
+    // guarded by spillWriterLock
+    private Writer spillWriter;
+
+    private final AtomicLong outstanding = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private volatile long lastDropWarning;
+
+    private final Thread worker;
+
+    AuditDispatchQueue(String name, Consumer<? super E> handler) {
+        this(name, handler, null, null);
+    }
+
+    /**
+     * @param codec     used to write entries to {@code spillFile} when the policy is {@link OverflowPolicy#SPILL_TO_DISK},
+     *                  if {@code null} spilling falls back to dropping the newest entry
+     * @param spillFile where to spill entries, a leftover file from a previous run is replayed on start
+     */
+    AuditDispatchQueue(
+            String name,
+            Consumer<? super E> handler,
+            @CheckForNull SpillCodec<E> codec,
+            @CheckForNull File spillFile) {
+        this.name = name;
+        this.handler = handler;
+        this.codec = codec;
+        this.spillFile = codec != null ? spillFile : null;
+        this.spillPending = this.spillFile != null && (this.spillFile.exists() || getReplayFile().exists());
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Updates the bounds of this queue. Producers currently waiting for room are re-evaluated against the new
+     * capacity.
+     */
+    @Override
+    public void configure(int capacity, OverflowPolicy policy, long blockTimeoutMillis) {
+        lock.lock();
+        try {
+            this.capacity = Math.max(1, capacity);
+            this.policy = policy != null ? policy : DEFAULT_POLICY;
+            this.blockTimeoutMillis = Math.max(0, blockTimeoutMillis);
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean supports(DispatchMode mode, WaitStrategy waitStrategy, int capacity) {
+        return mode == DispatchMode.QUEUE;
+    }
+
+    @Override
+    public boolean offer(@NonNull E element) {
+        return enqueue(element, true) == Offer.QUEUED;
+    }
+
+    @Override
+    public Offer tryOffer(@NonNull E element) {
+        return enqueue(element, false);
+    }
+
+    private Offer enqueue(E element, boolean wait) {
+        Offer offer = tryQueue(element, wait);
+        if (offer != null) {
+            return offer;
+        }
+        return spill(element) ? Offer.QUEUED : Offer.DROPPED;
+    }
+
+    /**
+     * @return {@code null} if the entry is to be spilled, which {@link #startSpill()} recorded
+     */
+    @CheckForNull
+    private Offer tryQueue(E element, boolean wait) {
+        lock.lock();
+        try {
+            if (stopped) {
+                recordDrop();
+                return Offer.DROPPED;
+            }
+            if (spillPending) {
+                // keep ordering: nothing goes to the queue until the spilled entries have been replayed
+                return startSpill();
+            }
+            if (queue.size() >= capacity) {
+                switch (policy) {
+                    case BLOCK:
+                        if (!wait) {
+                            return Offer.FULL;
+                        }
+                        long nanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis);
+                        while (queue.size() >= capacity) {
+                            if (nanos <= 0L || stopped) {
+                                recordDrop();
+                                return Offer.DROPPED;
+                            }
+                            nanos = notFull.awaitNanos(nanos);
+                        }
+                        break;
+                    case DROP_OLDEST:
+                        queue.poll();
+                        outstanding.decrementAndGet();
+                        recordDrop();
+                        break;
+                    case SPILL_TO_DISK:
+                        if (spillFile != null) {
+                            return startSpill();
+                        }
+                        recordDrop();
+                        return Offer.DROPPED;
+                    case DROP_NEWEST:
+                    default:
+                        recordDrop();
+                        return Offer.DROPPED;
+                }
+            }
+            queue.add(element);
+            outstanding.incrementAndGet();
+            highWaterMark = Math.max(highWaterMark, queue.size());
+            notEmpty.signal();
+            return Offer.QUEUED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            recordDrop();
+            return Offer.DROPPED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // must be called while holding the lock
+    @CheckForNull
+    private Offer startSpill() {
+        spillWrites++;
+        if (!spillPending) {
+            spillPending = true;
+            notEmpty.signal();
+        }
+        return null;
+    }
+
+    /**
+     * Appends an entry to the spill file, without flushing it as the dispatcher closes the file before replaying it.
+     */
+    private boolean spill(E element) {
+        boolean written = false;
+        try {
+            String line = codec.encode(element);
+            synchronized (spillWriterLock) {
+                if (spillWriter == null) {
+                    spillWriter = Files.newBufferedWriter(
+                            spillFile.toPath(),
+                            StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.APPEND);
+                }
+                spillWriter.write(line);
+                spillWriter.write('\n');
+            }
+            written = true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not spill audit entry to " + spillFile, e);
+        }
+        lock.lock();
+        try {
+            if (written) {
+                spilled.incrementAndGet();
+            } else {
+                recordDrop();
+            }
+            if (--spillWrites == 0) {
+                spillsWritten.signalAll();
+                if (stopped) {
+                    closeSpillWriter();
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not close spill file " + spillFile, e);
+        } finally {
+            lock.unlock();
+        }
+        return written;
+    }
+
+    // must be called while holding the lock, once no entry is being spilled
+    private void closeSpillWriter() throws IOException {
+        synchronized (spillWriterLock) {
+            if (spillWriter != null) {
+                try {
+                    spillWriter.close();
+                } finally {
+                    spillWriter = null;
+                }
+            }
+        }
+    }
+
+    // must be called while holding the lock
+    private void recordDrop() {
+        long count = dropped.incrementAndGet();
+        long now = System.currentTimeMillis();
+        if (now - lastDropWarning > DROP_WARNING_INTERVAL) {
+            lastDropWarning = now;
+            LOGGER.log(
+                    Level.WARNING,
+                    "{0} is full (capacity {1}, policy {2}, high-water mark {3}), {4} audit entries dropped so far",
+                    new Object[] {name, capacity, policy, highWaterMark, count});
+        }
+    }
+
+    private void run() {
+        while (true) {
+            E next = null;
+            File replay = null;
+            lock.lock();
+            try {
+                while (queue.isEmpty() && !spillPending && !stopped) {
+                    notEmpty.await();
+                }
+                if (!queue.isEmpty()) {
+                    next = queue.poll();
+                    notFull.signal();
+                } else if (spillPending) {
+                    replay = swapSpillFile();
+                    if (replay != null) {
+                        // the replay counts as outstanding until its last entry is dispatched
+                        outstanding.incrementAndGet();
+                    }
+                } else {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                LOGGER.log(Level.FINE, "{0} interrupted, stopping", name);
+                return;
+            } finally {
+                lock.unlock();
+            }
+            if (next != null) {
+                dispatch(next);
+            } else if (replay != null) {
+                replay(replay);
+            }
+        }
+    }
+
+    // must be called while holding the lock
+    @CheckForNull
+    private File swapSpillFile() throws InterruptedException {
+        while (spillWrites > 0) {
+            spillsWritten.await();
+        }
+        spillPending = false;
+        try {
+            closeSpillWriter();
+            File replay = getReplayFile();
+            if (!replay.exists() && spillFile.exists()) {
+                Files.move(spillFile.toPath(), replay.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } else if (spillFile.exists()) {
+                // a replay file left over by a previous run must be replayed first
+                spillPending = true;
+            }
+            return replay.exists() ? replay : null;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not prepare the replay of " + spillFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Dispatches the entries of a spill file, whether spilled by this queue or left over by a previous run, each
+     * counted as outstanding once read back.
+     */
+    private void replay(File replay) {
+        LOGGER.log(Level.FINE, "{0} replaying spilled audit entries from {1}", new Object[] {name, replay});
+        try (BufferedReader reader = Files.newBufferedReader(replay.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                E element = codec.decode(line);
+                if (element != null) {
+                    outstanding.incrementAndGet();
+                    dispatch(element);
+                } else {
+                    LOGGER.log(Level.WARNING, "Skipping unreadable spilled audit entry {0}", line);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not replay spilled audit entries from " + replay, e);
+        }
+        try {
+            Files.deleteIfExists(replay.toPath());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not remove replayed spill file " + replay, e);
+        }
+        if (outstanding.get() <= 1) {
+            // the batch was held open by the replay itself
+            endOfBatch();
+        }
+        outstanding.decrementAndGet();
+    }
+
+    private void dispatch(E element) {
+        try {
+            handler.accept(element);
+            if (outstanding.get() <= 1) {
+                endOfBatch();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, name + " failed to dispatch an audit entry", e);
+        }
+        processed.incrementAndGet();
+        outstanding.decrementAndGet();
+    }
+
+    private void endOfBatch() {
+        if (handler instanceof BatchHandler) {
+            try {
+                ((BatchHandler<?>) handler).endOfBatch();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, name + " failed to end a batch of audit entries", e);
+            }
+        }
+    }
+
+    private File getReplayFile() {
+        return new File(spillFile.getPath() + ".replay");
+    }
+
+    /**
+     * Stops accepting entries and lets the dispatcher thread exit once the queued entries have been dispatched.
+     * Entries still on disk are kept and replayed the next time a queue is created for the same spill file.
+     */
+    @Override
+    public void shutdown() {
+        lock.lock();
+        try {
+            stopped = true;
+            spillPending = false;
+            if (spillWrites == 0) {
+                // otherwise the last entry being spilled closes it
+                closeSpillWriter();
+            }
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not close spill file " + spillFile, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every entry offered so far has been dispatched.
+     *
+     * @return {@code true} if the queue drained before the timeout elapsed
+     */
+    @Override
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        // the spill flag is checked first, as the replay is counted as outstanding when the flag is cleared
+        while (isSpillPending() || outstanding.get() > 0) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        worker.join(Math.max(1, unit.toMillis(timeout)));
+        return !worker.isAlive();
+    }
+
+    private boolean isSpillPending() {
+        lock.lock();
+        try {
+            return spillPending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getSize() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getCapacity() {
+        lock.lock();
+        try {
+            return capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the largest number of entries that were waiting at the same time
+     */
+    @Override
+    public int getHighWaterMark() {
+        lock.lock();
+        try {
+            return highWaterMark;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getProcessedCount() {
+        return processed.get();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    long getSpilledCount() {
+        return spilled.get();
+    }
+}
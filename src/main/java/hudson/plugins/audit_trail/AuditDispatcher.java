@@ -0,0 +1,181 @@
+package hudson.plugins.audit_trail;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hands audit entries over from the producers to a single dispatcher thread, either through the lock based
+ * {@link AuditDispatchQueue} or the lock-free {@link AuditRingBuffer}, depending on the {@link DispatchMode}.
+ *
+ * @param <E> the type of the dispatched entries
+ */
+interface AuditDispatcher<E> {
+
+    /**
+     * Outcome of {@link #tryOffer(Object)}.
+     */
+    enum Offer {
+        QUEUED,
+        DROPPED,
+        /**
+         * The dispatcher is full and its policy is {@link OverflowPolicy#BLOCK}, nothing was recorded.
+         */
+        FULL
+    }
+
+    /**
+     * Handler told when the dispatcher thread runs out of entries, so that it can write what it buffered at once.
+     */
+    interface BatchHandler<E> extends Consumer<E> {
+        /**
+         * Called once the last pending entry has been dispatched, before it is reported as processed by
+         * {@link #awaitIdle}.
+         */
+        void endOfBatch();
+    }
+
+    /**
+     * Creates a dispatcher and starts its thread.
+     *
+     * @param codec     used to spill entries to {@code spillFile}, only supported by {@link DispatchMode#QUEUE}
+     * @param capacity  the number of slots of a {@link DispatchMode#RING_BUFFER}, which cannot be resized
+     */
+    static <E> AuditDispatcher<E> create(
+            String name,
+            Consumer<? super E> handler,
+            @CheckForNull AuditDispatchQueue.SpillCodec<E> codec,
+            @CheckForNull File spillFile,
+            DispatchMode mode,
+            WaitStrategy waitStrategy,
+            int capacity) {
+        if (mode == DispatchMode.RING_BUFFER) {
+            return new AuditRingBuffer<>(name, handler, capacity, waitStrategy);
+        }
+        return new AuditDispatchQueue<>(name, handler, codec, spillFile);
+    }
+
+    /**
+     * Shuts {@code previous} down and creates the dispatcher replacing it, which only dispatches once the thread of
+     * {@code previous} dispatched the entries it holds and exited, so that the handler is never called by both threads
+     * and the entries keep their order.
+     */
+    static <E> AuditDispatcher<E> replace(
+            AuditDispatcher<E> previous,
+            String name,
+            Consumer<? super E> handler,
+            @CheckForNull AuditDispatchQueue.SpillCodec<E> codec,
+            @CheckForNull File spillFile,
+            DispatchMode mode,
+            WaitStrategy waitStrategy,
+            int capacity) {
+        previous.shutdown();
+        return create(name, new Successor<>(previous, handler), codec, spillFile, mode, waitStrategy, capacity);
+    }
+
+    /**
+     * @return whether this dispatcher can be {@link #configure reconfigured} to the given settings, rather than
+     *         being replaced by a new one
+     */
+    boolean supports(DispatchMode mode, WaitStrategy waitStrategy, int capacity);
+
+    /**
+     * Updates the bounds of this dispatcher.
+     */
+    void configure(int capacity, OverflowPolicy policy, long blockTimeoutMillis);
+
+    /**
+     * Hands an entry over to the dispatcher thread.
+     *
+     * @return {@code true} if the entry will be dispatched, {@code false} if it was dropped
+     */
+    boolean offer(@NonNull E element);
+
+    /**
+     * Hands an entry over to the dispatcher thread without ever waiting for room, so that a caller feeding several
+     * dispatchers can serve the ones with room first and only then {@link #offer(Object)} to the full ones.
+     */
+    Offer tryOffer(@NonNull E element);
+
+    /**
+     * Stops accepting entries and lets the dispatcher thread exit once the pending entries have been dispatched.
+     */
+    void shutdown();
+
+    /**
+     * Waits until every entry offered so far has been dispatched.
+     *
+     * @return {@code true} if the dispatcher drained before the timeout elapsed
+     */
+    boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Waits until the dispatcher thread exits, once {@link #shutdown()} and the pending entries dispatched.
+     *
+     * @return {@code true} if the thread exited before the timeout elapsed
+     */
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException;
+
+    String getName();
+
+    int getSize();
+
+    int getCapacity();
+
+    /**
+     * @return the largest number of entries that were waiting at the same time
+     */
+    int getHighWaterMark();
+
+    long getProcessedCount();
+
+    long getDroppedCount();
+
+    /**
+     * Handler of a dispatcher replacing another one, waiting for the thread of the previous dispatcher to exit before
+     * handling its first entry.
+     */
+    final class Successor<E> implements BatchHandler<E> {
+        private final Consumer<? super E> handler;
+
+        // only accessed by the dispatcher thread
+        @CheckForNull
+        private AuditDispatcher<E> predecessor;
+
+        Successor(AuditDispatcher<E> predecessor, Consumer<? super E> handler) {
+            this.predecessor = predecessor;
+            this.handler = handler;
+        }
+
+        @Override
+        public void accept(E element) {
+            awaitPredecessor();
+            handler.accept(element);
+        }
+
+        @Override
+        public void endOfBatch() {
+            awaitPredecessor();
+            if (handler instanceof BatchHandler) {
+                ((BatchHandler<?>) handler).endOfBatch();
+            }
+        }
+
+        private void awaitPredecessor() {
+            AuditDispatcher<E> previous = predecessor;
+            if (previous == null) {
+                return;
+            }
+            try {
+                while (!previous.awaitTermination(1, TimeUnit.MINUTES)) {
+                    // the handler is still busy with the entries of the previous dispatcher
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            predecessor = null;
+        }
+    }
+}
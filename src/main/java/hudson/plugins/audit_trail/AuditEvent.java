@@ -0,0 +1,229 @@
+package hudson.plugins.audit_trail;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Structured audit event, handed over to every {@link AuditLogger}.
+ * <p>
+ * The one line text historically written by the loggers is only rendered, and then cached, the first time
+ * {@link #getMessage()} is called, so that loggers working with the structured fields never pay for it.
+ * <p>
+ * The same goes for the UTF-8 encodings of the message and of the JSON document: each is produced once, by the first
+ * logger asking for it, and then shared by every other logger as a read-only {@link ByteBuffer}.
+ */
+public final class AuditEvent {
+
+    public enum Type {
+        HTTP_REQUEST,
+        BUILD_STARTED,
+        BUILD_FINISHED,
+        CREDENTIALS_USAGE,
+        SCRIPT_EXECUTION
+    }
+
+    private final Type type;
+    private final long timestamp;
+
+    @CheckForNull
+    private final String user;
+
+    @CheckForNull
+    private final String sourceIp;
+
+    private final String subject;
+    private final Map<String, String> fields;
+    private final Supplier<String> renderer;
+
+    private volatile String message;
+    private volatile byte[] messageBytes;
+    private volatile byte[] jsonBytes;
+
+    private AuditEvent(Builder builder) {
+        this.type = builder.type;
+        this.timestamp = builder.timestamp;
+        this.user = builder.user;
+        this.sourceIp = builder.sourceIp;
+        this.subject = builder.subject;
+        this.fields = builder.fields.isEmpty()
+                ? Collections.emptyMap()
+                : Collections.unmodifiableMap(new LinkedHashMap<>(builder.fields));
+        this.renderer = builder.renderer != null ? builder.renderer : this::renderDefault;
+    }
+
+    public static Builder builder(@NonNull Type type, @NonNull String subject) {
+        return new Builder(type, subject);
+    }
+
+    @NonNull
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return when the event occurred, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the id of the user who triggered the event, if known
+     */
+    @CheckForNull
+    public String getUser() {
+        return user;
+    }
+
+    @CheckForNull
+    public String getSourceIp() {
+        return sourceIp;
+    }
+
+    /**
+     * @return what the event is about: a URI, a build, credentials...
+     */
+    @NonNull
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * @return the details of the event, in insertion order
+     */
+    @NonNull
+    public Map<String, String> getFields() {
+        return fields;
+    }
+
+    @CheckForNull
+    public String getField(String name) {
+        return fields.get(name);
+    }
+
+    /**
+     * @return the event as a line of text, as written by the loggers before structured events were introduced
+     */
+    @NonNull
+    public String getMessage() {
+        String rendered = message;
+        if (rendered == null) {
+            // rendering is idempotent, a race only renders the message twice
+            rendered = renderer.get();
+            message = rendered;
+        }
+        return rendered;
+    }
+
+    /**
+     * @return the UTF-8 encoding of {@link #getMessage()}, without line separator
+     */
+    @NonNull
+    public ByteBuffer getMessageBytes() {
+        byte[] encoded = messageBytes;
+        if (encoded == null) {
+            synchronized (this) {
+                encoded = messageBytes;
+                if (encoded == null) {
+                    encoded = getMessage().getBytes(StandardCharsets.UTF_8);
+                    messageBytes = encoded;
+                }
+            }
+        }
+        return ByteBuffer.wrap(encoded).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the UTF-8 encoding of the event as a single line JSON document, without line separator
+     */
+    @NonNull
+    public ByteBuffer getJsonBytes() {
+        byte[] encoded = jsonBytes;
+        if (encoded == null) {
+            synchronized (this) {
+                encoded = jsonBytes;
+                if (encoded == null) {
+                    encoded = AuditEventJson.toJson(this).getBytes(StandardCharsets.UTF_8);
+                    jsonBytes = encoded;
+                }
+            }
+        }
+        return ByteBuffer.wrap(encoded).asReadOnlyBuffer();
+    }
+
+    private String renderDefault() {
+        StringBuilder builder = new StringBuilder(subject);
+        fields.forEach((key, value) -> builder.append(' ').append(key).append('=').append(value));
+        if (user != null) {
+            builder.append(" by ").append(user);
+        }
+        if (sourceIp != null) {
+            builder.append(" from ").append(sourceIp);
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "AuditEvent{" + "type=" + type + ", timestamp=" + timestamp + ", subject='" + subject + '\'' + '}';
+    }
+
+    public static final class Builder {
+        private final Type type;
+        private final String subject;
+        private long timestamp = System.currentTimeMillis();
+        private String user;
+        private String sourceIp;
+        private final Map<String, String> fields = new LinkedHashMap<>();
+        private Supplier<String> renderer;
+
+        private Builder(Type type, String subject) {
+            this.type = type;
+            this.subject = subject;
+        }
+
+        public Builder timestamp(long timestamp) {
+            this.timestamp = timestamp;
+            return this;
+        }
+
+        public Builder user(@CheckForNull String user) {
+            this.user = user;
+            return this;
+        }
+
+        public Builder sourceIp(@CheckForNull String sourceIp) {
+            this.sourceIp = sourceIp;
+            return this;
+        }
+
+        /**
+         * Adds a detail to the event, {@code null} values are ignored.
+         */
+        public Builder field(@NonNull String name, @CheckForNull Object value) {
+            if (value != null) {
+                fields.put(name, value.toString());
+            }
+            return this;
+        }
+
+        /**
+         * How to render the event as text. It may be called on another thread, long after the event was built, so it
+         * must only use values captured when building the event.
+         */
+        public Builder message(@NonNull Supplier<String> renderer) {
+            this.renderer = renderer;
+            return this;
+        }
+
+        public AuditEvent build() {
+            return new AuditEvent(this);
+        }
+    }
+}
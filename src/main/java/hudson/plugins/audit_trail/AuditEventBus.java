@@ -0,0 +1,634 @@
+package hudson.plugins.audit_trail;
+
+import static hudson.init.InitMilestone.EXTENSIONS_AUGMENTED;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands the audit events of every producer over to the loggers.
+ * <p>
+ * Each logger has its own {@link Sink}: a bounded queue and a dedicated thread, so a slow or hung logger only delays
+ * its own events. Producers (the HTTP request filter, the build, credentials and script listeners) only pay for the
+ * enqueues, whose duration is bounded by the dispatch settings and recorded, however slow the loggers are.
+ */
+@Extension
+public class AuditEventBus {
+
+    private static final Logger LOGGER = Logger.getLogger(AuditEventBus.class.getName());
+    private static final long SHUTDOWN_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+    private static final long RETIREMENT_KEEP_ALIVE = 60;
+
+    /**
+     * {@code null} until it is safe to look up extensions.
+     */
+    @CheckForNull
+    private volatile AuditTrailPlugin configuration;
+
+    /**
+     * One sink per configured logger, in the same order, replaced as a whole when the loggers change.
+     */
+    private volatile List<Sink> sinks = Collections.emptyList();
+
+    // both guarded by this
+    private boolean stopped;
+    private boolean suspended;
+
+    private final LongAdder publishCount = new LongAdder();
+    private final LongAdder publishNanos = new LongAdder();
+    private final AtomicLong maxPublishNanos = new AtomicLong();
+    private final AtomicLong retiredDroppedCount = new AtomicLong();
+
+    /**
+     * Cleans the replaced loggers up one after the other, each waiting at most {@link #SHUTDOWN_TIMEOUT} for its
+     * sink, so that saving the configuration repeatedly doesn't start a thread per replaced logger.
+     */
+    private final ExecutorService retirement = createRetirementExecutor();
+
+    public static AuditEventBus get() {
+        return ExtensionList.lookupSingleton(AuditEventBus.class);
+    }
+
+    /**
+     * Binds the loggers loaded from the configuration, once it is safe to look up extensions.
+     */
+    @Initializer(after = EXTENSIONS_AUGMENTED)
+    public void initializeConfiguration() {
+        updateLoggers(ExtensionList.lookupSingleton(AuditTrailPlugin.class));
+    }
+
+    /**
+     * Gives the loggers a chance to receive the pending events before Jenkins stops.
+     */
+    @Terminator
+    public void shutdown() throws InterruptedException {
+        List<Sink> current;
+        synchronized (this) {
+            stopped = true;
+            current = sinks;
+        }
+        current.forEach(sink -> sink.dispatcher.shutdown());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT);
+        for (Sink sink : current) {
+            if (!sink.awaitIdle(deadline)) {
+                LOGGER.log(
+                        Level.WARNING,
+                        "{0} audit events were not delivered to {1} before shutdown",
+                        new Object[] {sink.getQueueSize(), sink.getLogger()});
+            }
+        }
+    }
+
+    synchronized void configure(AuditTrailPlugin plugin) {
+        configuration = plugin;
+        sinks.forEach(sink -> sink.configure(plugin));
+    }
+
+    /**
+     * Delivers the pending events to the current loggers and cleans them up, then holds the next events until
+     * {@link #updateLoggers} hands them over to the new loggers, so that these can reopen the files of the previous
+     * ones.
+     */
+    synchronized void suspend() {
+        if (stopped || suspended) {
+            return;
+        }
+        List<Sink> current = getSinks();
+        suspended = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT);
+        for (Sink sink : current) {
+            boolean delivered;
+            try {
+                delivered = sink.awaitIdle(deadline);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                delivered = false;
+            }
+            if (!sink.hold(deadline) || !delivered) {
+                LOGGER.log(
+                        Level.FINE,
+                        "{0} audit events are held until {1} is replaced",
+                        new Object[] {sink.getQueueSize(), sink.getLogger()});
+            }
+            cleanUp(sink.getLogger());
+        }
+    }
+
+    /**
+     * Replaces the sinks as soon as the loggers are replaced, rather than on the next event, and hands the events
+     * held by {@link #suspend()} over to the new loggers.
+     */
+    synchronized void updateLoggers(AuditTrailPlugin plugin) {
+        configuration = plugin;
+        boolean cleanedUp = suspended;
+        suspended = false;
+        List<Sink> updated = updateSinks(plugin.getLoggers(), cleanedUp);
+        if (cleanedUp) {
+            updated.forEach(Sink::release);
+        }
+    }
+
+    /**
+     * Binds the loggers set without the configuration form, as by Configuration as Code, right away rather than on
+     * the next event. While the form is saved, {@link #updateLoggers} binds them instead.
+     */
+    void loggersChanged() {
+        getSinks();
+    }
+
+    /**
+     * Queues an event for delivery to every configured logger.
+     * <p>
+     * The event is first handed over to the loggers whose queue has room, and only then to the full ones blocking
+     * producers, so that the loggers keeping up never wait for the others.
+     *
+     * @return {@code false} if the event was dropped for at least one logger
+     */
+    public boolean publish(AuditEvent event) {
+        long start = System.nanoTime();
+        boolean queued = true;
+        List<Sink> full = null;
+        for (Sink sink : getSinks()) {
+            switch (sink.dispatcher.tryOffer(event)) {
+                case FULL:
+                    if (full == null) {
+                        full = new ArrayList<>(1);
+                    }
+                    full.add(sink);
+                    break;
+                case DROPPED:
+                    queued = false;
+                    break;
+                case QUEUED:
+                default:
+                    break;
+            }
+        }
+        if (full != null) {
+            for (Sink sink : full) {
+                queued &= sink.dispatcher.offer(event);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        publishCount.increment();
+        publishNanos.add(elapsed);
+        maxPublishNanos.accumulateAndGet(elapsed, Math::max);
+        return queued;
+    }
+
+    /**
+     * @return the sinks of the currently configured loggers
+     */
+    public List<Sink> getSinks() {
+        List<AuditLogger> loggers = getConfiguration().getLoggers();
+        List<Sink> current = sinks;
+        return matches(current, loggers) ? current : updateSinks(loggers, false);
+    }
+
+    private AuditTrailPlugin getConfiguration() {
+        AuditTrailPlugin plugin = configuration;
+        if (plugin == null) {
+            plugin = ExtensionList.lookupSingleton(AuditTrailPlugin.class);
+            configuration = plugin;
+        }
+        return plugin;
+    }
+
+    private static boolean matches(List<Sink> sinks, List<AuditLogger> loggers) {
+        if (sinks.size() != loggers.size()) {
+            return false;
+        }
+        for (int i = 0; i < sinks.size(); i++) {
+            if (sinks.get(i).logger != loggers.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keeps the sink of the loggers still configured, as well as the one of a logger replaced by an equal instance
+     * when the configuration is saved, so that their pending events are not lost.
+     * <p>
+     * The replaced loggers are cleaned up once their events are delivered, unless {@link #suspend()} did it already,
+     * in which case the events held since by the sinks of removed loggers are dropped.
+     *
+     * @param cleanedUp whether the previous loggers were cleaned up by {@link #suspend()}
+     */
+    private synchronized List<Sink> updateSinks(List<AuditLogger> loggers, boolean cleanedUp) {
+        List<Sink> previous = sinks;
+        if (stopped || suspended || matches(previous, loggers)) {
+            return previous;
+        }
+        AuditTrailPlugin plugin = getConfiguration();
+        List<Sink> retired = new ArrayList<>(previous);
+        List<Sink> updated = new ArrayList<>(loggers.size());
+        for (AuditLogger logger : loggers) {
+            Sink sink = takeSink(retired, logger);
+            if (sink == null) {
+                start(logger);
+                sink = new Sink(logger, plugin);
+            } else {
+                AuditLogger replaced = sink.logger;
+                if (replaced != logger) {
+                    start(logger);
+                }
+                sink.logger = logger;
+                sink.configure(plugin);
+                if (replaced != logger && !cleanedUp) {
+                    retire(sink, replaced, false);
+                }
+            }
+            updated.add(sink);
+        }
+        for (Sink sink : retired) {
+            sink.dispatcher.shutdown();
+            retiredDroppedCount.addAndGet(sink.getDroppedCount());
+            if (cleanedUp) {
+                sink.discard(retiredDroppedCount);
+            } else {
+                retire(sink, sink.logger, true);
+            }
+        }
+        sinks = Collections.unmodifiableList(updated);
+        return sinks;
+    }
+
+    /**
+     * Cleans a replaced logger up once its sink is done with it, in the background so that neither the producers
+     * nor the configuration wait for a slow logger.
+     *
+     * @param removed whether the sink was retired along with the logger, its pending events being delivered first,
+     *     rather than kept for an equal logger
+     */
+    private void retire(Sink sink, AuditLogger logger, boolean removed) {
+        retirement.execute(() -> {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT);
+            if (removed) {
+                boolean delivered;
+                try {
+                    delivered = sink.awaitIdle(deadline);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    delivered = false;
+                }
+                if (!delivered) {
+                    // waits for the event being delivered, if any, before dropping the next ones
+                    sink.hold(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT));
+                    LOGGER.log(
+                            Level.WARNING,
+                            "{0} audit events were not delivered to {1} before it was removed",
+                            new Object[] {sink.getQueueSize(), logger});
+                    sink.discard(retiredDroppedCount);
+                }
+                cleanUp(logger);
+            } else {
+                // waits for the event being delivered to the replaced logger, if any
+                sink.hold(deadline);
+                try {
+                    cleanUp(logger);
+                } finally {
+                    sink.release();
+                }
+            }
+        });
+    }
+
+    private static ExecutorService createRetirementExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                1, 1, RETIREMENT_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+                    Thread thread = new Thread(task, "AuditTrail logger clean up");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        // the thread stops when idle, as loggers are only replaced when the configuration is saved
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static void start(AuditLogger logger) {
+        try {
+            logger.start();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to start " + logger, e);
+        }
+    }
+
+    private static void cleanUp(AuditLogger logger) {
+        try {
+            logger.cleanUp();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to clean " + logger + " up", e);
+        }
+    }
+
+    @CheckForNull
+    private static Sink takeSink(List<Sink> candidates, AuditLogger logger) {
+        for (Iterator<Sink> it = candidates.iterator(); it.hasNext(); ) {
+            Sink sink = it.next();
+            if (sink.logger == logger) {
+                it.remove();
+                return sink;
+            }
+        }
+        for (Iterator<Sink> it = candidates.iterator(); it.hasNext(); ) {
+            Sink sink = it.next();
+            if (sink.logger.equals(logger)) {
+                it.remove();
+                return sink;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Waits until every event published so far has been handed over to the loggers.
+     */
+    boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Sink sink : sinks) {
+            if (!sink.awaitIdle(deadline)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getPublishCount() {
+        return publishCount.sum();
+    }
+
+    /**
+     * @return the mean time producers spent publishing an event, in nanoseconds
+     */
+    public long getAveragePublishNanos() {
+        long count = publishCount.sum();
+        return count == 0 ? 0 : publishNanos.sum() / count;
+    }
+
+    /**
+     * @return the longest time a producer spent publishing an event, in nanoseconds
+     */
+    public long getMaxPublishNanos() {
+        return maxPublishNanos.get();
+    }
+
+    /**
+     * @return the number of events dropped, counted once per logger they were not delivered to
+     */
+    public long getDroppedCount() {
+        long count = retiredDroppedCount.get();
+        for (Sink sink : sinks) {
+            count += sink.getDroppedCount();
+        }
+        return count;
+    }
+
+    /**
+     * The delivery queue and thread of a single logger.
+     */
+    public static final class Sink {
+
+        private volatile AuditLogger logger;
+        private volatile AuditDispatcher<AuditEvent> dispatcher;
+
+        /**
+         * The dispatcher replaced on a change of the dispatch mode, until it delivered the events it held.
+         */
+        @CheckForNull
+        private volatile AuditDispatcher<AuditEvent> previousDispatcher;
+
+        private volatile long lagMillis;
+        private final AtomicLong maxLagMillis = new AtomicLong();
+
+        // all guarded by this
+        private boolean held;
+        private boolean delivering;
+
+        /**
+         * Counts the events dropped rather than delivered, once the logger is cleaned up.
+         */
+        @CheckForNull
+        private AtomicLong discarded;
+
+        Sink(AuditLogger logger, AuditTrailPlugin plugin) {
+            this.logger = logger;
+            this.dispatcher = createDispatcher(plugin);
+            configure(plugin);
+        }
+
+        void configure(AuditTrailPlugin plugin) {
+            AuditDispatcher<AuditEvent> current = dispatcher;
+            if (!current.supports(plugin.getDispatchMode(), plugin.getDispatchWaitStrategy(), getCapacity(plugin))) {
+                // the new dispatcher waits for the previous one to deliver the events it holds, the logger being
+                // called by a single thread at a time
+                previousDispatcher = current;
+                dispatcher = AuditDispatcher.replace(
+                        current,
+                        getDispatcherName(),
+                        new Delivery(),
+                        null,
+                        null,
+                        plugin.getDispatchMode(),
+                        plugin.getDispatchWaitStrategy(),
+                        getCapacity(plugin));
+            }
+            OverflowPolicy policy = logger.getQueueOverflowPolicy();
+            dispatcher.configure(
+                    getCapacity(plugin),
+                    policy != null ? policy : plugin.getDispatchOverflowPolicy(),
+                    plugin.getDispatchBlockTimeout());
+        }
+
+        private AuditDispatcher<AuditEvent> createDispatcher(AuditTrailPlugin plugin) {
+            return AuditDispatcher.create(
+                    getDispatcherName(),
+                    new Delivery(),
+                    null,
+                    null,
+                    plugin.getDispatchMode(),
+                    plugin.getDispatchWaitStrategy(),
+                    getCapacity(plugin));
+        }
+
+        private String getDispatcherName() {
+            return "AuditTrail " + logger.getClass().getSimpleName() + " delivery";
+        }
+
+        private int getCapacity(AuditTrailPlugin plugin) {
+            int capacity = logger.getQueueCapacity();
+            return capacity > 0 ? capacity : plugin.getDispatchQueueCapacity();
+        }
+
+        boolean awaitIdle(long deadline) throws InterruptedException {
+            AuditDispatcher<AuditEvent> previous = previousDispatcher;
+            if (previous != null) {
+                if (!previous.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    return false;
+                }
+                previousDispatcher = null;
+            }
+            return dispatcher.awaitIdle(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Stops the delivery once the event being delivered, if any, is delivered, until {@link #release()}.
+         *
+         * @return {@code false} if an event was still being delivered at the deadline
+         */
+        synchronized boolean hold(long deadline) {
+            held = true;
+            try {
+                long remaining;
+                while (delivering && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return !delivering;
+        }
+
+        synchronized void release() {
+            held = false;
+            notifyAll();
+        }
+
+        /**
+         * Drops the events not delivered yet, once the logger is cleaned up.
+         *
+         * @param dropped counts the events dropped
+         */
+        synchronized void discard(AtomicLong dropped) {
+            discarded = dropped;
+            release();
+        }
+
+        /**
+         * @param event whether an event is to be delivered, rather than the end of a batch
+         * @return the logger to deliver to, {@code null} if the event is to be dropped
+         */
+        @CheckForNull
+        private synchronized AuditLogger beginDelivery(boolean event) {
+            boolean interrupted = false;
+            while (held) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (discarded != null) {
+                if (event) {
+                    discarded.incrementAndGet();
+                }
+                return null;
+            }
+            delivering = true;
+            return logger;
+        }
+
+        private synchronized void endDelivery() {
+            delivering = false;
+            notifyAll();
+        }
+
+        private final class Delivery implements AuditDispatcher.BatchHandler<AuditEvent> {
+            @Override
+            public void accept(AuditEvent event) {
+                AuditLogger current = beginDelivery(true);
+                if (current == null) {
+                    return;
+                }
+                long lag = System.currentTimeMillis() - event.getTimestamp();
+                lagMillis = lag;
+                maxLagMillis.accumulateAndGet(lag, Math::max);
+                try {
+                    current.log(event);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to log " + event + " with " + current, e);
+                } finally {
+                    endDelivery();
+                }
+            }
+
+            @Override
+            public void endOfBatch() {
+                AuditLogger current = beginDelivery(false);
+                if (current == null) {
+                    return;
+                }
+                try {
+                    current.flush();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to flush " + current, e);
+                } finally {
+                    endDelivery();
+                }
+            }
+        }
+
+        AuditDispatcher<AuditEvent> getQueue() {
+            return dispatcher;
+        }
+
+        public AuditLogger getLogger() {
+            return logger;
+        }
+
+        public int getQueueSize() {
+            return dispatcher.getSize();
+        }
+
+        public int getQueueCapacity() {
+            return dispatcher.getCapacity();
+        }
+
+        /**
+         * @return the largest number of events that were waiting for this logger at the same time
+         */
+        public int getHighWaterMark() {
+            return dispatcher.getHighWaterMark();
+        }
+
+        public long getDeliveredCount() {
+            return dispatcher.getProcessedCount();
+        }
+
+        public long getDroppedCount() {
+            return dispatcher.getDroppedCount();
+        }
+
+        /**
+         * @return how long the last delivered event waited between its creation and its delivery, in milliseconds
+         */
+        public long getLagMillis() {
+            return lagMillis;
+        }
+
+        /**
+         * @return the longest time an event waited between its creation and its delivery, in milliseconds
+         */
+        public long getMaxLagMillis() {
+            return maxLagMillis.get();
+        }
+    }
+}
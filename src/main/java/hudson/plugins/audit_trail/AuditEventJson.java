@@ -0,0 +1,255 @@
+package hudson.plugins.audit_trail;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.apache.commons.lang.time.FastDateFormat;
+
+/**
+ * Serializes {@link AuditEvent}s as single line JSON documents, made of the structured fields only so that the text of
+ * the event is never rendered for them.
+ * <p>
+ * Values are escaped directly into the output, unlike {@link net.sf.json.JSONObject} which interprets strings looking
+ * like JSON (a groovy closure, a parameter value...) instead of writing them as strings. For the same reason
+ * {@link #readObject(String)} reads back what is written here, each value as the string it was written from.
+ */
+final class AuditEventJson {
+
+    static final FastDateFormat TIMESTAMP_FORMAT = FastDateFormat.getInstance("yyyy-MM-dd'T'HH:mm:ssZ");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private AuditEventJson() {}
+
+    static String toJson(AuditEvent event) {
+        StringBuilder json = new StringBuilder(256);
+        appendTo(json, event);
+        return json.toString();
+    }
+
+    static void appendTo(StringBuilder json, AuditEvent event) {
+        json.append('{');
+        appendField(json, "@timestamp", TIMESTAMP_FORMAT.format(event.getTimestamp())).append(',');
+        appendField(json, "type", event.getType().name()).append(',');
+        appendField(json, "subject", event.getSubject());
+        if (event.getUser() != null) {
+            appendField(json.append(','), "user", event.getUser());
+        }
+        if (event.getSourceIp() != null) {
+            appendField(json.append(','), "sourceIp", event.getSourceIp());
+        }
+        if (!event.getFields().isEmpty()) {
+            appendString(json.append(','), "fields").append(":{");
+            boolean first = true;
+            for (Map.Entry<String, String> field : event.getFields().entrySet()) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                appendField(json, field.getKey(), field.getValue());
+            }
+            json.append('}');
+        }
+        json.append('}');
+    }
+
+    private static StringBuilder appendField(StringBuilder json, String name, String value) {
+        appendString(json, name).append(':');
+        return appendString(json, value);
+    }
+
+    static StringBuilder appendString(StringBuilder json, CharSequence value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    // control characters, and the separators JavaScript treats as line breaks
+                    if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                        json.append("\\u")
+                                .append(HEX[(c >> 12) & 0xF])
+                                .append(HEX[(c >> 8) & 0xF])
+                                .append(HEX[(c >> 4) & 0xF])
+                                .append(HEX[c & 0xF]);
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"');
+    }
+
+    /**
+     * Reads a JSON object holding strings, numbers, booleans and nested objects of those, as written by this class.
+     *
+     * @return the members of the object, in order, strings being unescaped, numbers and booleans kept as their text,
+     *     nested objects read as maps and {@code null} values as {@code null}
+     * @throws IllegalArgumentException if the text isn't such an object
+     */
+    static Map<String, Object> readObject(String json) {
+        Reader reader = new Reader(json);
+        Map<String, Object> object = reader.readObject();
+        reader.skipWhitespace();
+        if (reader.position != json.length()) {
+            throw reader.error("end of text expected");
+        }
+        return object;
+    }
+
+    private static final class Reader {
+        private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?");
+
+        private final String json;
+        private int position;
+
+        Reader(String json) {
+            this.json = json;
+        }
+
+        Map<String, Object> readObject() {
+            expect('{');
+            Map<String, Object> object = new LinkedHashMap<>();
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+            do {
+                skipWhitespace();
+                String name = readString();
+                expect(':');
+                object.put(name, readValue());
+            } while (next(',', '}') == ',');
+            return object;
+        }
+
+        private Object readValue() {
+            char c = peek();
+            if (c == '"') {
+                return readString();
+            }
+            if (c == '{') {
+                return readObject();
+            }
+            int start = position;
+            while (position < json.length() && "+-.0123456789Eaeflnrstu".indexOf(json.charAt(position)) >= 0) {
+                position++;
+            }
+            String literal = json.substring(start, position);
+            if (literal.equals("null")) {
+                return null;
+            }
+            if (literal.equals("true") || literal.equals("false") || NUMBER.matcher(literal).matches()) {
+                return literal;
+            }
+            position = start;
+            throw error("value expected");
+        }
+
+        private String readString() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (position < json.length()) {
+                char c = json.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= json.length()) {
+                    break;
+                }
+                char escaped = json.charAt(position++);
+                switch (escaped) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        value.append(escaped);
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > json.length()) {
+                            throw error("unicode escape expected");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("unicode escape expected");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        throw error("unknown escape \\" + escaped);
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        private void expect(char expected) {
+            if (peek() != expected) {
+                throw error("'" + expected + "' expected");
+            }
+            position++;
+        }
+
+        private char next(char first, char second) {
+            char c = peek();
+            if (c != first && c != second) {
+                throw error("'" + first + "' or '" + second + "' expected");
+            }
+            position++;
+            return c;
+        }
+
+        /**
+         * @return the next character which isn't whitespace, without consuming it
+         */
+        private char peek() {
+            skipWhitespace();
+            if (position >= json.length()) {
+                throw error("unexpected end of text");
+            }
+            return json.charAt(position);
+        }
+
+        void skipWhitespace() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                position++;
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at " + position);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package hudson.plugins.audit_trail;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compresses rotated audit log files on low priority background threads, so that the file being written to is never
+ * waiting for a compression.
+ * <p>
+ * A file is compressed into a temporary file, which then replaces it. Files can be renamed or deleted while they are
+ * compressed, as {@link AuditLogOutput} does when rotating generations, as long as it is done through
+ * {@link #move(Path, Path)} and {@link #delete(Path)}: the compressed file then takes the new name of the file, or is
+ * dropped.
+ */
+final class AuditLogCompressor {
+
+    private static final Logger LOGGER = Logger.getLogger(AuditLogCompressor.class.getName());
+    static final int BUFFER_SIZE = 64 * 1024;
+    static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * Held while renaming the files being compressed, by the rotations and once a compression is done, but never while
+     * compressing.
+     */
+    static final Object FILES = new Object();
+    // guarded by FILES, by the current path of the file being compressed
+    private static final Map<Path, Task> PENDING = new HashMap<>();
+
+    private final Compression compression;
+    private final ThreadPoolExecutor executor;
+    private final Statistics statistics;
+
+    /**
+     * @param threads the number of files compressed in parallel
+     * @param statistics where the compressions are recorded, shared by the successive compressors of a logger
+     */
+    AuditLogCompressor(Compression compression, int threads, Statistics statistics) {
+        this.compression = compression;
+        this.statistics = statistics;
+        int parallelism = Math.max(1, threads);
+        // the threads stop when idle, so that a discarded compressor doesn't leak them
+        this.executor = new ThreadPoolExecutor(
+                parallelism, parallelism, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+                    Thread thread = new Thread(task, "AuditTrail log file compression");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * @return whether this compressor already compresses with the given settings
+     */
+    boolean compresses(Compression compression, int threads) {
+        return this.compression == compression && executor.getCorePoolSize() == Math.max(1, threads);
+    }
+
+    /**
+     * @return the file the given one is compressed into
+     */
+    Path target(Path source) {
+        return source.resolveSibling(source.getFileName() + compression.getSuffix());
+    }
+
+    /**
+     * Replaces the given file by its compressed version, in the background.
+     *
+     * @param listener notified once the file is replaced, unless it was deleted meanwhile
+     */
+    void compress(Path source, @CheckForNull Listener listener) {
+        Task task = new Task(source.toAbsolutePath(), listener);
+        synchronized (FILES) {
+            if (PENDING.putIfAbsent(task.source, task) != null) {
+                return;
+            }
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // shut down meanwhile, the file stays uncompressed
+            synchronized (FILES) {
+                PENDING.remove(task.source, task);
+            }
+        }
+    }
+
+    /**
+     * Renames a file, its compressed versions and its {@link AuditLogIndex index}, following its compression if it is
+     * in progress.
+     */
+    static void move(Path from, Path to) throws IOException {
+        synchronized (FILES) {
+            if (Files.isRegularFile(from)) {
+                Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+                Task task = PENDING.remove(from.toAbsolutePath());
+                if (task != null) {
+                    task.source = to.toAbsolutePath();
+                    PENDING.put(task.source, task);
+                }
+            }
+            for (Compression compression : Compression.values()) {
+                if (compression == Compression.NONE) {
+                    continue;
+                }
+                Path compressed = from.resolveSibling(from.getFileName() + compression.getSuffix());
+                if (Files.isRegularFile(compressed)) {
+                    Files.move(
+                            compressed,
+                            to.resolveSibling(to.getFileName() + compression.getSuffix()),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Path index = AuditLogIndex.indexOf(from);
+            if (Files.isRegularFile(index)) {
+                Files.move(index, AuditLogIndex.indexOf(to), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * Deletes a file, its compressed versions and its {@link AuditLogIndex index}, cancelling its compression if it
+     * is in progress. The file may be given by the name of one of its compressed versions.
+     */
+    static void delete(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        for (Compression compression : Compression.values()) {
+            if (compression != Compression.NONE && name.endsWith(compression.getSuffix())) {
+                file = file.resolveSibling(name.substring(0, name.length() - compression.getSuffix().length()));
+                break;
+            }
+        }
+        synchronized (FILES) {
+            Task task = PENDING.remove(file.toAbsolutePath());
+            if (task != null) {
+                task.cancelled = true;
+            }
+            for (Compression compression : Compression.values()) {
+                Files.deleteIfExists(file.resolveSibling(file.getFileName() + compression.getSuffix()));
+            }
+            Files.deleteIfExists(AuditLogIndex.indexOf(file));
+        }
+    }
+
+    /**
+     * Lets the pending compressions complete, then stops the threads.
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Notified once a file is replaced by its compressed version, by the compressing thread, without holding any lock.
+     */
+    interface Listener {
+        /**
+         * @param checksum the CRC32 of the compressed file
+         */
+        void compressed(Path source, Path target, long size, String checksum);
+    }
+
+    private final class Task implements Runnable {
+        private final Listener listener;
+        // both guarded by FILES
+        private Path source;
+        private boolean cancelled;
+
+        Task(Path source, @CheckForNull Listener listener) {
+            this.source = source;
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            Path from;
+            synchronized (FILES) {
+                if (cancelled) {
+                    return;
+                }
+                from = source;
+            }
+            long start = System.nanoTime();
+            Path temporary = null;
+            long read = 0;
+            CRC32 crc = new CRC32();
+            try {
+                temporary = Files.createTempFile(
+                        from.toAbsolutePath().getParent(),
+                        "." + from.getFileName() + compression.getSuffix(),
+                        TEMPORARY_SUFFIX);
+                // the file stays readable when renamed by a rotation meanwhile
+                try (InputStream in = Files.newInputStream(from);
+                        OutputStream out = compression.wrap(new BufferedOutputStream(
+                                new CheckedOutputStream(Files.newOutputStream(temporary), crc), BUFFER_SIZE))) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int count;
+                    while ((count = in.read(buffer)) >= 0) {
+                        out.write(buffer, 0, count);
+                        read += count;
+                    }
+                }
+            } catch (IOException e) {
+                if (!(e instanceof NoSuchFileException)) {
+                    LOGGER.log(Level.WARNING, "Couldn't compress the audit log file " + from, e);
+                }
+                synchronized (FILES) {
+                    PENDING.remove(source, this);
+                }
+                deleteQuietly(temporary);
+                return;
+            }
+            Path compressed;
+            Path target;
+            long size;
+            synchronized (FILES) {
+                PENDING.remove(source, this);
+                if (cancelled) {
+                    deleteQuietly(temporary);
+                    return;
+                }
+                compressed = source;
+                target = target(source);
+                try {
+                    size = Files.size(temporary);
+                    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+                    Files.delete(source);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Couldn't replace the audit log file " + source + " by " + target, e);
+                    deleteQuietly(temporary);
+                    return;
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            statistics.record(read, size, elapsed);
+            LOGGER.log(Level.FINE, "Compressed {0} from {1} to {2} bytes in {3} ms", new Object[] {
+                compressed, read, size, TimeUnit.NANOSECONDS.toMillis(elapsed)
+            });
+            if (listener != null) {
+                listener.compressed(compressed, target, size, String.format("%08x", crc.getValue()));
+            }
+        }
+    }
+
+    private static void deleteQuietly(@CheckForNull Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Couldn't delete " + file, e);
+        }
+    }
+
+    /**
+     * Throughput and ratio of the compressions of a logger.
+     */
+    static final class Statistics {
+
+        private final LongAdder files = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        void record(long in, long out, long elapsed) {
+            files.increment();
+            bytesIn.add(in);
+            bytesOut.add(out);
+            nanos.add(elapsed);
+        }
+
+        long getFiles() {
+            return files.sum();
+        }
+
+        long getBytesIn() {
+            return bytesIn.sum();
+        }
+
+        long getBytesOut() {
+            return bytesOut.sum();
+        }
+
+        /**
+         * @return the size of the compressed files relative to the original ones, {@code 1} if nothing was compressed
+         */
+        double getRatio() {
+            long in = bytesIn.sum();
+            return in == 0 ? 1 : (double) bytesOut.sum() / in;
+        }
+
+        /**
+         * @return the number of original bytes compressed per second
+         */
+        long getThroughput() {
+            long elapsed = nanos.sum();
+            return elapsed == 0 ? 0 : (long) (bytesIn.sum() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package hudson.plugins.audit_trail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends audit lines to a file through a {@link FileChannel}, as a lighter replacement of
+ * {@link java.util.logging.FileHandler}.
+ * <p>
+ * Lines are encoded straight into a direct buffer, which is only written when it is full or when {@link #flush()} is
+ * called, so that a burst of events costs a single write.
+ */
+final class AuditLogFileWriter extends AuditLogOutput {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8
+            .newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    // all guarded by this
+    private FileChannel channel;
+    private long size;
+
+    AuditLogFileWriter(String pattern, long limit, int count) throws IOException {
+        this(pattern, limit, count, new SyncStatistics());
+    }
+
+    AuditLogFileWriter(String pattern, long limit, int count, SyncStatistics statistics) throws IOException {
+        super(pattern, limit, count, statistics);
+        open(true);
+    }
+
+    private void open(boolean append) throws IOException {
+        Path file = prepareFile();
+        channel = append
+                ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+                : FileChannel.open(
+                        file,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+        size = channel.size();
+    }
+
+    /**
+     * Buffers {@code prefix}, {@code message} and a line separator.
+     */
+    @Override
+    synchronized void appendLine(long timestamp, CharSequence prefix, ByteBuffer message) throws IOException {
+        long offset = size + buffer.position();
+        put(prefix);
+        put(message);
+        put('\n');
+        lineAppended(timestamp, offset);
+        if (limit > 0 && size + buffer.position() >= limit) {
+            // rotated between lines only, as the java.util.logging.FileHandler does
+            writeBuffer();
+            rotate();
+        }
+    }
+
+    private void put(CharSequence text) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        while (encoder.encode(chars, buffer, true) == CoderResult.OVERFLOW) {
+            writeBuffer();
+        }
+        while (encoder.flush(buffer) == CoderResult.OVERFLOW) {
+            writeBuffer();
+        }
+    }
+
+    private void put(ByteBuffer data) throws IOException {
+        ByteBuffer source = data.duplicate();
+        while (source.remaining() > buffer.remaining()) {
+            ByteBuffer chunk = source.slice();
+            chunk.limit(buffer.remaining());
+            buffer.put(chunk);
+            source.position(source.position() + chunk.limit());
+            writeBuffer();
+        }
+        buffer.put(source);
+    }
+
+    private void put(char c) throws IOException {
+        if (!buffer.hasRemaining()) {
+            writeBuffer();
+        }
+        buffer.put((byte) c);
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                size += channel.write(buffer);
+            }
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    private void rotate() throws IOException {
+        if (isDurable()) {
+            // the background thread cannot force a closed channel
+            force(channel);
+        }
+        channel.close();
+        shiftGenerations();
+        open(false);
+    }
+
+    /**
+     * Writes the buffered lines.
+     */
+    @Override
+    synchronized void flush() throws IOException {
+        if (buffer.position() > 0) {
+            writeBuffer();
+        }
+    }
+
+    @Override
+    synchronized long length() {
+        return size + buffer.position();
+    }
+
+    /**
+     * Only holds the lock while writing the buffered lines, the delivery thread carrying on during the sync.
+     */
+    @Override
+    void force() throws IOException {
+        FileChannel current;
+        synchronized (this) {
+            flush();
+            current = channel;
+        }
+        force(current);
+    }
+
+    private void force(FileChannel target) throws IOException {
+        long start = System.nanoTime();
+        target.force(false);
+        recordSync(System.nanoTime() - start);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+            if (isDurable() && channel.isOpen()) {
+                force(channel);
+            }
+        } finally {
+            stopSync();
+            closeIndex();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package hudson.plugins.audit_trail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A sparse index of an audit log file, mapping the time of some of its events to the offset of their line, so that
+ * the events of a time range can be read without reading the whole file.
+ * <p>
+ * The index is a sidecar file, named after the log file with a {@code .idx} extension, made of 16 bytes records: the
+ * time of an event in milliseconds since the epoch and the offset of its line, both big-endian. A record is added for
+ * the first line of the file, then every given number of events or bytes. As everything it holds can be found in the
+ * log file, an index that is missing or doesn't match its log file is rebuilt from it.
+ */
+final class AuditLogIndex implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(AuditLogIndex.class.getName());
+    static final String SUFFIX = ".idx";
+    static final int RECORD_SIZE = 2 * Long.BYTES;
+    static final int DEFAULT_EVENTS = 1000;
+    static final long DEFAULT_BYTES = 64 * 1024;
+
+    /**
+     * Finds the time of the event starting a line of a log file.
+     */
+    interface TimestampParser {
+        /**
+         * @return the time of the event in milliseconds since the epoch, or {@code -1} if the line doesn't start an
+         *     event, such as the second line of a script
+         */
+        long parse(String line);
+    }
+
+    /**
+     * How often records are added.
+     */
+    static final class Settings {
+        final int events;
+        final long bytes;
+        final TimestampParser parser;
+
+        /**
+         * @param events the number of events between two records, {@code 0} for no limit
+         * @param bytes the number of bytes between two records, {@code 0} for no limit
+         */
+        Settings(int events, long bytes, TimestampParser parser) {
+            this.events = Math.max(0, events);
+            this.bytes = Math.max(0, bytes);
+            this.parser = parser;
+        }
+
+        boolean isDue(int eventsSince, long bytesSince) {
+            return (events > 0 && eventsSince >= events) || (bytes > 0 && bytesSince >= bytes);
+        }
+    }
+
+    private final Settings settings;
+    private final FileChannel channel;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    // all guarded by the output writing the log file
+    private int eventsSince;
+    private long lastOffset = -1;
+
+    private AuditLogIndex(Settings settings, FileChannel channel, long lastOffset) {
+        this.settings = settings;
+        this.channel = channel;
+        this.lastOffset = lastOffset;
+    }
+
+    static Path indexOf(Path logFile) {
+        return logFile.resolveSibling(logFile.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Opens the index of a log file to add records to it, rebuilding it if it doesn't match the log file.
+     *
+     * @param length the length of the log file
+     */
+    static AuditLogIndex open(Path logFile, long length, Settings settings) throws IOException {
+        Path file = indexOf(logFile);
+        long lastOffset = lastOffset(file, length);
+        if (lastOffset == -2) {
+            if (length > 0) {
+                LOGGER.log(Level.FINE, "Rebuilding the index of {0}", logFile);
+            }
+            try (FileChannel rebuilt = FileChannel.open(
+                    file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                lastOffset = rebuild(logFile, length, settings, rebuilt);
+            }
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return new AuditLogIndex(settings, channel, lastOffset);
+    }
+
+    /**
+     * @return the offset of the last record, {@code -1} if there is none, {@code -2} if the index is missing or
+     *     doesn't match a log file of the given length
+     */
+    private static long lastOffset(Path file, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size % RECORD_SIZE != 0) {
+                return -2;
+            }
+            if (size == 0) {
+                return length == 0 ? -1 : -2;
+            }
+            ByteBuffer last = ByteBuffer.allocate(RECORD_SIZE);
+            while (last.hasRemaining() && channel.read(last, size - RECORD_SIZE + last.position()) >= 0) {
+                // reads the whole record
+            }
+            long offset = last.getLong(Long.BYTES);
+            return offset < length ? offset : -2;
+        } catch (NoSuchFileException e) {
+            return -2;
+        }
+    }
+
+    /**
+     * Adds the records of the first {@code length} bytes of a log file to an empty index.
+     *
+     * @return the offset of the last record, {@code -1} if there is none
+     */
+    private static long rebuild(Path logFile, long length, Settings settings, WritableByteChannel index)
+            throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        long lastOffset = -1;
+        int eventsSince = 0;
+        try (LineReader lines = new LineReader(Files.newInputStream(logFile), length)) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                long timestamp = settings.parser.parse(line);
+                if (timestamp < 0) {
+                    continue;
+                }
+                eventsSince++;
+                if (lastOffset < 0 || settings.isDue(eventsSince, lines.lineStart - lastOffset)) {
+                    record.clear().putLong(timestamp).putLong(lines.lineStart).flip();
+                    while (record.hasRemaining()) {
+                        index.write(record);
+                    }
+                    lastOffset = lines.lineStart;
+                    eventsSince = 0;
+                }
+            }
+        }
+        return lastOffset;
+    }
+
+    /**
+     * Records the line of an event if it is due, to be called by the output once the line is appended.
+     *
+     * @param offset where the line starts in the log file
+     */
+    void lineAppended(long timestamp, long offset) throws IOException {
+        eventsSince++;
+        if (lastOffset >= 0 && !settings.isDue(eventsSince, offset - lastOffset)) {
+            return;
+        }
+        record.clear().putLong(timestamp).putLong(offset).flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        lastOffset = offset;
+        eventsSince = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @return the offset of the last indexed line of an event older than {@code from}, from which to read the
+     *     events of a range starting at {@code from}
+     */
+    private static long seek(byte[] records, long from) {
+        ByteBuffer buffer = ByteBuffer.wrap(records);
+        // binary search of the last record older than from, a partly written last record being ignored
+        int low = 0;
+        int high = records.length / RECORD_SIZE - 1;
+        long offset = 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getLong(middle * RECORD_SIZE) < from) {
+                offset = buffer.getLong(middle * RECORD_SIZE + Long.BYTES);
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Reads the lines of the events of the given range, in the order they were written, the lines following the
+     * first one of an event included. A log file that was compressed is decompressed up to the indexed offset, and
+     * the index of a log file that isn't is rebuilt in memory if it doesn't match the log file.
+     *
+     * @param logFile the log file, which may have been replaced by its compressed version
+     * @param from the start of the range, in milliseconds since the epoch, included
+     * @param to the end of the range, in milliseconds since the epoch, included
+     */
+    static void read(Path logFile, long from, long to, TimestampParser parser, Consumer<String> consumer)
+            throws IOException {
+        Path index = indexOf(logFile);
+        InputStream in = null;
+        byte[] records = null;
+        if (Files.isRegularFile(logFile)) {
+            long length = Files.size(logFile);
+            if (lastOffset(index, length) != -2) {
+                records = Files.readAllBytes(index);
+            } else {
+                ByteArrayOutputStream rebuilt = new ByteArrayOutputStream();
+                rebuild(logFile, length, new Settings(0, DEFAULT_BYTES, parser), Channels.newChannel(rebuilt));
+                records = rebuilt.toByteArray();
+            }
+            in = Files.newInputStream(logFile);
+        } else {
+            for (Compression compression : Compression.values()) {
+                Path compressed = logFile.resolveSibling(logFile.getFileName() + compression.getSuffix());
+                if (compression != Compression.NONE && Files.isRegularFile(compressed)) {
+                    in = compression.unwrap(Files.newInputStream(compressed));
+                    break;
+                }
+            }
+            if (in == null) {
+                throw new NoSuchFileException(logFile.toString());
+            }
+            if (Files.isRegularFile(index)) {
+                records = Files.readAllBytes(index);
+            }
+        }
+        try (LineReader lines = new LineReader(in, Long.MAX_VALUE)) {
+            if (records != null) {
+                lines.skip(seek(records, from));
+            }
+            long current = -1;
+            String line;
+            while ((line = lines.readLine()) != null) {
+                long timestamp = parser.parse(line);
+                if (timestamp >= 0) {
+                    current = timestamp;
+                }
+                if (current > to) {
+                    return;
+                }
+                if (current >= from) {
+                    consumer.accept(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param timestampPattern the {@link SimpleDateFormat} pattern of the time starting the lines of the text format
+     * @return the parser of the lines written with the given format
+     */
+    static TimestampParser parserOf(LogFormat format, String timestampPattern) {
+        if (format == LogFormat.JSON_LINES) {
+            return AuditLogIndex::parseJsonLine;
+        }
+        // not thread-safe, so one per parser
+        SimpleDateFormat dateFormat = new SimpleDateFormat(timestampPattern);
+        return line -> {
+            Date date = dateFormat.parse(line, new ParsePosition(0));
+            return date != null ? date.getTime() : -1;
+        };
+    }
+
+    private static long parseJsonLine(String line) {
+        String prefix = "{\"timestamp\":";
+        if (!line.startsWith(prefix)) {
+            return -1;
+        }
+        long timestamp = 0;
+        int i = prefix.length();
+        for (; i < line.length() && Character.isDigit(line.charAt(i)); i++) {
+            timestamp = timestamp * 10 + (line.charAt(i) - '0');
+        }
+        return i > prefix.length() ? timestamp : -1;
+    }
+
+    /**
+     * Reads the UTF-8 lines of a log file, keeping track of the offset of each line.
+     */
+    private static final class LineReader implements Closeable {
+        private final InputStream in;
+        private final long length;
+        private final byte[] buffer = new byte[AuditLogCompressor.BUFFER_SIZE];
+        private int position;
+        private int limit;
+        private long offset;
+        private long lineStart;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+
+        LineReader(InputStream in, long length) {
+            this.in = in;
+            this.length = length;
+        }
+
+        void skip(long bytes) throws IOException {
+            long skipped = 0;
+            while (skipped < bytes) {
+                long count = in.skip(bytes - skipped);
+                if (count <= 0) {
+                    break;
+                }
+                skipped += count;
+            }
+            offset = skipped;
+        }
+
+        /**
+         * @return the next complete line, {@code null} at the end of the file or once {@code length} bytes are read
+         */
+        String readLine() throws IOException {
+            line.reset();
+            lineStart = offset;
+            while (true) {
+                if (position == limit) {
+                    if (offset >= length) {
+                        return null;
+                    }
+                    limit = in.read(buffer, 0, (int) Math.min(buffer.length, length - offset));
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        // an incomplete last line is left to the next read
+                        return null;
+                    }
+                }
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                line.write(buffer, start, position - start);
+                offset += position - start;
+                if (position < limit) {
+                    position++;
+                    offset++;
+                    return line.toString(StandardCharsets.UTF_8);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package hudson.plugins.audit_trail;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * The files written by a {@link LogFileDailyRotationAuditLogger}, oldest first, so that finding the current file and
+ * the ones to remove does not require listing and sorting the whole directory.
+ * <p>
+ * The manifest is a text file with one line per log file: its name, the start of its period, and once the file is
+ * rotated, its size and CRC32 checksum, the ones of the compressed file if it is compressed. The last line is the
+ * checksum of the previous ones, so that a manifest that was truncated or edited is detected as corrupt. It is
+ * replaced atomically each time it changes.
+ */
+final class AuditLogManifest {
+
+    private static final Logger LOGGER = Logger.getLogger(AuditLogManifest.class.getName());
+    static final String SUFFIX = ".manifest";
+    private static final String HEADER = "# audit-trail log files, oldest first: name, period start, size, CRC32";
+    private static final String CHECKSUM = "# ";
+    private static final String UNKNOWN = "-";
+
+    static final class Entry {
+        final String name;
+        final OffsetDateTime start;
+        // -1 while the file is written to
+        long size = -1;
+        @CheckForNull
+        String checksum;
+
+        Entry(String name, OffsetDateTime start) {
+            this.name = name;
+            this.start = start;
+        }
+    }
+
+    private final Path file;
+    private final List<Entry> entries = new ArrayList<>();
+
+    AuditLogManifest(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the manifest of the given log file pattern, or {@code null} if it is missing or corrupt
+     */
+    @CheckForNull
+    static AuditLogManifest read(Path file) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Couldn't read " + file + ", listing the log files instead", e);
+            return null;
+        }
+        AuditLogManifest manifest = new AuditLogManifest(file);
+        if (lines.size() < 2 || !HEADER.equals(lines.get(0))) {
+            LOGGER.log(Level.WARNING, "Ignoring the corrupt manifest {0}", file);
+            return null;
+        }
+        List<String> content = lines.subList(0, lines.size() - 1);
+        if (!(CHECKSUM + checksum(content)).equals(lines.get(lines.size() - 1))) {
+            LOGGER.log(Level.WARNING, "Ignoring the manifest {0} as its checksum does not match", file);
+            return null;
+        }
+        try {
+            for (String line : content.subList(1, content.size())) {
+                String[] fields = line.split("\t");
+                if (fields.length != 4) {
+                    throw new IllegalArgumentException(line);
+                }
+                Entry entry = new Entry(fields[0], OffsetDateTime.parse(fields[1]));
+                if (!UNKNOWN.equals(fields[2])) {
+                    entry.size = Long.parseLong(fields[2]);
+                    entry.checksum = UNKNOWN.equals(fields[3]) ? null : fields[3];
+                }
+                manifest.entries.add(entry);
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            LOGGER.log(Level.WARNING, "Ignoring the corrupt manifest " + file, e);
+            return null;
+        }
+        return manifest;
+    }
+
+    private static String checksum(List<String> lines) {
+        CRC32 crc = new CRC32();
+        for (String line : lines) {
+            crc.update(line.getBytes(StandardCharsets.UTF_8));
+            crc.update('\n');
+        }
+        return String.format("%08x", crc.getValue());
+    }
+
+    /**
+     * @return the entries, oldest first
+     */
+    List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    @CheckForNull
+    Entry latest() {
+        return entries.isEmpty() ? null : entries.get(entries.size() - 1);
+    }
+
+    /**
+     * Records that the given file is now written to, unless it already is the latest one.
+     *
+     * @return whether the manifest changed
+     */
+    boolean add(String name, OffsetDateTime start) {
+        Entry latest = latest();
+        if (latest != null && latest.name.equals(name)) {
+            return false;
+        }
+        entries.removeIf(entry -> entry.name.equals(name));
+        entries.add(new Entry(name, start));
+        return true;
+    }
+
+    /**
+     * Forgets the given file, which was removed before anything was written to it.
+     */
+    void remove(String name) {
+        entries.removeIf(entry -> entry.name.equals(name));
+    }
+
+    /**
+     * Records the size and optionally the checksum of the given file, which is not written to anymore.
+     */
+    void seal(String name, boolean checksum) {
+        for (Entry entry : entries) {
+            if (entry.name.equals(name)) {
+                Path sealed = file.resolveSibling(name);
+                try {
+                    entry.checksum = checksum ? checksum(sealed) : null;
+                    entry.size = Files.size(sealed);
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Couldn't compute the checksum of " + sealed, e);
+                    entry.size = -1;
+                    entry.checksum = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Records that the given file was replaced by its compressed version.
+     *
+     * @return whether the file is still in the manifest
+     */
+    boolean compressed(String name, String compressedName, long size, String checksum) {
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (entry.name.equals(name)) {
+                Entry compressed = new Entry(compressedName, entry.start);
+                compressed.size = size;
+                compressed.checksum = checksum;
+                entries.set(i, compressed);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String checksum(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return String.format("%08x", crc.getValue());
+    }
+
+    /**
+     * Removes the entries of the oldest files until none of the limits is exceeded, the latest file being always kept.
+     *
+     * @param keep the maximum number of files, {@code 0} for no limit
+     * @param maxBytes the maximum total size of the files but the latest one, {@code 0} for no limit
+     * @param endedBefore the files ending before it are removed, {@code null} for no limit
+     * @return the removed entries, oldest first
+     */
+    List<Entry> expire(int keep, long maxBytes, @CheckForNull Instant endedBefore) {
+        int last = entries.size() - 1;
+        long total = 0;
+        for (int i = 0; i < last; i++) {
+            total += Math.max(0, entries.get(i).size);
+        }
+        int expired = 0;
+        while (expired < last) {
+            boolean tooMany = keep > 0 && entries.size() - expired > keep;
+            boolean tooLarge = maxBytes > 0 && total > maxBytes;
+            // a file ends when the next one starts
+            boolean tooOld = endedBefore != null
+                    && entries.get(expired + 1).start.toInstant().isBefore(endedBefore);
+            if (!tooMany && !tooLarge && !tooOld) {
+                break;
+            }
+            total -= Math.max(0, entries.get(expired).size);
+            expired++;
+        }
+        List<Entry> removed = new ArrayList<>(entries.subList(0, expired));
+        entries.subList(0, expired).clear();
+        return removed;
+    }
+
+    /**
+     * Puts back entries removed by {@link #expire} whose files could not be deleted, so that they are retried.
+     */
+    void restore(List<Entry> undeleted) {
+        entries.addAll(0, undeleted);
+    }
+
+    /**
+     * Replaces the manifest on disk, atomically when the file system supports it.
+     */
+    void write() throws IOException {
+        List<String> lines = new ArrayList<>(entries.size() + 2);
+        lines.add(HEADER);
+        for (Entry entry : entries) {
+            lines.add(String.join(
+                    "\t",
+                    entry.name,
+                    entry.start.toString(),
+                    entry.size < 0 ? UNKNOWN : Long.toString(entry.size),
+                    entry.checksum == null ? UNKNOWN : entry.checksum));
+        }
+        lines.add(CHECKSUM + checksum(lines));
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, lines, StandardCharsets.UTF_8);
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
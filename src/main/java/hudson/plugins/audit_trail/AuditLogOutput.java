@@ -0,0 +1,392 @@
+package hudson.plugins.audit_trail;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An audit log file written by a {@link AbstractLogFileAuditLogger} without {@link java.util.logging.FileHandler}.
+ * <p>
+ * Files are named and rotated like the ones of a {@link java.util.logging.FileHandler} created with the same pattern,
+ * limit and count: once the current file reaches the limit, generation {@code n} is renamed to {@code n + 1} and a new
+ * generation {@code 0} is started. Unlike {@link java.util.logging.FileHandler}, no lock file is created and lines are
+ * always encoded in UTF-8.
+ * <p>
+ * Depending on the {@link Durability}, a background thread forces the written lines to the storage device, so that
+ * the delivery thread keeps on writing while the sync is in progress.
+ */
+abstract class AuditLogOutput implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(AuditLogOutput.class.getName());
+
+    final String pattern;
+    final long limit;
+    final int count;
+    private final SyncStatistics statistics;
+
+    // guarded by this
+    private int linesSinceSync;
+
+    // all guarded by this
+    @CheckForNull
+    private AuditLogIndex.Settings indexSettings;
+    @CheckForNull
+    private AuditLogIndex index;
+    private boolean indexFailed;
+
+    private volatile Durability durability = Durability.NONE;
+    @CheckForNull
+    private volatile AuditLogCompressor compressor;
+    private volatile long syncIntervalMillis;
+    private volatile int syncEvents;
+    // whether lines were appended since the last sync
+    private volatile boolean dirty;
+
+    private final Object syncLock = new Object();
+    // all guarded by syncLock
+    private long syncRequested;
+    private long syncCompleted;
+    private boolean closed;
+    private Thread syncThread;
+
+    /**
+     * @param limit the size in bytes after which files are rotated, {@code 0} for no limit
+     * @param count the number of generations to keep
+     * @param statistics where the sync latencies are recorded, shared by the successive outputs of a logger
+     */
+    AuditLogOutput(String pattern, long limit, int count, SyncStatistics statistics) {
+        this.pattern = pattern;
+        this.limit = Math.max(0, limit);
+        this.count = Math.max(1, count);
+        this.statistics = statistics;
+    }
+
+    /**
+     * @return the file of the given generation, named as {@link java.util.logging.FileHandler} would
+     */
+    static File generate(String pattern, int generation, int count) {
+        StringBuilder name = new StringBuilder(pattern.length() + 4);
+        boolean sawGeneration = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '%' && i + 1 < pattern.length()) {
+                char next = pattern.charAt(i + 1);
+                switch (next) {
+                    case 't':
+                        name.append(System.getProperty("java.io.tmpdir"));
+                        i++;
+                        continue;
+                    case 'h':
+                        name.append(System.getProperty("user.home"));
+                        i++;
+                        continue;
+                    case 'g':
+                        name.append(generation);
+                        sawGeneration = true;
+                        i++;
+                        continue;
+                    case 'u':
+                        // without lock files there is no conflict to make unique
+                        name.append('0');
+                        i++;
+                        continue;
+                    case '%':
+                        name.append('%');
+                        i++;
+                        continue;
+                    default:
+                        break;
+                }
+            }
+            name.append(c);
+        }
+        if (count > 1 && !sawGeneration) {
+            name.append('.').append(generation);
+        }
+        return new File(name.toString());
+    }
+
+    File getFile() {
+        return generate(pattern, 0, count);
+    }
+
+    /**
+     * @return the current file, once its parent directories are created
+     */
+    final Path prepareFile() throws IOException {
+        Path file = getFile().toPath();
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        return file;
+    }
+
+    /**
+     * Renames generation {@code n} to {@code n + 1}, the current file having been closed, then compresses generation
+     * {@code 1} in the background if a {@link Compression} is selected.
+     * <p>
+     * Compressed generations are renamed along, as well as the ones being compressed.
+     */
+    final void shiftGenerations() throws IOException {
+        closeIndex();
+        if (count < 2) {
+            return;
+        }
+        synchronized (AuditLogCompressor.FILES) {
+            AuditLogCompressor.delete(generate(pattern, count - 1, count).toPath());
+            for (int generation = count - 2; generation >= 0; generation--) {
+                AuditLogCompressor.move(
+                        generate(pattern, generation, count).toPath(),
+                        generate(pattern, generation + 1, count).toPath());
+            }
+        }
+        AuditLogCompressor c = compressor;
+        if (c != null) {
+            c.compress(generate(pattern, 1, count).toPath(), null);
+        }
+    }
+
+    /**
+     * @param compressor compresses the rotated generations, {@code null} to keep them as they are
+     */
+    void setCompressor(@CheckForNull AuditLogCompressor compressor) {
+        this.compressor = compressor;
+    }
+
+    /**
+     * @param settings how often the lines of the current file are indexed, {@code null} to not index them
+     */
+    synchronized void setIndex(@CheckForNull AuditLogIndex.Settings settings) {
+        this.indexSettings = settings;
+        // reopened with the next line, with the new settings
+        closeIndex();
+    }
+
+    /**
+     * @param intervalMillis used by {@link Durability#INTERVAL}
+     * @param events used by {@link Durability#EVERY_N_EVENTS}
+     */
+    void setDurability(Durability durability, long intervalMillis, int events) {
+        this.durability = durability != null ? durability : Durability.NONE;
+        this.syncIntervalMillis = Math.max(1, intervalMillis);
+        this.syncEvents = Math.max(1, events);
+        synchronized (syncLock) {
+            if (this.durability != Durability.NONE && syncThread == null && !closed) {
+                syncThread = new Thread(this::runSync, "AuditTrail log file sync " + getFile().getName());
+                syncThread.setDaemon(true);
+                syncThread.start();
+            }
+            // lets the thread pick up the new interval
+            syncLock.notifyAll();
+        }
+    }
+
+    final boolean isDurable() {
+        return durability != Durability.NONE;
+    }
+
+    /**
+     * Appends {@code prefix}, {@code message} and a line separator.
+     *
+     * @param timestamp the time of the event, in milliseconds since the epoch, by which the line is indexed
+     */
+    abstract void appendLine(long timestamp, CharSequence prefix, ByteBuffer message) throws IOException;
+
+    void appendLine(long timestamp, CharSequence prefix, CharSequence message) throws IOException {
+        appendLine(timestamp, prefix, StandardCharsets.UTF_8.encode(CharBuffer.wrap(message)));
+    }
+
+    void appendLine(CharSequence prefix, ByteBuffer message) throws IOException {
+        appendLine(System.currentTimeMillis(), prefix, message);
+    }
+
+    void appendLine(CharSequence prefix, CharSequence message) throws IOException {
+        appendLine(System.currentTimeMillis(), prefix, message);
+    }
+
+    /**
+     * To be called by {@link #appendLine} once the line is appended, before rotating the file, while holding the
+     * lock of this output.
+     *
+     * @param offset where the line starts in the current file
+     */
+    final void lineAppended(long timestamp, long offset) {
+        dirty = true;
+        if (durability == Durability.EVERY_N_EVENTS && ++linesSinceSync >= syncEvents) {
+            linesSinceSync = 0;
+            requestSync();
+        }
+        AuditLogIndex.Settings settings = indexSettings;
+        if (settings == null || indexFailed) {
+            return;
+        }
+        try {
+            if (index == null) {
+                // opened with the first line, the lines before it being indexed if the index was lost
+                index = AuditLogIndex.open(getFile().toPath(), offset, settings);
+            }
+            index.lineAppended(timestamp, offset);
+        } catch (IOException e) {
+            // the log file matters more than its index, which is rebuilt the next time the file is opened
+            indexFailed = true;
+            LOGGER.log(Level.WARNING, "Couldn't index the audit log file " + getFile(), e);
+        }
+    }
+
+    /**
+     * Closes the index of the current file, to be called by the subclasses when they close the file, while holding
+     * the lock of this output.
+     */
+    final void closeIndex() {
+        indexFailed = false;
+        if (index != null) {
+            try {
+                index.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Couldn't close the index of " + getFile(), e);
+            }
+            index = null;
+        }
+    }
+
+    /**
+     * Writes the buffered lines, if any.
+     */
+    abstract void flush() throws IOException;
+
+    /**
+     * @return the size of the current file once the buffered lines are written
+     */
+    abstract long length();
+
+    /**
+     * Forces the lines appended so far to the storage device, recording the latency with {@link #recordSync}.
+     * Called by the sync thread.
+     */
+    abstract void force() throws IOException;
+
+    final void recordSync(long elapsedNanos) {
+        statistics.record(elapsedNanos);
+    }
+
+    /**
+     * Writes the buffered lines and waits until they are forced to the storage device by the background thread.
+     */
+    final void sync() throws IOException {
+        flush();
+        long ticket = requestSync();
+        synchronized (syncLock) {
+            try {
+                while (syncCompleted < ticket && !closed && syncThread != null) {
+                    syncLock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private long requestSync() {
+        synchronized (syncLock) {
+            syncLock.notifyAll();
+            return ++syncRequested;
+        }
+    }
+
+    private void runSync() {
+        while (true) {
+            long ticket;
+            synchronized (syncLock) {
+                try {
+                    while (!closed && syncRequested == syncCompleted) {
+                        if (durability == Durability.INTERVAL) {
+                            syncLock.wait(syncIntervalMillis);
+                            if (dirty) {
+                                break;
+                            }
+                        } else {
+                            syncLock.wait();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (closed) {
+                    syncLock.notifyAll();
+                    return;
+                }
+                ticket = syncRequested;
+            }
+            try {
+                // cleared first, so that a line appended meanwhile is synced the next time
+                dirty = false;
+                force();
+            } catch (ClosedChannelException e) {
+                // rotated or closed meanwhile, which forced the file
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Couldn't sync the audit log file " + getFile(), e);
+            }
+            synchronized (syncLock) {
+                syncCompleted = Math.max(syncCompleted, ticket);
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Stops the sync thread, to be called by {@link #close()}.
+     */
+    final void stopSync() {
+        synchronized (syncLock) {
+            closed = true;
+            syncLock.notifyAll();
+        }
+    }
+
+    /**
+     * Latencies of the syncs of a log file.
+     */
+    static final class SyncStatistics {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private volatile long lastNanos;
+
+        void record(long elapsed) {
+            count.increment();
+            nanos.add(elapsed);
+            maxNanos.accumulateAndGet(elapsed, Math::max);
+            lastNanos = elapsed;
+        }
+
+        long getCount() {
+            return count.sum();
+        }
+
+        long getAverageNanos() {
+            long current = count.sum();
+            return current == 0 ? 0 : nanos.sum() / current;
+        }
+
+        long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        long getLastNanos() {
+            return lastNanos;
+        }
+    }
+}
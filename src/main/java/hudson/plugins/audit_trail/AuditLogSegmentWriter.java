@@ -0,0 +1,204 @@
+package hudson.plugins.audit_trail;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Appends audit lines to pre-sized memory-mapped segments of a file, for very high audit volumes: appending a line is
+ * a copy into the page cache, without any system call.
+ * <p>
+ * The segment following the last line is mapped when the current one cannot hold the next line, extending the file,
+ * whose tail is then filled with zeros until it is truncated to the length of the lines on close. If Jenkins stops
+ * before, the next writer opening the file recovers it: everything after the last line separator, zeros or the start
+ * of a line that was being copied, is truncated.
+ * <p>
+ * As the lines are in the page cache as soon as they are appended, {@link #flush()} has nothing to do. Forcing them
+ * to the storage device with a {@link Durability} holds the lock of this writer, so the delivery thread waits for it.
+ */
+final class AuditLogSegmentWriter extends AuditLogOutput {
+
+    private static final Logger LOGGER = Logger.getLogger(AuditLogSegmentWriter.class.getName());
+    static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+    private static final int RECOVERY_CHUNK = 8 * 1024;
+
+    private final int segmentSize;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8
+            .newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    // all guarded by this
+    private FileChannel channel;
+    @CheckForNull
+    private MappedByteBuffer segment;
+    // the offset of the segment in the file
+    private long segmentStart;
+    // the length of the lines written to the file
+    private long length;
+
+    AuditLogSegmentWriter(String pattern, long limit, int count, SyncStatistics statistics) throws IOException {
+        this(pattern, limit, count, DEFAULT_SEGMENT_SIZE, statistics);
+    }
+
+    AuditLogSegmentWriter(String pattern, long limit, int count, int segmentSize, SyncStatistics statistics)
+            throws IOException {
+        super(pattern, limit, count, statistics);
+        this.segmentSize = Math.max(1, segmentSize);
+        open();
+    }
+
+    private void open() throws IOException {
+        Path file = prepareFile();
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        length = recover(channel);
+        if (length < size) {
+            LOGGER.log(
+                    Level.INFO,
+                    "Truncating {0} to its last complete line, dropping {1} bytes",
+                    new Object[] {file, size - length});
+            channel.truncate(length);
+        }
+        map(0);
+    }
+
+    /**
+     * @return the length of the file up to its last line separator
+     */
+    static long recover(FileChannel channel) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(RECOVERY_CHUNK);
+        long position = channel.size();
+        while (position > 0) {
+            int read = (int) Math.min(RECOVERY_CHUNK, position);
+            position -= read;
+            chunk.clear().limit(read);
+            while (chunk.hasRemaining()) {
+                if (channel.read(chunk, position + chunk.position()) < 0) {
+                    break;
+                }
+            }
+            for (int i = chunk.position() - 1; i >= 0; i--) {
+                if (chunk.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Maps the segment starting after the last line, large enough for {@code needed} bytes.
+     */
+    private void map(int needed) throws IOException {
+        // the previous segment is unmapped by the garbage collector
+        segment = null;
+        segmentStart = length;
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, segmentStart, Math.max(segmentSize, needed));
+    }
+
+    @Override
+    synchronized void appendLine(long timestamp, CharSequence prefix, ByteBuffer message) throws IOException {
+        ByteBuffer prefixBytes = encode(prefix);
+        int needed = prefixBytes.remaining() + message.remaining() + 1;
+        MappedByteBuffer current = segment;
+        if (current == null || current.remaining() < needed) {
+            if (current != null && isDurable()) {
+                // the segment is unmapped, so the background thread cannot force it later
+                forceSegment();
+            }
+            map(needed);
+            current = segment;
+        }
+        current.put(prefixBytes);
+        current.put(message.duplicate());
+        current.put((byte) '\n');
+        lineAppended(timestamp, length);
+        length += needed;
+        if (limit > 0 && length >= limit) {
+            // rotated between lines only, as the java.util.logging.FileHandler does
+            rotate();
+        }
+    }
+
+    private ByteBuffer encode(CharSequence text) throws CharacterCodingException {
+        return encoder.reset().encode(CharBuffer.wrap(text));
+    }
+
+    private void rotate() throws IOException {
+        closeFile();
+        shiftGenerations();
+        open();
+    }
+
+    /**
+     * Does nothing, the lines being in the page cache as soon as they are appended.
+     */
+    @Override
+    void flush() {
+        // nothing buffered
+    }
+
+    @Override
+    synchronized long length() {
+        return length;
+    }
+
+    @Override
+    synchronized void force() throws IOException {
+        if (channel.isOpen()) {
+            forceSegment();
+        }
+    }
+
+    private void forceSegment() {
+        MappedByteBuffer current = segment;
+        if (current != null) {
+            long start = System.nanoTime();
+            current.force(0, (int) (length - segmentStart));
+            recordSync(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Truncates the zeros following the last line before closing the file. The segments being unmapped only when
+     * garbage collected, a platform that cannot truncate a mapped file, as Windows, leaves them to the recovery of the
+     * next writer opening the file.
+     */
+    private void closeFile() throws IOException {
+        try {
+            if (isDurable()) {
+                forceSegment();
+            }
+            segment = null;
+            try {
+                channel.truncate(length);
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Couldn't truncate the audit log file, it will be recovered once reopened", e);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            closeFile();
+        } finally {
+            stopSync();
+            closeIndex();
+        }
+    }
+}
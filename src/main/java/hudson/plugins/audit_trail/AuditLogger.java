@@ -1,10 +1,12 @@
 package hudson.plugins.audit_trail;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.DescriptorExtensionList;
 import hudson.ExtensionPoint;
 import hudson.model.Describable;
 import hudson.model.Descriptor;
 import jenkins.model.Jenkins;
+import org.kohsuke.stapler.DataBoundSetter;
 
 /**
  * @author <a href="mailto:nicolas.deloof@gmail.com">Nicolas De Loof</a>
@@ -12,8 +14,69 @@ import jenkins.model.Jenkins;
  */
 public abstract class AuditLogger implements Describable<AuditLogger>, ExtensionPoint {
 
+    /**
+     * Settings of the queue {@link AuditEventBus} delivers the events of this logger through, {@code 0} and
+     * {@code null} stand for the dispatch settings of {@link AuditTrailPlugin}.
+     */
+    private int queueCapacity;
+
+    @CheckForNull
+    private OverflowPolicy queueOverflowPolicy;
+
     public abstract void log(String event);
 
+    /**
+     * Logs a structured event. The default implementation logs its text rendering with {@link #log(String)},
+     * loggers able to make use of the fields of the event should override it.
+     */
+    public void log(AuditEvent event) {
+        log(event.getMessage());
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    @DataBoundSetter
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(0, queueCapacity);
+    }
+
+    @CheckForNull
+    public OverflowPolicy getQueueOverflowPolicy() {
+        return queueOverflowPolicy;
+    }
+
+    @DataBoundSetter
+    public void setQueueOverflowPolicy(@CheckForNull OverflowPolicy queueOverflowPolicy) {
+        this.queueOverflowPolicy = queueOverflowPolicy;
+    }
+
+    /**
+     * Called by {@link AuditEventBus} once this logger is configured, before any event is delivered to it, so that
+     * it can prepare what the first event would otherwise wait for.
+     */
+    public void start() {
+        // default does nothing
+    }
+
+    /**
+     * Called by the delivery thread of this logger once it has delivered every pending event. Loggers buffering
+     * their output should write it then, so that many events are written at once while none is held back.
+     */
+    public void flush() {
+        // default does nothing
+    }
+
+    /**
+     * @return the breaker guarding the delivery of the events to a remote server, {@code null} for the loggers
+     *     writing locally
+     */
+    @CheckForNull
+    public CircuitBreaker getCircuitBreaker() {
+        return null;
+    }
+
     public Descriptor<AuditLogger> getDescriptor() {
         return Jenkins.get().getDescriptorOrDie(getClass());
     }
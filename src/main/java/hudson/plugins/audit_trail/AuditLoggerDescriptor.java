@@ -0,0 +1,19 @@
+package hudson.plugins.audit_trail;
+
+import hudson.model.Descriptor;
+import hudson.util.ListBoxModel;
+
+/**
+ * Base descriptor of the {@link AuditLogger}s, backing the delivery queue settings every logger shares.
+ */
+public abstract class AuditLoggerDescriptor extends Descriptor<AuditLogger> {
+
+    public ListBoxModel doFillQueueOverflowPolicyItems() {
+        ListBoxModel items = new ListBoxModel();
+        items.add("Same as the dispatch queue", "");
+        for (OverflowPolicy policy : OverflowPolicy.values()) {
+            items.add(policy.getDisplayName(), policy.name());
+        }
+        return items;
+    }
+}
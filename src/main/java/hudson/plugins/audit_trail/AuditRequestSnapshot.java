@@ -0,0 +1,243 @@
+package hudson.plugins.audit_trail;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.User;
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Immutable copy of what the audit trail needs from an {@link HttpServletRequest}.
+ * <p>
+ * It is taken on the request thread so that the asynchronous part of the audit never touches a request object the
+ * container may already have recycled, and never blocks the dispatcher thread on parameter parsing.
+ */
+final class AuditRequestSnapshot {
+
+    private static final Logger LOGGER = Logger.getLogger(AuditRequestSnapshot.class.getName());
+
+    /**
+     * Writes snapshots as single line JSON documents so they can be spilled to disk, escaping the values directly as
+     * {@link AuditEventJson} does so that a parameter value looking like JSON reads back as the same string.
+     */
+    static final AuditDispatchQueue.SpillCodec<AuditRequestSnapshot> SPILL_CODEC =
+            new AuditDispatchQueue.SpillCodec<>() {
+                @NonNull
+                @Override
+                public String encode(@NonNull AuditRequestSnapshot snapshot) {
+                    return snapshot.toJson();
+                }
+
+                @CheckForNull
+                @Override
+                public AuditRequestSnapshot decode(@NonNull String line) {
+                    try {
+                        return fromJson(line);
+                    } catch (IllegalArgumentException e) {
+                        LOGGER.log(Level.FINE, "Unreadable request snapshot " + line, e);
+                        return null;
+                    }
+                }
+            };
+
+    private final long timestamp;
+    private final String uri;
+    private final String method;
+    private final String remoteAddress;
+
+    @CheckForNull
+    private final String queryString;
+
+    private final Map<String, String> parameters;
+
+    @CheckForNull
+    private final String userId;
+
+    @CheckForNull
+    private final String userDisplayName;
+
+    AuditRequestSnapshot(
+            long timestamp,
+            String uri,
+            String method,
+            String remoteAddress,
+            @CheckForNull String queryString,
+            Map<String, String> parameters,
+            @CheckForNull String userId,
+            @CheckForNull String userDisplayName) {
+        this.timestamp = timestamp;
+        this.uri = uri;
+        this.method = method;
+        this.remoteAddress = remoteAddress;
+        this.queryString = queryString;
+        this.parameters = parameters.isEmpty()
+                ? Collections.emptyMap()
+                : Collections.unmodifiableMap(new LinkedHashMap<>(parameters));
+        this.userId = userId;
+        this.userDisplayName = userDisplayName;
+    }
+
+    /**
+     * Captures a request. Must be called on the thread handling the request.
+     *
+     * @param uri            the canonical path of the request
+     * @param user           the user performing the request, if any
+     * @param parameterNames the request parameters to keep, only those are parsed
+     */
+    static AuditRequestSnapshot capture(
+            HttpServletRequest request, String uri, @CheckForNull User user, String... parameterNames) {
+        Map<String, String> parameters = Collections.emptyMap();
+        if (parameterNames.length > 0) {
+            parameters = new LinkedHashMap<>();
+            for (String name : parameterNames) {
+                String value = request.getParameter(name);
+                if (value != null) {
+                    parameters.put(name, value);
+                }
+            }
+        }
+        return new AuditRequestSnapshot(
+                System.currentTimeMillis(),
+                uri,
+                request.getMethod(),
+                request.getRemoteAddr(),
+                request.getQueryString(),
+                parameters,
+                user != null ? user.getId() : null,
+                user != null ? user.getDisplayName() : null);
+    }
+
+    /**
+     * @return when the request was received, in milliseconds since the epoch, which is the time of its audit event
+     *     however late the event is dispatched
+     */
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    String getUri() {
+        return uri;
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @CheckForNull
+    String getQueryString() {
+        return queryString;
+    }
+
+    Map<String, String> getParameters() {
+        return parameters;
+    }
+
+    @CheckForNull
+    String getParameter(String name) {
+        return parameters.get(name);
+    }
+
+    @CheckForNull
+    String getUserId() {
+        return userId;
+    }
+
+    @CheckForNull
+    String getUserDisplayName() {
+        return userDisplayName;
+    }
+
+    /**
+     * @return the snapshot as a single line JSON document, every value written as a string
+     */
+    String toJson() {
+        StringBuilder json = new StringBuilder(128);
+        json.append("{\"timestamp\":").append(timestamp);
+        appendField(json, "uri", uri);
+        appendField(json, "method", method);
+        appendField(json, "remoteAddress", remoteAddress);
+        appendField(json, "queryString", queryString);
+        if (!parameters.isEmpty()) {
+            json.append(",\"parameters\":{");
+            boolean first = true;
+            for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                AuditEventJson.appendString(json, parameter.getKey()).append(':');
+                AuditEventJson.appendString(json, parameter.getValue());
+            }
+            json.append('}');
+        }
+        appendField(json, "userId", userId);
+        appendField(json, "userDisplayName", userDisplayName);
+        return json.append('}').toString();
+    }
+
+    private static void appendField(StringBuilder json, String name, @CheckForNull String value) {
+        if (value != null) {
+            AuditEventJson.appendString(json.append(','), name).append(':');
+            AuditEventJson.appendString(json, value);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the document isn't a snapshot written by {@link #toJson()}
+     */
+    static AuditRequestSnapshot fromJson(String line) {
+        Map<String, Object> json = AuditEventJson.readObject(line);
+        String uri = getString(json, "uri");
+        if (uri == null) {
+            throw new IllegalArgumentException("uri expected");
+        }
+        String timestamp = getString(json, "timestamp");
+        Map<String, String> parameters = new LinkedHashMap<>();
+        Object jsonParameters = json.get("parameters");
+        if (jsonParameters instanceof Map) {
+            for (Map.Entry<?, ?> parameter : ((Map<?, ?>) jsonParameters).entrySet()) {
+                if (parameter.getValue() instanceof String) {
+                    parameters.put((String) parameter.getKey(), (String) parameter.getValue());
+                }
+            }
+        } else if (jsonParameters != null) {
+            throw new IllegalArgumentException("parameters expected");
+        }
+        return new AuditRequestSnapshot(
+                // snapshots spilled before the time was recorded
+                timestamp != null ? Long.parseLong(timestamp) : System.currentTimeMillis(),
+                uri,
+                getString(json, "method"),
+                getString(json, "remoteAddress"),
+                getString(json, "queryString"),
+                parameters,
+                getString(json, "userId"),
+                getString(json, "userDisplayName"));
+    }
+
+    @CheckForNull
+    private static String getString(Map<String, Object> json, String name) {
+        Object value = json.get(name);
+        if (value != null && !(value instanceof String)) {
+            throw new IllegalArgumentException(name + " expected to be a string");
+        }
+        return (String) value;
+    }
+
+    @Override
+    public String toString() {
+        return "AuditRequestSnapshot{" + "uri='"
+                + uri + '\'' + ", method='"
+                + method + '\'' + ", remoteAddress='"
+                + remoteAddress + '\'' + ", userId='"
+                + userId + '\'' + '}';
+    }
+}
@@ -0,0 +1,351 @@
+package hudson.plugins.audit_trail;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lock-free multi-producer, single-consumer ring buffer handing audit entries over to a dispatcher thread.
+ * <p>
+ * The slots are allocated once, so handing an entry over allocates nothing, and producers only contend on a
+ * compare-and-set of the claimed position instead of a lock. A slot holds a reference to the entry rather than a copy
+ * of it: an {@link AuditEvent} is immutable and shared by the buffers of every logger. Each slot carries a sequence
+ * telling whose turn it is: the position of the next producer allowed to write it, that position plus one once the
+ * entry is published, and the position of the next lap once the dispatcher thread has taken the entry.
+ * <p>
+ * Once stopped, the dispatcher thread closes the buffer at the last claimed position before it exits, so that an entry
+ * is either claimed before and dispatched, or refused to its producer.
+ * <p>
+ * A producer cannot evict an entry another thread may be reading, so {@link OverflowPolicy#DROP_OLDEST} and
+ * {@link OverflowPolicy#SPILL_TO_DISK} drop the newest entry instead.
+ *
+ * @param <E> the type of the dispatched entries
+ */
+final class AuditRingBuffer<E> implements AuditDispatcher<E> {
+
+    private static final Logger LOGGER = Logger.getLogger(AuditRingBuffer.class.getName());
+    private static final long DROP_WARNING_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final int SPIN_TRIES = 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    // the tail once the dispatcher thread exited, no position being claimable anymore
+    private static final long CLOSED = -1;
+
+    private static final class Slot<E> {
+        volatile long sequence;
+        // published by the write of sequence that follows it
+        E element;
+    }
+
+    private final String name;
+    private final Consumer<? super E> handler;
+    private final WaitStrategy waitStrategy;
+    private final Slot<E>[] slots;
+    private final int mask;
+
+    /**
+     * The next position to be claimed by a producer, {@link #CLOSED} once the dispatcher thread exited.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    // only written by the dispatcher thread
+    private volatile long head;
+    private volatile long dispatched;
+
+    private volatile OverflowPolicy policy = AuditDispatchQueue.DEFAULT_POLICY;
+    private volatile long blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(AuditDispatchQueue.DEFAULT_BLOCK_TIMEOUT);
+    private volatile boolean stopped;
+
+    // only used by the BLOCKING wait strategy, producers take the lock only when the dispatcher thread is parked
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private volatile boolean dispatcherWaiting;
+
+    private final AtomicInteger highWaterMark = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long lastDropWarning;
+
+    private final Thread worker;
+
+    /**
+     * @param capacity rounded up to the next power of two
+     */
+    @SuppressWarnings("unchecked")
+    AuditRingBuffer(String name, Consumer<? super E> handler, int capacity, WaitStrategy waitStrategy) {
+        this.name = name;
+        this.handler = handler;
+        this.waitStrategy = waitStrategy != null ? waitStrategy : WaitStrategy.BLOCKING;
+        this.slots = (Slot<E>[]) new Slot[slotCount(capacity)];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot<>();
+            slots[i].sequence = i;
+        }
+        this.mask = slots.length - 1;
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    static int slotCount(int capacity) {
+        int count = Math.max(2, Math.min(capacity, MAX_CAPACITY));
+        return Integer.highestOneBit(count - 1) << 1;
+    }
+
+    @Override
+    public boolean supports(DispatchMode mode, WaitStrategy waitStrategy, int capacity) {
+        return mode == DispatchMode.RING_BUFFER
+                && waitStrategy == this.waitStrategy
+                && slotCount(capacity) == slots.length;
+    }
+
+    /**
+     * The slots being allocated up front, the capacity is ignored, see {@link #supports}.
+     */
+    @Override
+    public void configure(int capacity, OverflowPolicy policy, long blockTimeoutMillis) {
+        this.policy = policy != null ? policy : AuditDispatchQueue.DEFAULT_POLICY;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, blockTimeoutMillis));
+    }
+
+    @Override
+    public boolean offer(@NonNull E element) {
+        return enqueue(element, true) == Offer.QUEUED;
+    }
+
+    @Override
+    public Offer tryOffer(@NonNull E element) {
+        return enqueue(element, false);
+    }
+
+    private Offer enqueue(E element, boolean wait) {
+        long deadline = 0;
+        boolean waiting = false;
+        int spins = 0;
+        while (true) {
+            if (stopped) {
+                recordDrop();
+                return Offer.DROPPED;
+            }
+            long position = tail.get();
+            if (position == CLOSED) {
+                recordDrop();
+                return Offer.DROPPED;
+            }
+            Slot<E> slot = slots[(int) position & mask];
+            long sequence = slot.sequence;
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slot.element = element;
+                    slot.sequence = position + 1;
+                    updateHighWaterMark(position + 1 - head);
+                    signalDispatcher();
+                    return Offer.QUEUED;
+                }
+            } else if (sequence < position) {
+                // the slot still holds the entry written one lap earlier: the buffer is full
+                if (policy != OverflowPolicy.BLOCK) {
+                    recordDrop();
+                    return Offer.DROPPED;
+                }
+                if (!wait) {
+                    return Offer.FULL;
+                }
+                if (!waiting) {
+                    waiting = true;
+                    deadline = System.nanoTime() + blockTimeoutNanos;
+                } else if (System.nanoTime() - deadline >= 0) {
+                    recordDrop();
+                    return Offer.DROPPED;
+                }
+                spins = idle(spins);
+            }
+            // otherwise another producer claimed the position first, try the next one
+        }
+    }
+
+    private void updateHighWaterMark(long size) {
+        int current = (int) Math.min(size, slots.length);
+        if (current > highWaterMark.get()) {
+            highWaterMark.accumulateAndGet(current, Math::max);
+        }
+    }
+
+    private void signalDispatcher() {
+        if (dispatcherWaiting) {
+            lock.lock();
+            try {
+                published.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void recordDrop() {
+        dropped.increment();
+        long now = System.currentTimeMillis();
+        if (now - lastDropWarning > DROP_WARNING_INTERVAL) {
+            lastDropWarning = now;
+            LOGGER.log(
+                    Level.WARNING,
+                    "{0} is full (capacity {1}, policy {2}, high-water mark {3}), {4} audit entries dropped so far",
+                    new Object[] {name, slots.length, policy, highWaterMark.get(), dropped.sum()});
+        }
+    }
+
+    private void run() {
+        long position = 0;
+        int spins = 0;
+        try {
+            while (true) {
+                Slot<E> slot = slots[(int) position & mask];
+                if (slot.sequence == position + 1) {
+                    E element = slot.element;
+                    slot.element = null;
+                    // hands the slot over to the producer of the next lap
+                    slot.sequence = position + slots.length;
+                    head = position + 1;
+                    // the batch ends when the next entry is not published yet
+                    dispatch(element, slots[(int) (position + 1) & mask].sequence != position + 2);
+                    dispatched = ++position;
+                    spins = 0;
+                } else if (stopped && tail.get() == position) {
+                    // a producer that claimed the position first fails the closing, its entry being dispatched
+                    if (tail.compareAndSet(position, CLOSED)) {
+                        return;
+                    }
+                } else if (waitStrategy == WaitStrategy.BLOCKING && spins >= SPIN_TRIES) {
+                    awaitPublication(slot, position);
+                    spins = 0;
+                } else {
+                    spins = idle(spins);
+                }
+            }
+        } catch (InterruptedException e) {
+            LOGGER.log(Level.FINE, "{0} interrupted, stopping", name);
+        }
+    }
+
+    private void awaitPublication(Slot<E> slot, long position) throws InterruptedException {
+        lock.lock();
+        try {
+            dispatcherWaiting = true;
+            // checked after raising the flag, so that a producer publishing meanwhile sees it and signals
+            while (slot.sequence != position + 1 && !stopped) {
+                published.await();
+            }
+        } finally {
+            dispatcherWaiting = false;
+            lock.unlock();
+        }
+    }
+
+    private int idle(int spins) {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                Thread.onSpinWait();
+                return spins;
+            case YIELDING:
+                if (spins < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+                return spins + 1;
+            case BLOCKING:
+            default:
+                if (spins < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                return spins + 1;
+        }
+    }
+
+    private void dispatch(E element, boolean last) {
+        try {
+            handler.accept(element);
+            if (last && handler instanceof BatchHandler) {
+                ((BatchHandler<?>) handler).endOfBatch();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, name + " failed to dispatch an audit entry", e);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        stopped = true;
+        lock.lock();
+        try {
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (dispatched < claimed()) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    /**
+     * @return the positions claimed so far, every one of them being dispatched once the buffer is closed
+     */
+    private long claimed() {
+        long position = tail.get();
+        return position == CLOSED ? dispatched : position;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        worker.join(Math.max(1, unit.toMillis(timeout)));
+        return !worker.isAlive();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getSize() {
+        return (int) Math.max(0, Math.min(claimed() - head, slots.length));
+    }
+
+    @Override
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    @Override
+    public int getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    @Override
+    public long getProcessedCount() {
+        return dispatched;
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+}
@@ -29,19 +29,15 @@ import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.Extension;
 import hudson.ExtensionList;
 import hudson.init.Initializer;
+import hudson.init.Terminator;
 import hudson.model.User;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import jenkins.model.Jenkins;
 import jenkins.util.HttpServletFilter;
@@ -55,8 +51,13 @@ import jenkins.util.HttpServletFilter;
 public class AuditTrailFilter implements HttpServletFilter {
 
     private static final Logger LOGGER = Logger.getLogger(AuditTrailFilter.class.getName());
+    private static final String DISPATCHER_NAME = "AuditTrail request dispatcher";
 
-    private static Pattern uriPattern = null;
+    private static final String[] NO_PARAMETERS = {};
+    private static final String[] CANCEL_ITEM_PARAMETERS = {"id"};
+    private static final String[] CREATE_ITEM_PARAMETERS = {"name"};
+
+    private static volatile PrefilteredPattern uriPattern = null;
 
     /**
      * {@code null} until it is safe to look up extensions.
@@ -64,7 +65,11 @@ public class AuditTrailFilter implements HttpServletFilter {
     @CheckForNull
     private AuditTrailPlugin configuration;
 
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    @CheckForNull
+    private AuditEventBus eventBus;
+
+    private volatile AuditDispatcher<AuditRequestSnapshot> dispatchQueue =
+            createDispatchQueue(DispatchMode.QUEUE, WaitStrategy.BLOCKING, AuditDispatchQueue.DEFAULT_CAPACITY);
 
     /**
      * @deprecated as of 2.6
@@ -79,46 +84,70 @@ public class AuditTrailFilter implements HttpServletFilter {
     }
 
     static void setPattern(String pattern) throws PatternSyntaxException {
-        uriPattern = Pattern.compile(pattern);
+        PrefilteredPattern compiled = PrefilteredPattern.compile(pattern);
+        uriPattern = compiled;
         LOGGER.log(Level.FINE, "set pattern to {0}", pattern);
+        if (compiled.getPrefilter() == null) {
+            LOGGER.log(Level.FINE, "no literal could be extracted from {0}, every request will be matched", pattern);
+        }
     }
 
     @Override
     public boolean handle(HttpServletRequest req, HttpServletResponse rsp) throws IOException, ServletException {
-        User user = User.current();
-        executorService.submit(() -> logRequest(req, user));
+        // most requests (static resources, polling...) are not audited, so the match is done on the request thread
+        // and nothing else is done or allocated for them
+        PrefilteredPattern pattern = uriPattern;
+        if (pattern == null) {
+            return false;
+        }
+        String uri = getPathInfo(req);
+        if (!pattern.matches(uri)) {
+            if (LOGGER.isLoggable(Level.FINEST)) {
+                LOGGER.log(Level.FINEST, "Skip audit for request {0}", uri);
+            }
+            return false;
+        }
+        AuditRequestSnapshot snapshot =
+                AuditRequestSnapshot.capture(req, uri, User.current(), getAuditedParameters(uri));
+        dispatchQueue.offer(snapshot);
         return false;
     }
 
-    private void logRequest(HttpServletRequest request, User user) {
-        String uri = getPathInfo(request);
-        if (uriPattern != null && uriPattern.matcher(uri).matches()) {
-            String remoteIP = request.getRemoteAddr();
-            String extra = "";
-            // For queue items, show what task is in the queue:
-            if (uri.startsWith("/queue/item/")) {
-                extra = extractInfoFromQueueItem(uri);
-            } else if (uri.startsWith("/queue/cancelItem")) {
-                extra = getFormattedQueueItemUrlFromItemId(Integer.parseInt(request.getParameter("id")));
-                // not sure of the intent of the original author
-                // it looks to me we should always log the query parameters
-                // could we leak sensitive data?  There shouldn't be any in a query parameter...except for a badly coded
-                // plugin
-                // let's see if this becomes a wanted feature...
-                uri += "?" + request.getQueryString();
-            } else if (uri.contains("/createItem")) {
-                extra = formatExtraInfoString(request.getParameter("name"));
-            }
-
-            String username = user != null ? (isShouldDisplayUserName() ? user.getDisplayName() : user.getId()) : "NA";
-            if (LOGGER.isLoggable(Level.FINE))
-                LOGGER.log(
-                        Level.FINE, "Audit request {0} by user {1} from {2}", new Object[] {uri, username, remoteIP});
+    private static String[] getAuditedParameters(String uri) {
+        if (uri.startsWith("/queue/cancelItem")) {
+            return CANCEL_ITEM_PARAMETERS;
+        } else if (uri.contains("/createItem")) {
+            return CREATE_ITEM_PARAMETERS;
+        }
+        return NO_PARAMETERS;
+    }
 
-            onRequest(uri, extra, username, remoteIP);
-        } else {
-            LOGGER.log(Level.FINEST, "Skip audit for request {0}", uri);
+    private void logRequest(AuditRequestSnapshot request) {
+        String uri = request.getUri();
+        String remoteIP = request.getRemoteAddress();
+        String details = null;
+        // For queue items, show what task is in the queue:
+        if (uri.startsWith("/queue/item/")) {
+            details = extractInfoFromQueueItem(uri);
+        } else if (uri.startsWith("/queue/cancelItem")) {
+            details = getQueueItemUrlFromItemId(Integer.parseInt(request.getParameter("id")));
+            // not sure of the intent of the original author
+            // it looks to me we should always log the query parameters
+            // could we leak sensitive data?  There shouldn't be any in a query parameter...except for a badly coded
+            // plugin
+            // let's see if this becomes a wanted feature...
+            uri += "?" + request.getQueryString();
+        } else if (uri.contains("/createItem")) {
+            details = request.getParameter("name");
         }
+
+        String username = request.getUserId() != null
+                ? (isShouldDisplayUserName() ? request.getUserDisplayName() : request.getUserId())
+                : "NA";
+        if (LOGGER.isLoggable(Level.FINE))
+            LOGGER.log(Level.FINE, "Audit request {0} by user {1} from {2}", new Object[] {uri, username, remoteIP});
+
+        onRequest(request, uri, details, username, remoteIP);
     }
 
     private boolean isShouldDisplayUserName() {
@@ -128,32 +157,90 @@ public class AuditTrailFilter implements HttpServletFilter {
     @Initializer(after = EXTENSIONS_AUGMENTED)
     public void initializeConfiguration() {
         configuration = ExtensionList.lookupSingleton(AuditTrailPlugin.class);
+        eventBus = ExtensionList.lookupSingleton(AuditEventBus.class);
+        configureDispatchQueue(configuration);
+    }
+
+    @Terminator
+    public void shutdownDispatchQueue() {
+        dispatchQueue.shutdown();
+    }
+
+    synchronized void configureDispatchQueue(AuditTrailPlugin plugin) {
+        AuditDispatcher<AuditRequestSnapshot> current = dispatchQueue;
+        if (!current.supports(
+                plugin.getDispatchMode(), plugin.getDispatchWaitStrategy(), plugin.getDispatchQueueCapacity())) {
+            // the new dispatcher waits for the previous one to log the requests it holds, so that they keep their order
+            dispatchQueue = AuditDispatcher.replace(
+                    current,
+                    DISPATCHER_NAME,
+                    this::logRequest,
+                    AuditRequestSnapshot.SPILL_CODEC,
+                    getSpillFile(),
+                    plugin.getDispatchMode(),
+                    plugin.getDispatchWaitStrategy(),
+                    plugin.getDispatchQueueCapacity());
+        }
+        dispatchQueue.configure(
+                plugin.getDispatchQueueCapacity(),
+                plugin.getDispatchOverflowPolicy(),
+                plugin.getDispatchBlockTimeout());
+    }
+
+    private AuditDispatcher<AuditRequestSnapshot> createDispatchQueue(
+            DispatchMode mode, WaitStrategy waitStrategy, int capacity) {
+        return AuditDispatcher.create(
+                DISPATCHER_NAME,
+                this::logRequest,
+                AuditRequestSnapshot.SPILL_CODEC,
+                getSpillFile(),
+                mode,
+                waitStrategy,
+                capacity);
+    }
+
+    AuditDispatcher<AuditRequestSnapshot> getDispatchQueue() {
+        return dispatchQueue;
+    }
+
+    @CheckForNull
+    private static File getSpillFile() {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        return jenkins != null ? new File(jenkins.getRootDir(), "audit-trail-spill.log") : null;
     }
 
+    @CheckForNull
     private String extractInfoFromQueueItem(String uri) {
         try {
             int itemId = Integer.parseInt(uri.substring(12, uri.indexOf('/', 13)));
-            return getFormattedQueueItemUrlFromItemId(itemId);
+            return getQueueItemUrlFromItemId(itemId);
         } catch (Exception e) {
             LOGGER.log(Level.FINEST, "Error occurred while parsing queue item", e);
         }
-        return "";
+        return null;
     }
 
-    private String getFormattedQueueItemUrlFromItemId(int itemId) {
-        return formatExtraInfoString(
-                Jenkins.get().getQueue().getItem(itemId).task.getUrl());
+    private String getQueueItemUrlFromItemId(int itemId) {
+        return Jenkins.get().getQueue().getItem(itemId).task.getUrl();
     }
 
     private String formatExtraInfoString(String toFormat) {
         return String.format(" (%s)", toFormat);
     }
 
-    private void onRequest(String uri, String extra, String username, String remoteIP) {
-        if (configuration != null) {
-            for (AuditLogger logger : configuration.getLoggers()) {
-                logger.log(uri + extra + " by " + username + " from " + remoteIP);
-            }
+    private void onRequest(
+            AuditRequestSnapshot request, String uri, @CheckForNull String details, String username, String remoteIP) {
+        if (eventBus != null) {
+            AuditEvent event = AuditEvent.builder(AuditEvent.Type.HTTP_REQUEST, uri)
+                    .timestamp(request.getTimestamp())
+                    .user(request.getUserId())
+                    .sourceIp(remoteIP)
+                    .field("method", request.getMethod())
+                    .field("details", details)
+                    .message(() -> uri + (details != null ? formatExtraInfoString(details) : "") + " by " + username
+                            + " from " + remoteIP)
+                    .build();
+            eventBus.publish(event);
         }
     }
 
@@ -163,39 +250,80 @@ public class AuditTrailFilter implements HttpServletFilter {
                 request.getRequestURI().substring(request.getContextPath().length()));
     }
 
-    // Copied from Stapler#canonicalPath
-    private static String canonicalPath(String path) {
-        List<String> r = new ArrayList<>(Arrays.asList(path.split("/+")));
-        for (int i = 0; i < r.size(); ) {
-            if (r.get(i).length() == 0 || r.get(i).equals(".")) {
-                // empty token occurs for example, "".split("/+") is [""]
-                r.remove(i);
-            } else if (r.get(i).equals("..")) {
-                // i==0 means this is a broken URI.
-                r.remove(i);
-                if (i > 0) {
-                    r.remove(i - 1);
-                    i--;
-                }
-            } else {
+    /**
+     * Same result as Stapler#canonicalPath, in a single pass: empty and {@code .} segments are dropped and {@code ..}
+     * removes the previous segment. Paths that are already canonical, the vast majority, are returned as is.
+     */
+    static String canonicalPath(String path) {
+        if (isCanonical(path)) {
+            return path;
+        }
+        int n = path.length();
+        char[] out = new char[n + 1];
+        // where each kept segment, with the separator preceding it, starts in out
+        int[] segments = new int[n / 2 + 1];
+        int depth = 0;
+        int length = 0;
+        if (n > 0 && path.charAt(0) == '/') {
+            out[length++] = '/';
+        }
+        int base = length;
+        int i = 0;
+        while (i < n) {
+            while (i < n && path.charAt(i) == '/') {
                 i++;
             }
+            int start = i;
+            while (i < n && path.charAt(i) != '/') {
+                i++;
+            }
+            int segmentLength = i - start;
+            if (segmentLength == 0 || isDot(path, start, segmentLength)) {
+                continue;
+            }
+            if (isDotDot(path, start, segmentLength)) {
+                // at the root this means a broken URI, the segment is just dropped
+                if (depth > 0) {
+                    length = segments[--depth];
+                }
+                continue;
+            }
+            segments[depth++] = length;
+            if (length > base) {
+                out[length++] = '/';
+            }
+            path.getChars(start, i, out, length);
+            length += segmentLength;
         }
-
-        StringBuilder buf = new StringBuilder();
-        if (path.startsWith("/")) {
-            buf.append('/');
-        }
-        boolean first = true;
-        for (String token : r) {
-            if (!first) buf.append('/');
-            else first = false;
-            buf.append(token);
+        if (n > 0 && path.charAt(n - 1) == '/' && (length == 0 || out[length - 1] != '/')) {
+            out[length++] = '/';
         }
-        // translation: if (path.endsWith("/") && !buf.endsWith("/"))
-        if (path.endsWith("/") && (buf.length() == 0 || buf.charAt(buf.length() - 1) != '/')) {
-            buf.append('/');
+        return new String(out, 0, length);
+    }
+
+    private static boolean isCanonical(String path) {
+        int n = path.length();
+        int i = n > 0 && path.charAt(0) == '/' ? 1 : 0;
+        while (i < n) {
+            int start = i;
+            while (i < n && path.charAt(i) != '/') {
+                i++;
+            }
+            int segmentLength = i - start;
+            if (segmentLength == 0 || isDot(path, start, segmentLength) || isDotDot(path, start, segmentLength)) {
+                return false;
+            }
+            // skip the separator
+            i++;
         }
-        return buf.toString();
+        return true;
+    }
+
+    private static boolean isDot(String path, int start, int length) {
+        return length == 1 && path.charAt(start) == '.';
+    }
+
+    private static boolean isDotDot(String path, int start, int length) {
+        return length == 2 && path.charAt(start) == '.' && path.charAt(start + 1) == '.';
     }
 }
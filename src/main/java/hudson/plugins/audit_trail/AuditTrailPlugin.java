@@ -28,12 +28,14 @@ import static hudson.plugins.audit_trail.BypassablePatternMonitor.validatePatter
 
 import hudson.DescriptorExtensionList;
 import hudson.Extension;
+import hudson.ExtensionList;
 import hudson.Util;
 import hudson.XmlFile;
 import hudson.model.AbstractBuild;
 import hudson.model.Descriptor;
 import hudson.model.Run;
 import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
 import jakarta.servlet.ServletException;
 import java.io.File;
 import java.io.IOException;
@@ -42,6 +44,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -70,6 +73,11 @@ public class AuditTrailPlugin extends GlobalConfiguration {
     private boolean displayUserName = false;
     private boolean logCredentialsUsage = true;
     private boolean logScriptUsage = false;
+    private int dispatchQueueCapacity = AuditDispatchQueue.DEFAULT_CAPACITY;
+    private OverflowPolicy dispatchOverflowPolicy = AuditDispatchQueue.DEFAULT_POLICY;
+    private long dispatchBlockTimeout = AuditDispatchQueue.DEFAULT_BLOCK_TIMEOUT;
+    private DispatchMode dispatchMode = DispatchMode.QUEUE;
+    private WaitStrategy dispatchWaitStrategy = WaitStrategy.BLOCKING;
 
     private List<AuditLogger> loggers = new ArrayList<>();
 
@@ -138,16 +146,39 @@ public class AuditTrailPlugin extends GlobalConfiguration {
         return logScriptUsage;
     }
 
+    public int getDispatchQueueCapacity() {
+        return dispatchQueueCapacity;
+    }
+
+    public OverflowPolicy getDispatchOverflowPolicy() {
+        return dispatchOverflowPolicy;
+    }
+
+    public long getDispatchBlockTimeout() {
+        return dispatchBlockTimeout;
+    }
+
+    public DispatchMode getDispatchMode() {
+        return dispatchMode;
+    }
+
+    public WaitStrategy getDispatchWaitStrategy() {
+        return dispatchWaitStrategy;
+    }
+
     public AuditTrailPlugin() {
         load();
     }
 
     @Override
     public boolean configure(StaplerRequest2 req, JSONObject formData) {
-        // readResolve makes sure loggers is initialized, so it should never be null.
-        // TODO this should probably be moved somewhere else
-        loggers.forEach(AuditLogger::cleanUp);
-        req.bindJSON(this, formData);
+        // the current loggers deliver their pending events and are cleaned up before the new ones open their files
+        forEachEventBus(AuditEventBus::suspend);
+        try {
+            req.bindJSON(this, formData);
+        } finally {
+            forEachEventBus(bus -> bus.updateLoggers(this));
+        }
         return true;
     }
 
@@ -196,6 +227,56 @@ public class AuditTrailPlugin extends GlobalConfiguration {
         save();
     }
 
+    @DataBoundSetter
+    public void setDispatchQueueCapacity(int dispatchQueueCapacity) {
+        this.dispatchQueueCapacity =
+                dispatchQueueCapacity > 0 ? dispatchQueueCapacity : AuditDispatchQueue.DEFAULT_CAPACITY;
+        updateDispatchQueue();
+        save();
+    }
+
+    @DataBoundSetter
+    public void setDispatchOverflowPolicy(OverflowPolicy dispatchOverflowPolicy) {
+        this.dispatchOverflowPolicy =
+                Optional.ofNullable(dispatchOverflowPolicy).orElse(AuditDispatchQueue.DEFAULT_POLICY);
+        updateDispatchQueue();
+        save();
+    }
+
+    @DataBoundSetter
+    public void setDispatchBlockTimeout(long dispatchBlockTimeout) {
+        this.dispatchBlockTimeout = Math.max(0, dispatchBlockTimeout);
+        updateDispatchQueue();
+        save();
+    }
+
+    @DataBoundSetter
+    public void setDispatchMode(DispatchMode dispatchMode) {
+        this.dispatchMode = Optional.ofNullable(dispatchMode).orElse(DispatchMode.QUEUE);
+        updateDispatchQueue();
+        save();
+    }
+
+    @DataBoundSetter
+    public void setDispatchWaitStrategy(WaitStrategy dispatchWaitStrategy) {
+        this.dispatchWaitStrategy = Optional.ofNullable(dispatchWaitStrategy).orElse(WaitStrategy.BLOCKING);
+        updateDispatchQueue();
+        save();
+    }
+
+    private void updateDispatchQueue() {
+        if (Jenkins.getInstanceOrNull() != null) {
+            ExtensionList.lookup(AuditTrailFilter.class).forEach(filter -> filter.configureDispatchQueue(this));
+        }
+        forEachEventBus(bus -> bus.configure(this));
+    }
+
+    private static void forEachEventBus(Consumer<AuditEventBus> action) {
+        if (Jenkins.getInstanceOrNull() != null) {
+            ExtensionList.lookup(AuditEventBus.class).forEach(action);
+        }
+    }
+
     private void updateFilterPattern() {
         try {
             AuditTrailFilter.setPattern(pattern);
@@ -215,6 +296,7 @@ public class AuditTrailPlugin extends GlobalConfiguration {
     @DataBoundSetter
     public void setLoggers(List<AuditLogger> loggers) {
         this.loggers = Optional.ofNullable(loggers).orElse(Collections.emptyList());
+        forEachEventBus(AuditEventBus::loggersChanged);
     }
 
     /**
@@ -247,7 +329,18 @@ public class AuditTrailPlugin extends GlobalConfiguration {
             if (!loggers.contains(logger)) loggers.add(logger);
             log = null;
         }
+        if (dispatchOverflowPolicy == null) {
+            // configurations saved by older versions do not contain the dispatch settings
+            dispatchQueueCapacity = AuditDispatchQueue.DEFAULT_CAPACITY;
+            dispatchOverflowPolicy = AuditDispatchQueue.DEFAULT_POLICY;
+            dispatchBlockTimeout = AuditDispatchQueue.DEFAULT_BLOCK_TIMEOUT;
+        }
+        if (dispatchMode == null) {
+            dispatchMode = DispatchMode.QUEUE;
+            dispatchWaitStrategy = WaitStrategy.BLOCKING;
+        }
         updateFilterPattern();
+        // the bus binds the loaded loggers once the extensions are augmented, not while XStream builds this instance
         return this;
     }
 
@@ -269,6 +362,32 @@ public class AuditTrailPlugin extends GlobalConfiguration {
         return validatePatternAgainstKnownKeywords(value);
     }
 
+    public ListBoxModel doFillDispatchOverflowPolicyItems() {
+        ListBoxModel items = new ListBoxModel();
+        for (OverflowPolicy policy : OverflowPolicy.values()) {
+            items.add(new ListBoxModel.Option(
+                    policy.getDisplayName(), policy.name(), policy == getDispatchOverflowPolicy()));
+        }
+        return items;
+    }
+
+    public ListBoxModel doFillDispatchModeItems() {
+        ListBoxModel items = new ListBoxModel();
+        for (DispatchMode mode : DispatchMode.values()) {
+            items.add(new ListBoxModel.Option(mode.getDisplayName(), mode.name(), mode == getDispatchMode()));
+        }
+        return items;
+    }
+
+    public ListBoxModel doFillDispatchWaitStrategyItems() {
+        ListBoxModel items = new ListBoxModel();
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            items.add(new ListBoxModel.Option(
+                    strategy.getDisplayName(), strategy.name(), strategy == getDispatchWaitStrategy()));
+        }
+        return items;
+    }
+
     @Override
     protected XmlFile getConfigFile() {
         return new XmlFile(new File(Jenkins.get().getRootDir(), "audit-trail.xml"));
@@ -1,11 +1,13 @@
 package hudson.plugins.audit_trail;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.Extension;
 import hudson.ExtensionList;
 import hudson.model.Cause;
 import hudson.model.CauseAction;
 import hudson.model.ParameterValue;
 import hudson.model.ParametersAction;
+import hudson.model.Result;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.model.listeners.RunListener;
@@ -28,6 +30,9 @@ public class AuditTrailRunListener extends RunListener<Run> {
     @Inject
     AuditTrailPlugin configuration;
 
+    @Inject
+    AuditEventBus eventBus;
+
     public AuditTrailRunListener() {
         super(Run.class);
     }
@@ -35,51 +40,77 @@ public class AuditTrailRunListener extends RunListener<Run> {
     @Override
     public void onStarted(Run run, TaskListener listener) {
         if (configuration.shouldLogBuildCause()) {
-            StringBuilder builder = new StringBuilder(100);
-            dumpCauses(run, builder);
-            dumpParameters(run, builder);
+            String jobUrl = run.getParent().getUrl();
+            int number = run.getNumber();
+            String causes = dumpCauses(run);
+            String parameters = dumpParameters(run);
 
-            for (AuditLogger logger : configuration.getLoggers()) {
-                logger.log(run.getParent().getUrl() + " #" + run.getNumber() + ' ' + builder.toString());
-            }
+            AuditEvent event = AuditEvent.builder(AuditEvent.Type.BUILD_STARTED, run.getExternalizableId())
+                    .user(getUserId(run))
+                    .field("job", jobUrl)
+                    .field("number", number)
+                    .field("causes", causes)
+                    .field("parameters", parameters)
+                    .message(() -> jobUrl + " #" + number + ' ' + causes + ", Parameters:[" + parameters + "]")
+                    .build();
+            eventBus.publish(event);
         }
     }
 
     @Override
     public void onFinalized(Run run) {
         if (configuration.shouldLogBuildCause()) {
-            StringBuilder builder = new StringBuilder(100);
-            dumpCauses(run, builder);
-            dumpParameters(run, builder);
-
-            for (AuditLogger logger : configuration.getLoggers()) {
-                String message = run.getFullDisplayName() + " "
-                        + builder + " on "
-                        + buildNodeName(run) + " started at "
-                        + run.getTimestampString2() + " completed in "
-                        + run.getDuration() + "ms" + " completed: "
-                        + run.getResult();
-                logger.log(message);
-            }
+            String fullDisplayName = run.getFullDisplayName();
+            String causes = dumpCauses(run);
+            String parameters = dumpParameters(run);
+            String nodeName = buildNodeName(run);
+            String startedAt = run.getTimestampString2();
+            long duration = run.getDuration();
+            Result result = run.getResult();
+
+            AuditEvent event = AuditEvent.builder(AuditEvent.Type.BUILD_FINISHED, run.getExternalizableId())
+                    .user(getUserId(run))
+                    .field("job", run.getParent().getUrl())
+                    .field("number", run.getNumber())
+                    .field("causes", causes)
+                    .field("parameters", parameters)
+                    .field("node", nodeName)
+                    .field("startedAt", startedAt)
+                    .field("duration", duration)
+                    .field("result", result)
+                    .message(() -> fullDisplayName + " "
+                            + causes + ", Parameters:[" + parameters + "]" + " on "
+                            + nodeName + " started at "
+                            + startedAt + " completed in "
+                            + duration + "ms" + " completed: "
+                            + result)
+                    .build();
+            eventBus.publish(event);
         }
     }
 
-    private void dumpParameters(Run<?, ?> run, StringBuilder builder) {
-        builder.append(", Parameters:[");
+    @CheckForNull
+    private static String getUserId(Run<?, ?> run) {
+        Cause.UserIdCause cause = run.getCause(Cause.UserIdCause.class);
+        return cause != null ? cause.getUserId() : null;
+    }
+
+    private String dumpParameters(Run<?, ?> run) {
         ParametersAction parameters = run.getAction(ParametersAction.class);
-        if (parameters != null) {
-            builder.append(StreamSupport.stream(parameters.spliterator(), false)
-                    .map(this::prettyPrintParameter)
-                    .collect(Collectors.joining(", ")));
+        if (parameters == null) {
+            return "";
         }
-        builder.append("]");
+        return StreamSupport.stream(parameters.spliterator(), false)
+                .map(this::prettyPrintParameter)
+                .collect(Collectors.joining(", "));
     }
 
     private String prettyPrintParameter(ParameterValue param) {
         return param.getName() + ": {" + (param.isSensitive() ? MASKED : param.getValue()) + "}";
     }
 
-    private void dumpCauses(Run<?, ?> run, StringBuilder buf) {
+    private String dumpCauses(Run<?, ?> run) {
+        StringBuilder buf = new StringBuilder(100);
         for (CauseAction action : run.getActions(CauseAction.class)) {
             for (Cause cause : action.getCauses()) {
                 if (buf.length() > 0) buf.append(", ");
@@ -87,6 +118,7 @@ public class AuditTrailRunListener extends RunListener<Run> {
             }
         }
         if (buf.length() == 0) buf.append("Started");
+        return buf.toString();
     }
 
     String buildNodeName(Run<?, ?> run) {
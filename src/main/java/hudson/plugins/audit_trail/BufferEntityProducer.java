@@ -0,0 +1,188 @@
+package hudson.plugins.audit_trail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.nio.AsyncEntityProducer;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+
+/**
+ * Repeatable body of an asynchronous request, written to the connection straight from the buffers holding the
+ * encoded events, as much as the connection accepts each time, without assembling the body in an array first.
+ * <p>
+ * If compressed, the buffers are deflated into a small buffer as the connection accepts the output, and sent chunked
+ * in the gzip format, as {@code GzipCompressingEntity} does for the synchronous client.
+ */
+final class BufferEntityProducer implements AsyncEntityProducer {
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    private final List<ByteBuffer> buffers;
+    private final ContentType contentType;
+    private final boolean compressed;
+    private final long length;
+
+    // all guarded by this, reset once the body is sent so that it can be sent again
+    private int index;
+    private ByteBuffer current;
+    private Deflater deflater;
+    private CRC32 checksum;
+    private ByteBuffer output;
+    private boolean trailerWritten;
+    private boolean ended;
+
+    BufferEntityProducer(List<ByteBuffer> buffers, ContentType contentType, boolean compressed) {
+        this.buffers = buffers;
+        this.contentType = contentType;
+        this.compressed = compressed;
+        long size = 0;
+        for (ByteBuffer buffer : buffers) {
+            size += buffer.remaining();
+        }
+        this.length = size;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return compressed ? -1 : length;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType.toString();
+    }
+
+    @Override
+    public String getContentEncoding() {
+        return compressed ? "gzip" : null;
+    }
+
+    @Override
+    public boolean isChunked() {
+        return compressed;
+    }
+
+    @Override
+    public Set<String> getTrailerNames() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public synchronized int available() {
+        return ended ? 0 : CHUNK_SIZE;
+    }
+
+    @Override
+    public synchronized void produce(DataStreamChannel channel) throws IOException {
+        if (ended) {
+            return;
+        }
+        if (compressed) {
+            produceCompressed(channel);
+            return;
+        }
+        while (true) {
+            if (current == null || !current.hasRemaining()) {
+                if (index == buffers.size()) {
+                    ended = true;
+                    channel.endStream();
+                    return;
+                }
+                current = buffers.get(index++).duplicate();
+                continue;
+            }
+            channel.write(current);
+            if (current.hasRemaining()) {
+                // the connection is full, it asks for the rest once it accepts more
+                return;
+            }
+        }
+    }
+
+    private void produceCompressed(DataStreamChannel channel) throws IOException {
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            checksum = new CRC32();
+            output = ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            output.put(GZIP_HEADER);
+            deflate();
+            output.flip();
+        }
+        while (true) {
+            if (output.hasRemaining()) {
+                channel.write(output);
+                if (output.hasRemaining()) {
+                    // the connection is full, it asks for the rest once it accepts more
+                    return;
+                }
+            }
+            if (trailerWritten) {
+                ended = true;
+                channel.endStream();
+                return;
+            }
+            output.clear();
+            deflate();
+            output.flip();
+        }
+    }
+
+    /**
+     * Deflates the next buffers into the output, until it is full, then writes the trailer once they are all deflated.
+     */
+    private void deflate() {
+        while (output.hasRemaining() && !trailerWritten) {
+            if (deflater.finished()) {
+                if (output.remaining() < GZIP_TRAILER_SIZE) {
+                    return;
+                }
+                output.putInt((int) checksum.getValue());
+                output.putInt((int) deflater.getBytesRead());
+                trailerWritten = true;
+                return;
+            }
+            if (deflater.needsInput()) {
+                if (index < buffers.size()) {
+                    current = buffers.get(index++).duplicate();
+                    checksum.update(current.duplicate());
+                    deflater.setInput(current);
+                } else {
+                    deflater.finish();
+                }
+            }
+            deflater.deflate(output);
+        }
+    }
+
+    @Override
+    public void failed(Exception cause) {
+        releaseResources();
+    }
+
+    @Override
+    public synchronized void releaseResources() {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+        checksum = null;
+        output = null;
+        index = 0;
+        current = null;
+        trailerWritten = false;
+        ended = false;
+    }
+}
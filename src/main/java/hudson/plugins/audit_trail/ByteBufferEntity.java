@@ -0,0 +1,101 @@
+package hudson.plugins.audit_trail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.AbstractHttpEntity;
+
+/**
+ * Repeatable entity writing the content of a, possibly read-only, {@link ByteBuffer} without copying it to an array
+ * first, so that an encoding shared by several loggers can be sent as is.
+ */
+final class ByteBufferEntity extends AbstractHttpEntity {
+
+    private final ByteBuffer content;
+
+    ByteBufferEntity(ByteBuffer content, ContentType contentType) {
+        // the content encoding has always been sent as the charset of the JSON document
+        super(contentType, StandardCharsets.UTF_8.name(), false);
+        this.content = content.duplicate();
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return content.remaining();
+    }
+
+    /**
+     * @return the content, for the asynchronous client
+     */
+    List<ByteBuffer> getBuffers() {
+        return Collections.singletonList(content);
+    }
+
+    @Override
+    public InputStream getContent() {
+        return new BufferInputStream(content.duplicate());
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        ByteBuffer data = content.duplicate();
+        // not closed, it would close the stream of the connection
+        WritableByteChannel channel = Channels.newChannel(outStream);
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package hudson.plugins.audit_trail;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Guards the delivery of the events of a logger to a remote server, so that an unavailable server costs neither a
+ * connection attempt nor a warning per event.
+ * <p>
+ * Each failure delays the next attempt by an exponential backoff, halved and jittered so that the loggers of several
+ * Jenkins instances don't retry in step. Once too many attempts failed in a row, the circuit opens: attempts are held
+ * until the backoff elapses, then a single trial is let through, half-open, which closes the circuit if it succeeds
+ * and opens it again for longer otherwise. Meanwhile the events wait in the delivery queue of the logger, or in the
+ * buffer of the logger, where the overflow policy of the queue applies.
+ * <p>
+ * Only the transitions are logged, as warnings when the circuit opens, the failures themselves being logged at
+ * {@code FINE} by the loggers.
+ */
+public final class CircuitBreaker {
+
+    private static final Logger LOGGER = Logger.getLogger(CircuitBreaker.class.getName());
+    static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    static final long DEFAULT_INITIAL_BACKOFF = 1000;
+    static final long DEFAULT_MAX_BACKOFF = 60000;
+
+    public enum State {
+        /** The events are delivered. */
+        CLOSED,
+        /** The server failed too many times in a row, the events are held until the next trial. */
+        OPEN,
+        /** A trial is in progress, its outcome deciding whether the circuit closes or opens again. */
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long initialBackoff;
+    private final long maxBackoff;
+
+    // all guarded by this
+    private State state = State.CLOSED;
+    private long stateSince = System.currentTimeMillis();
+    private int consecutiveFailures;
+    // also the end of a trial, if its outcome is never recorded
+    private long retryAt;
+    private boolean released;
+
+    @CheckForNull
+    private String lastError;
+
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder openings = new LongAdder();
+
+    public CircuitBreaker(String name) {
+        this(name, DEFAULT_FAILURE_THRESHOLD, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF);
+    }
+
+    /**
+     * @param failureThreshold the number of failures in a row opening the circuit
+     * @param initialBackoff the delay after the first failure, in milliseconds, doubled after each further failure
+     * @param maxBackoff the longest delay between two attempts, in milliseconds
+     */
+    CircuitBreaker(String name, int failureThreshold, long initialBackoff, long maxBackoff) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.initialBackoff = Math.max(1, initialBackoff);
+        this.maxBackoff = Math.max(this.initialBackoff, maxBackoff);
+    }
+
+    /**
+     * Waits until an attempt may be made, for the backoff to elapse, and, once the circuit is open, for the trial
+     * of this thread or of another one.
+     *
+     * @return {@code false} if the breaker was released or the thread interrupted meanwhile, the attempt then being
+     *     given up
+     */
+    public synchronized boolean acquire() {
+        try {
+            while (!released) {
+                if (tryAcquire()) {
+                    return true;
+                }
+                // the outcome of a trial wakes the waiting threads up
+                wait(Math.max(1, retryAt - System.currentTimeMillis()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Lets an attempt through without waiting, which is what threads shared with other tasks should use.
+     *
+     * @return whether an attempt may be made now, the caller trying again after {@link #getRetryDelay()} otherwise
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.currentTimeMillis();
+        if (released || now < retryAt) {
+            return false;
+        }
+        if (state != State.CLOSED) {
+            if (state == State.OPEN) {
+                transition(State.HALF_OPEN);
+            }
+            // a single trial at a time
+            retryAt = now + maxBackoff;
+        }
+        return true;
+    }
+
+    /**
+     * @return how long until the next attempt may be made, in milliseconds
+     */
+    public synchronized long getRetryDelay() {
+        return Math.max(0, retryAt - System.currentTimeMillis());
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        retryAt = 0;
+        if (state != State.CLOSED) {
+            transition(State.CLOSED);
+            LOGGER.log(Level.INFO, "Audit events are delivered to {0} again", name);
+        }
+        notifyAll();
+    }
+
+    public synchronized void recordFailure(Throwable cause) {
+        failures.increment();
+        consecutiveFailures++;
+        lastError = String.valueOf(cause);
+        long backoff = nextBackoff();
+        retryAt = System.currentTimeMillis() + backoff;
+        if (state == State.HALF_OPEN) {
+            transition(State.OPEN);
+            LOGGER.log(Level.FINE, "Audit events still not delivered to {0}, next trial in {1} ms", new Object[] {
+                name, backoff
+            });
+        } else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            transition(State.OPEN);
+            openings.increment();
+            LOGGER.log(
+                    Level.WARNING,
+                    "Holding the audit events of {0} after {1} failures in a row, next trial in {2} ms: {3}",
+                    new Object[] {name, consecutiveFailures, backoff, lastError});
+        }
+        notifyAll();
+    }
+
+    /**
+     * @return the delay before the next attempt, the full exponential backoff being halved then jittered
+     */
+    private long nextBackoff() {
+        int exponent = Math.min(consecutiveFailures - 1, 30);
+        long backoff = Math.min(maxBackoff, initialBackoff << exponent);
+        long half = backoff / 2;
+        return half + ThreadLocalRandom.current().nextLong(backoff - half + 1);
+    }
+
+    private void transition(State next) {
+        state = next;
+        stateSince = System.currentTimeMillis();
+    }
+
+    /**
+     * Gives up the held attempts, once the logger is cleaned up, so that the delivery thread isn't held for good.
+     */
+    public synchronized void release() {
+        released = true;
+        notifyAll();
+    }
+
+    public synchronized boolean isReleased() {
+        return released;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return when the circuit entered its current state, in milliseconds since the epoch
+     */
+    public synchronized long getStateSince() {
+        return stateSince;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    @CheckForNull
+    public synchronized String getLastError() {
+        return lastError;
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * @return the number of times the circuit opened
+     */
+    public long getOpenCount() {
+        return openings.sum();
+    }
+}
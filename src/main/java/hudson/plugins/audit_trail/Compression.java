@@ -0,0 +1,82 @@
+package hudson.plugins.audit_trail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * How the files rotated by a log file logger are compressed, in the background.
+ *
+ * @see AuditLogCompressor
+ */
+public enum Compression {
+    /**
+     * The rotated files are kept as they are.
+     */
+    NONE("None", ""),
+    /**
+     * The rotated files are replaced by a gzip file, readable with {@code zcat} or {@code zless}.
+     */
+    GZIP("gzip", ".gz"),
+    /**
+     * The rotated files are replaced by a zlib stream, slightly smaller than gzip as it has no header.
+     */
+    DEFLATE("Deflate", ".zz");
+
+    private final String displayName;
+    private final String suffix;
+
+    Compression(String displayName, String suffix) {
+        this.displayName = displayName;
+        this.suffix = suffix;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * @return the extension appended to the name of a compressed file
+     */
+    String getSuffix() {
+        return suffix;
+    }
+
+    OutputStream wrap(OutputStream out) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(out, AuditLogCompressor.BUFFER_SIZE);
+            case DEFLATE:
+                return new DeflaterOutputStream(out);
+            default:
+                return out;
+        }
+    }
+
+    InputStream unwrap(InputStream in) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPInputStream(in, AuditLogCompressor.BUFFER_SIZE);
+            case DEFLATE:
+                return new InflaterInputStream(in);
+            default:
+                return in;
+        }
+    }
+
+    /**
+     * @return whether the given file name is the one of a compressed file
+     */
+    static boolean isCompressed(String name) {
+        for (Compression compression : values()) {
+            if (compression != NONE && name.endsWith(compression.suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,11 +1,9 @@
 package hudson.plugins.audit_trail;
 
 import hudson.Extension;
-import hudson.model.Descriptor;
 import hudson.util.ListBoxModel;
 import java.io.PrintStream;
 import java.text.SimpleDateFormat;
-import java.util.Date;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 /**
@@ -21,7 +19,7 @@ public class ConsoleAuditLogger extends AuditLogger {
     private final String dateFormat;
     private final String logPrefix;
     private transient PrintStream out;
-    private transient SimpleDateFormat sdf;
+    private transient TimestampRenderer timestamps;
     private transient String logPrefixPadded;
 
     @DataBoundConstructor
@@ -53,9 +51,12 @@ public class ConsoleAuditLogger extends AuditLogger {
 
     @Override
     public void log(String event) {
-        synchronized (output) {
-            this.out.println(sdf.format(new Date()) + this.logPrefixPadded + event);
-        }
+        // println is atomic, the line is built without holding any lock
+        this.out.println(timestamps
+                .appendTo(new StringBuilder(64 + event.length()), System.currentTimeMillis())
+                .append(this.logPrefixPadded)
+                .append(event)
+                .toString());
     }
 
     private void configure() {
@@ -68,7 +69,7 @@ public class ConsoleAuditLogger extends AuditLogger {
                     out = System.out;
                     break;
             }
-            sdf = new SimpleDateFormat(dateFormat);
+            timestamps = TimestampRenderer.of(dateFormat);
             this.logPrefixPadded = getLogPrefixPadded();
         }
     }
@@ -101,7 +102,7 @@ public class ConsoleAuditLogger extends AuditLogger {
     }
 
     @Extension
-    public static class DescriptorImpl extends Descriptor<AuditLogger> {
+    public static class DescriptorImpl extends AuditLoggerDescriptor {
 
         @Override
         public String getDisplayName() {
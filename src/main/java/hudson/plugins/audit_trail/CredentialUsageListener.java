@@ -5,6 +5,7 @@ import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.CredentialsUseListener;
 import com.cloudbees.plugins.credentials.common.IdCredentials;
 import com.cloudbees.plugins.credentials.impl.BaseStandardCredentials;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.Extension;
 import hudson.model.Item;
 import hudson.model.Node;
@@ -27,6 +28,9 @@ public class CredentialUsageListener implements CredentialsUseListener {
     @Inject
     AuditTrailPlugin configuration;
 
+    @Inject
+    AuditEventBus eventBus;
+
     /**
      * Triggered when the {@link com.cloudbees.plugins.credentials.CredentialsProvider} accesses
      * {@link com.cloudbees.plugins.credentials.Credentials}.
@@ -39,12 +43,9 @@ public class CredentialUsageListener implements CredentialsUseListener {
     public void onUse(Credentials c, Run run) {
         if (!configuration.shouldLogCredentialsUsage()) return;
 
-        StringBuilder builder = new StringBuilder(100);
-
         String runName = run.getExternalizableId();
         String runType = run.getClass().toString();
-        builder.append(String.format("'%s' (%s) ", runName, runType));
-        auditLog(c, builder);
+        auditLog(c, runName, runType);
     }
 
     /**
@@ -59,12 +60,9 @@ public class CredentialUsageListener implements CredentialsUseListener {
     public void onUse(Credentials c, Node node) {
         if (!configuration.shouldLogCredentialsUsage()) return;
 
-        StringBuilder builder = new StringBuilder(100);
-
         String nodeName = node.getNodeName();
         String nodeType = node.getClass().toString();
-        builder.append(String.format("'%s' (%s) ", nodeName, nodeType));
-        auditLog(c, builder);
+        auditLog(c, nodeName, nodeType);
     }
 
     /**
@@ -79,39 +77,50 @@ public class CredentialUsageListener implements CredentialsUseListener {
     public void onUse(Credentials c, Item item) {
         if (!configuration.shouldLogCredentialsUsage()) return;
 
-        StringBuilder builder = new StringBuilder(100);
-
         String runName = item.getFullName();
         String itemType = item.getClass().toString();
-        builder.append(String.format("'%s' (%s) ", runName, itemType));
-        auditLog(c, builder);
+        auditLog(c, runName, itemType);
     }
 
-    private void auditLog(Credentials c, StringBuilder builder) {
+    private void auditLog(Credentials c, String usedBy, String usedByType) {
         String credsType = c.getClass().toString();
+        String credsId = null;
         if (c instanceof BaseStandardCredentials) {
-            String credsId = ((BaseStandardCredentials) c).getId();
-            builder.append(String.format("used credentials '%s' (%s).", credsId, credsType));
+            credsId = ((BaseStandardCredentials) c).getId();
         } else if (c instanceof IdCredentials) {
-            String credsId = ((IdCredentials) c).getId();
-            builder.append(String.format("used credentials '%s' (%s).", credsId, credsType));
+            credsId = ((IdCredentials) c).getId();
         } else {
-            String noIdAvailableWarning = builder
+            String noIdAvailableWarning = String.format("'%s' (%s) ", usedBy, usedByType)
                     + ("used an unsupported credentials type (" + credsType
                             + ") whose ID cannot be audit-logged. Consider opening an issue.");
             Logger.getLogger(CredentialUsageListener.class.getName()).log(Level.WARNING, null, noIdAvailableWarning);
-
-            builder.append("used credentials of type " + credsType + " (Note: Used fallback method for log as "
-                    + "credentials type is not supported. See INFO log for more information).");
         }
 
-        String log = builder.toString();
+        String id = credsId;
+        AuditEvent event = AuditEvent.builder(AuditEvent.Type.CREDENTIALS_USAGE, id != null ? id : credsType)
+                .field("usedBy", usedBy)
+                .field("usedByType", usedByType)
+                .field("credentialsId", id)
+                .field("credentialsType", credsType)
+                .message(() -> renderMessage(usedBy, usedByType, id, credsType))
+                .build();
         if (LOGGER.isLoggable(Level.FINE)) {
-            LOGGER.log(Level.FINE, "Detected credential usage, details: {0}", new Object[] {log});
+            LOGGER.log(Level.FINE, "Detected credential usage, details: {0}", new Object[] {event.getMessage()});
         }
 
-        for (AuditLogger logger : configuration.getLoggers()) {
-            logger.log(log);
+        eventBus.publish(event);
+    }
+
+    private static String renderMessage(
+            String usedBy, String usedByType, @CheckForNull String credsId, String credsType) {
+        StringBuilder builder = new StringBuilder(100);
+        builder.append(String.format("'%s' (%s) ", usedBy, usedByType));
+        if (credsId != null) {
+            builder.append(String.format("used credentials '%s' (%s).", credsId, credsType));
+        } else {
+            builder.append("used credentials of type " + credsType + " (Note: Used fallback method for log as "
+                    + "credentials type is not supported. See INFO log for more information).");
         }
+        return builder.toString();
     }
 }
@@ -0,0 +1,28 @@
+package hudson.plugins.audit_trail;
+
+/**
+ * How audit entries are handed over from the producers to the dispatcher threads.
+ *
+ * @see AuditDispatcher
+ */
+public enum DispatchMode {
+    /**
+     * A lock guarded queue, supporting every {@link OverflowPolicy}.
+     */
+    QUEUE("Bounded queue"),
+    /**
+     * A lock-free ring buffer of pre-allocated slots, for high event rates. Its capacity is rounded up to a power of
+     * two and entries cannot be spilled to disk.
+     */
+    RING_BUFFER("Ring buffer");
+
+    private final String displayName;
+
+    DispatchMode(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
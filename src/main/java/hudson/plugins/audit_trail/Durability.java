@@ -0,0 +1,37 @@
+package hudson.plugins.audit_trail;
+
+/**
+ * When the lines written by a log file logger are forced to the storage device, with
+ * {@link java.nio.channels.FileChannel#force(boolean)}, rather than left to the operating system.
+ *
+ * @see AuditLogOutput
+ */
+public enum Durability {
+    /**
+     * The operating system decides when the lines reach the disk.
+     */
+    NONE("Left to the operating system"),
+    /**
+     * The lines written since the previous sync are forced periodically, by a background thread.
+     */
+    INTERVAL("Every interval"),
+    /**
+     * The lines are forced by a background thread every given number of events.
+     */
+    EVERY_N_EVENTS("Every N events"),
+    /**
+     * The events of the selected types are forced before the next event is delivered, the others are left to the
+     * operating system.
+     */
+    PER_EVENT_TYPE("Each event of the selected types");
+
+    private final String displayName;
+
+    Durability(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
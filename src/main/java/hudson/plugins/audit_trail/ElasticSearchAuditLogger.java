@@ -33,23 +33,32 @@ import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredenti
 import com.cloudbees.plugins.credentials.domains.DomainRequirement;
 import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
 import hudson.Extension;
-import hudson.model.Descriptor;
 import hudson.security.ACL;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import hudson.util.Secret;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.net.ssl.SSLContext;
@@ -59,20 +68,42 @@ import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.commons.lang.time.FastDateFormat;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.async.methods.SimpleResponseConsumer;
+import org.apache.hc.client5.http.classic.methods.HttpHead;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.config.TlsConfig;
+import org.apache.hc.client5.http.entity.GzipCompressingEntity;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
 import org.apache.hc.client5.http.ssl.NoopHostnameVerifier;
 import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactoryBuilder;
 import org.apache.hc.client5.http.ssl.TrustSelfSignedStrategy;
+import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.ContentType;
-import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.ParseException;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.nio.support.AsyncRequestBuilder;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.io.CloseMode;
 import org.apache.hc.core5.ssl.SSLContextBuilder;
 import org.apache.hc.core5.ssl.SSLContexts;
 import org.apache.hc.core5.ssl.TrustStrategy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
@@ -91,11 +122,48 @@ public class ElasticSearchAuditLogger extends AuditLogger {
     private String usernamePasswordCredentialsId;
     private String clientCertificateCredentialsId;
     private boolean skipCertificateValidation = false;
+    private boolean compressRequests;
+    private boolean bulk;
+    private int bulkActions = DEFAULT_BULK_ACTIONS;
+    private int bulkSize = DEFAULT_BULK_SIZE;
+    private long bulkLinger = DEFAULT_BULK_LINGER;
+    private boolean async;
+    private int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+    private boolean http2;
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private int connectionRequestTimeout = DEFAULT_CONNECTION_REQUEST_TIMEOUT;
+    private int socketTimeout = DEFAULT_SOCKET_TIMEOUT;
+    private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private long connectionTimeToLive;
+    private int warmUpConnections;
 
     transient ElasticSearchSender elasticSearchSender;
+    private transient CircuitBreaker circuitBreaker;
+    // both guarded by this
+    private transient ElasticSearchBulk pending;
+    private transient Future<?> lingering;
+    private transient ScheduledThreadPoolExecutor scheduler;
 
     protected static final Logger LOGGER = Logger.getLogger(ElasticSearchAuditLogger.class.getName());
     private static final FastDateFormat DATE_FORMATTER = FastDateFormat.getInstance("yyyy-MM-dd'T'HH:mm:ssZ");
+    static final int DEFAULT_BULK_ACTIONS = 500;
+    static final int DEFAULT_BULK_SIZE = 5 * 1024;
+    static final long DEFAULT_BULK_LINGER = 1000;
+    static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 4;
+    static final int DEFAULT_MAX_CONNECTIONS = 25;
+    static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 5;
+    static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+    static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT = 10000;
+    static final int DEFAULT_SOCKET_TIMEOUT = 30000;
+    static final long DEFAULT_IDLE_TIMEOUT = 60000;
+    // the delay before sending the documents rejected for a transient reason again
+    private static final long RETRY_DELAY = 5000;
+    // the delay before sending again what found the maximum number of requests in flight
+    private static final long IN_FLIGHT_RETRY_DELAY = 100;
+    // how long the thread sending the lingering bulks is kept once idle, in seconds
+    private static final long SCHEDULER_KEEP_ALIVE = 60;
 
     @DataBoundConstructor
     public ElasticSearchAuditLogger(String url, boolean skipCertificateValidation) {
@@ -104,32 +172,279 @@ public class ElasticSearchAuditLogger extends AuditLogger {
     }
 
     private Object readResolve() {
+        if (bulkActions == 0) {
+            bulkActions = DEFAULT_BULK_ACTIONS;
+            bulkSize = DEFAULT_BULK_SIZE;
+            bulkLinger = DEFAULT_BULK_LINGER;
+        }
+        if (maxConnections == 0) {
+            maxConnections = DEFAULT_MAX_CONNECTIONS;
+            maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+            connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+            connectionRequestTimeout = DEFAULT_CONNECTION_REQUEST_TIMEOUT;
+            socketTimeout = DEFAULT_SOCKET_TIMEOUT;
+            idleTimeout = DEFAULT_IDLE_TIMEOUT;
+        }
         configure();
         return this;
     }
 
     @Override
     public void log(String event) {
+        if (!isSenderConfigured(event)) {
+            return;
+        }
+        LOGGER.log(Level.FINER, "Send audit message \"{0}\" to Elastic Search server {1}", new Object[] {
+            event, elasticSearchSender.getUrl()
+        });
+        if (bulk) {
+            buffer(ByteBuffer.wrap(ElasticSearchSender.getPayload(event).getBytes(StandardCharsets.UTF_8)));
+            return;
+        }
+        deliver(elasticSearchSender.createMessageEntity(event), event);
+    }
+
+    /**
+     * Indexes the structured fields of the event, without rendering its message.
+     */
+    @Override
+    public void log(AuditEvent event) {
+        if (!isSenderConfigured(event)) {
+            return;
+        }
+        LOGGER.log(Level.FINER, "Send audit event {0} to Elastic Search server {1}", new Object[] {
+            event, elasticSearchSender.getUrl()
+        });
+        if (bulk) {
+            buffer(event.getJsonBytes());
+            return;
+        }
+        deliver(elasticSearchSender.createEventEntity(event), event);
+    }
+
+    /**
+     * Sends a single event, retrying it with a backoff while the server is unavailable, the next events being held
+     * in the delivery queue meanwhile, unless sent asynchronously.
+     */
+    private void deliver(ByteBufferEntity entity, Object event) {
+        CircuitBreaker breaker = getCircuitBreaker();
+        while (breaker.acquire()) {
+            ElasticSearchSender sender = elasticSearchSender;
+            if (sender.isAsync()) {
+                if (!sender.sendAsync(entity, event, true, () -> resend(entity, event))) {
+                    resend(entity, event);
+                }
+                return;
+            }
+            try {
+                sender.send(entity, event);
+                return;
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Audit event not sent to Elastic Search server: " + event + " - " + sender, e);
+            }
+        }
+        LOGGER.log(Level.WARNING, "Audit event not sent to Elastic Search server: {0}", event);
+    }
+
+    /**
+     * Sends an event that failed asynchronously again, once the circuit breaker lets it through, from the thread of
+     * this logger, which never waits for the server nor for a request in flight.
+     */
+    private void resend(ByteBufferEntity entity, Object event) {
+        CircuitBreaker breaker = getCircuitBreaker();
+        if (breaker.isReleased()) {
+            LOGGER.log(Level.WARNING, "Audit event not sent to Elastic Search server: {0}", event);
+            return;
+        }
+        long delay = Math.max(IN_FLIGHT_RETRY_DELAY, breaker.getRetryDelay());
+        getScheduler().schedule(() -> resendNow(entity, event, breaker), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void resendNow(ByteBufferEntity entity, Object event, CircuitBreaker breaker) {
+        ElasticSearchSender sender = elasticSearchSender;
+        if (breaker.isReleased() || sender == null) {
+            LOGGER.log(Level.WARNING, "Audit event not sent to Elastic Search server: {0}", event);
+        } else if (!breaker.tryAcquire()) {
+            resend(entity, event);
+        } else if (!sender.isAsync()) {
+            // reconfigured meanwhile, the thread of this logger being the one to wait for the server
+            try {
+                sender.send(entity, event);
+            } catch (IOException e) {
+                resend(entity, event);
+            }
+        } else if (!sender.sendAsync(entity, event, false, () -> resend(entity, event))) {
+            resend(entity, event);
+        }
+    }
+
+    /**
+     * Adds a document to the pending bulk, sending it right away once full.
+     */
+    private void buffer(ByteBuffer document) {
+        List<ElasticSearchBulk.Document> full = null;
+        synchronized (this) {
+            if (pending == null) {
+                pending = new ElasticSearchBulk(getBulkActions(), getBulkSize() * 1024L);
+            }
+            if (pending.add(document)) {
+                full = pending.drain();
+            }
+        }
+        if (full != null) {
+            // the delivery thread waits for the server, so that the events are held in the delivery queue
+            send(full, true);
+        }
+    }
+
+    /**
+     * Called once the delivery queue is drained: sends the pending bulk after the linger time, so that the events
+     * delivered meanwhile are sent along, unless it fills up first.
+     */
+    @Override
+    public void flush() {
+        if (getBulkLinger() == 0) {
+            sendPending(true);
+        } else {
+            scheduleSend(getBulkLinger());
+        }
+    }
+
+    private synchronized void scheduleSend(long delay) {
+        if (lingering == null && pending != null && !pending.isEmpty()) {
+            lingering = getScheduler().schedule(() -> sendPending(false), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the threads sending the bulks once they lingered and warming the connections up, owned by this logger
+     *     so that a slow server, which a synchronous request waits for, never holds a thread shared with the rest of
+     *     Jenkins
+     */
+    private synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            // as many threads as connections warmed up at once
+            scheduler = new ScheduledThreadPoolExecutor(Math.max(1, getWarmUpConnections()), task -> {
+                Thread thread = new Thread(task, "AuditTrail Elastic Search sender");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // the thread stops when idle, so that a discarded logger doesn't leak it
+            scheduler.setKeepAliveTime(SCHEDULER_KEEP_ALIVE, TimeUnit.SECONDS);
+            scheduler.allowCoreThreadTimeOut(true);
+            scheduler.setRemoveOnCancelPolicy(true);
+        }
+        return scheduler;
+    }
+
+    private void sendPending(boolean wait) {
+        List<ElasticSearchBulk.Document> documents;
+        synchronized (this) {
+            lingering = null;
+            if (pending == null || pending.isEmpty()) {
+                return;
+            }
+            documents = pending.drain();
+        }
+        send(documents, wait);
+    }
+
+    /**
+     * @param wait whether to wait until the server may be sent a request, and until fewer than the maximum number
+     *     of requests are in flight, rather than hold the documents until then, which only the delivery thread may do
+     */
+    private void send(List<ElasticSearchBulk.Document> documents, boolean wait) {
+        ElasticSearchSender sender = elasticSearchSender;
+        if (sender == null) {
+            return;
+        }
+        CircuitBreaker breaker = getCircuitBreaker();
+        if (!(wait ? breaker.acquire() : breaker.tryAcquire())) {
+            if (!breaker.isReleased()) {
+                hold(documents, breaker.getRetryDelay());
+            }
+            return;
+        }
+        if (sender.isAsync()) {
+            // several bulks in flight, the order of the events is only kept by their timestamp
+            if (!sender.sendBulkAsync(documents, this::retry, wait)) {
+                hold(documents, IN_FLIGHT_RETRY_DELAY);
+            }
+            return;
+        }
+        List<ElasticSearchBulk.Document> failed;
+        // one bulk at a time, so that they are sent in order
+        synchronized (sender) {
+            failed = sender.sendBulk(documents);
+        }
+        if (!failed.isEmpty()) {
+            retry(failed);
+        }
+    }
+
+    private void retry(List<ElasticSearchBulk.Document> failed) {
+        hold(failed, Math.max(RETRY_DELAY, getCircuitBreaker().getRetryDelay()));
+    }
+
+    private void hold(List<ElasticSearchBulk.Document> documents, long delay) {
+        synchronized (this) {
+            if (pending == null) {
+                pending = new ElasticSearchBulk(getBulkActions(), getBulkSize() * 1024L);
+            }
+            pending.retry(documents);
+        }
+        scheduleSend(Math.max(delay, getBulkLinger()));
+    }
+
+    /**
+     * Sends the pending bulk, failed documents included, as they won't be retried anymore, unless the server is
+     * unavailable.
+     */
+    @Override
+    public void cleanUp() throws SecurityException {
+        synchronized (this) {
+            if (lingering != null) {
+                lingering.cancel(false);
+                lingering = null;
+            }
+        }
+        CircuitBreaker breaker = getCircuitBreaker();
+        sendPending(false);
+        breaker.release();
+        ElasticSearchSender sender = elasticSearchSender;
+        if (sender != null) {
+            sender.close();
+        }
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdown();
+                scheduler = null;
+            }
+        }
+    }
+
+    /**
+     * Creates the sender once the logger is bound, unless it was created when loaded, so that the connections are
+     * warmed up before the first event rather than by its delivery.
+     */
+    @Override
+    public void start() {
+        if (elasticSearchSender == null) {
+            configure();
+        }
+    }
+
+    private boolean isSenderConfigured(Object event) {
         if (elasticSearchSender == null) {
             // Create the sender because it might not have been created when Jenkins started
             // The reason for it not being created seems to be because the credentials have not been loaded yet
             configure();
             if (elasticSearchSender == null) {
                 LOGGER.log(Level.FINER, "skip log {0}, elasticSearchSender not configured", event);
-                return;
+                return false;
             }
         }
-        LOGGER.log(Level.FINER, "Send audit message \"{0}\" to Elastic Search server {1}", new Object[] {
-            event, elasticSearchSender.getUrl()
-        });
-        try {
-            elasticSearchSender.sendMessage(event);
-        } catch (IOException e) {
-            LOGGER.log(
-                    Level.WARNING,
-                    "Audit event not sent to Elastic Search server: " + event + " - " + elasticSearchSender.toString(),
-                    e);
-        }
+        return true;
     }
 
     public void configure() {
@@ -172,8 +487,25 @@ public class ElasticSearchAuditLogger extends AuditLogger {
         }
         // Create the sender for Elastic Search
         try {
+            ElasticSearchSender previous = elasticSearchSender;
             elasticSearchSender = new ElasticSearchSender(
-                    url, username, password, clientKeyStore, clientKeyStorePassword, skipCertificateValidation);
+                    url,
+                    username,
+                    password,
+                    clientKeyStore,
+                    clientKeyStorePassword,
+                    skipCertificateValidation,
+                    getConnections(),
+                    async ? getMaxInFlightRequests() : 0,
+                    http2);
+            elasticSearchSender.setCompressRequests(compressRequests);
+            elasticSearchSender.setCircuitBreaker(getCircuitBreaker());
+            if (previous != null) {
+                previous.close();
+            }
+            if (warmUpConnections > 0) {
+                elasticSearchSender.warmUp(warmUpConnections, getScheduler());
+            }
             LOGGER.log(Level.FINE, "ElasticSearchAuditLogger: {0}", this);
         } catch (IOException ioe) {
             LOGGER.log(Level.SEVERE, "Unable to create ElasticSearchSender", ioe);
@@ -243,10 +575,280 @@ public class ElasticSearchAuditLogger extends AuditLogger {
         this.skipCertificateValidation = skipCertificateValidation;
     }
 
+    public boolean isCompressRequests() {
+        return compressRequests;
+    }
+
+    /**
+     * Sends the request bodies gzip compressed, which Elastic Search always accepts. The events, scripts above all,
+     * compress well, even more so when sent in bulk.
+     */
+    @DataBoundSetter
+    public void setCompressRequests(boolean compressRequests) {
+        this.compressRequests = compressRequests;
+        ElasticSearchSender sender = elasticSearchSender;
+        if (sender != null) {
+            sender.setCompressRequests(compressRequests);
+        }
+    }
+
+    public boolean isBulk() {
+        return bulk;
+    }
+
+    /**
+     * Buffers the events and sends them through the bulk API of Elastic Search, rather than posting them one by one.
+     */
+    @DataBoundSetter
+    public void setBulk(boolean bulk) {
+        this.bulk = bulk;
+    }
+
+    /**
+     * @return the number of events after which a bulk is sent
+     */
+    public int getBulkActions() {
+        return bulkActions > 0 ? bulkActions : DEFAULT_BULK_ACTIONS;
+    }
+
+    @DataBoundSetter
+    public void setBulkActions(int bulkActions) {
+        this.bulkActions = bulkActions;
+    }
+
+    /**
+     * @return the size of the events after which a bulk is sent, in kilobytes
+     */
+    public int getBulkSize() {
+        return bulkSize > 0 ? bulkSize : DEFAULT_BULK_SIZE;
+    }
+
+    @DataBoundSetter
+    public void setBulkSize(int bulkSize) {
+        this.bulkSize = bulkSize;
+    }
+
+    /**
+     * @return how long a bulk waits for more events once the delivery queue is drained, in milliseconds
+     */
+    public long getBulkLinger() {
+        return bulkLinger >= 0 ? bulkLinger : DEFAULT_BULK_LINGER;
+    }
+
+    @DataBoundSetter
+    public void setBulkLinger(long bulkLinger) {
+        this.bulkLinger = bulkLinger;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * Sends the requests with the asynchronous client, several of them at once, rather than one at a time waiting for
+     * each response.
+     */
+    @DataBoundSetter
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    /**
+     * @return the number of requests the asynchronous client sends before waiting for a response
+     */
+    public int getMaxInFlightRequests() {
+        return maxInFlightRequests > 0 ? maxInFlightRequests : DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+    }
+
+    @DataBoundSetter
+    public void setMaxInFlightRequests(int maxInFlightRequests) {
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    /**
+     * Lets the asynchronous client negotiate HTTP/2 with the servers supporting it over TLS, its requests then being
+     * multiplexed over a single connection.
+     */
+    @DataBoundSetter
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    /**
+     * @return the number of connections opened to the server at most
+     */
+    public int getMaxConnections() {
+        return maxConnections > 0 ? maxConnections : DEFAULT_MAX_CONNECTIONS;
+    }
+
+    @DataBoundSetter
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * @return the number of connections opened to a single node at most
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute > 0 ? maxConnectionsPerRoute : DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    }
+
+    @DataBoundSetter
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    /**
+     * @return how long opening a connection may take, in milliseconds
+     */
+    public int getConnectTimeout() {
+        return connectTimeout > 0 ? connectTimeout : DEFAULT_CONNECT_TIMEOUT;
+    }
+
+    @DataBoundSetter
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * @return how long a request waits for a connection of the pool, in milliseconds
+     */
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout > 0 ? connectionRequestTimeout : DEFAULT_CONNECTION_REQUEST_TIMEOUT;
+    }
+
+    @DataBoundSetter
+    public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    /**
+     * @return how long a request waits for data from the server, in milliseconds
+     */
+    public int getSocketTimeout() {
+        return socketTimeout > 0 ? socketTimeout : DEFAULT_SOCKET_TIMEOUT;
+    }
+
+    @DataBoundSetter
+    public void setSocketTimeout(int socketTimeout) {
+        this.socketTimeout = socketTimeout;
+    }
+
+    /**
+     * @return how long a connection stays idle in the pool before it is closed, in milliseconds, {@code 0} to keep it
+     */
+    public long getIdleTimeout() {
+        return Math.max(0, idleTimeout);
+    }
+
+    @DataBoundSetter
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * @return how long a connection is used before it is replaced, in milliseconds, {@code 0} for no limit
+     */
+    public long getConnectionTimeToLive() {
+        return Math.max(0, connectionTimeToLive);
+    }
+
+    /**
+     * Replaces the connections once they are old enough, so that a load balancer in front of the nodes gets to spread
+     * them again.
+     */
+    @DataBoundSetter
+    public void setConnectionTimeToLive(long connectionTimeToLive) {
+        this.connectionTimeToLive = connectionTimeToLive;
+    }
+
+    /**
+     * @return the number of connections opened as soon as the logger is configured
+     */
+    public int getWarmUpConnections() {
+        return Math.max(0, warmUpConnections);
+    }
+
+    @DataBoundSetter
+    public void setWarmUpConnections(int warmUpConnections) {
+        this.warmUpConnections = warmUpConnections;
+    }
+
+    ElasticSearchSender.Connections getConnections() {
+        return new ElasticSearchSender.Connections(
+                getMaxConnections(),
+                getMaxConnectionsPerRoute(),
+                getConnectTimeout(),
+                getConnectionRequestTimeout(),
+                getSocketTimeout(),
+                getIdleTimeout(),
+                getConnectionTimeToLive());
+    }
+
+    /**
+     * @return the number of requests sent by the asynchronous client and waiting for their response
+     */
+    public int getInFlightRequestCount() {
+        ElasticSearchSender sender = elasticSearchSender;
+        return sender != null ? sender.getInFlight() : 0;
+    }
+
+    /**
+     * @return the number of requests that failed, or that Elastic Search rejected as a whole
+     */
+    public long getFailedRequestCount() {
+        ElasticSearchSender sender = elasticSearchSender;
+        return sender != null ? sender.failedRequests.sum() : 0;
+    }
+
+    /**
+     * @return the mean time Elastic Search took to respond, in milliseconds
+     */
+    public long getAverageResponseTime() {
+        ElasticSearchSender sender = elasticSearchSender;
+        return sender != null ? TimeUnit.NANOSECONDS.toMillis(sender.getAverageResponseNanos()) : 0;
+    }
+
+    /**
+     * @return the number of bulk requests sent
+     */
+    public long getBulkRequestCount() {
+        ElasticSearchSender sender = elasticSearchSender;
+        return sender != null ? sender.bulkRequests.sum() : 0;
+    }
+
+    /**
+     * @return the number of events sent again after Elastic Search rejected them for a transient reason
+     */
+    public long getRetriedEventCount() {
+        ElasticSearchSender sender = elasticSearchSender;
+        return sender != null ? sender.retriedDocuments.sum() : 0;
+    }
+
+    /**
+     * @return the number of events Elastic Search rejected for good, or too many times
+     */
+    public long getDroppedEventCount() {
+        ElasticSearchSender sender = elasticSearchSender;
+        return sender != null ? sender.droppedDocuments.sum() : 0;
+    }
+
     public String getDisplayName() {
         return "Elastic Search Logger";
     }
 
+    @Override
+    public synchronized CircuitBreaker getCircuitBreaker() {
+        if (circuitBreaker == null) {
+            circuitBreaker = new CircuitBreaker("Elastic Search server " + url);
+        }
+        return circuitBreaker;
+    }
+
     ElasticSearchSender getElasticSearchSender() {
         return elasticSearchSender;
     }
@@ -274,6 +876,28 @@ public class ElasticSearchAuditLogger extends AuditLogger {
         if (skipCertificateValidation != that.skipCertificateValidation) {
             return false;
         }
+        if (compressRequests != that.compressRequests) {
+            return false;
+        }
+        if (bulk != that.bulk
+                || getBulkActions() != that.getBulkActions()
+                || getBulkSize() != that.getBulkSize()
+                || getBulkLinger() != that.getBulkLinger()) {
+            return false;
+        }
+        if (async != that.async || getMaxInFlightRequests() != that.getMaxInFlightRequests() || http2 != that.http2) {
+            return false;
+        }
+        if (getMaxConnections() != that.getMaxConnections()
+                || getMaxConnectionsPerRoute() != that.getMaxConnectionsPerRoute()
+                || getConnectTimeout() != that.getConnectTimeout()
+                || getConnectionRequestTimeout() != that.getConnectionRequestTimeout()
+                || getSocketTimeout() != that.getSocketTimeout()
+                || getIdleTimeout() != that.getIdleTimeout()
+                || getConnectionTimeToLive() != that.getConnectionTimeToLive()
+                || getWarmUpConnections() != that.getWarmUpConnections()) {
+            return false;
+        }
 
         return true;
     }
@@ -281,13 +905,30 @@ public class ElasticSearchAuditLogger extends AuditLogger {
     @Override
     public int hashCode() {
         final int prime = 31;
-        int result = super.hashCode();
+        // over the fields that equals compares only, so that an unchanged logger is recognized once reconfigured
+        int result = 1;
         result = prime * result + ((url == null) ? 0 : url.hashCode());
         result = prime * result
                 + ((usernamePasswordCredentialsId == null) ? 0 : usernamePasswordCredentialsId.hashCode());
         result = prime * result
                 + ((clientCertificateCredentialsId == null) ? 0 : clientCertificateCredentialsId.hashCode());
         result = prime * result + Boolean.hashCode(skipCertificateValidation);
+        result = prime * result + Boolean.hashCode(compressRequests);
+        result = prime * result + Boolean.hashCode(bulk);
+        result = prime * result + getBulkActions();
+        result = prime * result + getBulkSize();
+        result = prime * result + Long.hashCode(getBulkLinger());
+        result = prime * result + Boolean.hashCode(async);
+        result = prime * result + getMaxInFlightRequests();
+        result = prime * result + Boolean.hashCode(http2);
+        result = prime * result + getMaxConnections();
+        result = prime * result + getMaxConnectionsPerRoute();
+        result = prime * result + getConnectTimeout();
+        result = prime * result + getConnectionRequestTimeout();
+        result = prime * result + getSocketTimeout();
+        result = prime * result + Long.hashCode(getIdleTimeout());
+        result = prime * result + Long.hashCode(getConnectionTimeToLive());
+        result = prime * result + getWarmUpConnections();
         return result;
     }
 
@@ -297,7 +938,9 @@ public class ElasticSearchAuditLogger extends AuditLogger {
                 + url + "'" + ", usernamePasswordCredentialsId='"
                 + usernamePasswordCredentialsId + "'" + ", clientCertificateCredentialsId='"
                 + clientCertificateCredentialsId + "'" + ", skipCertificateValidation='"
-                + skipCertificateValidation + "'" + "}";
+                + skipCertificateValidation + "'" + ", compressRequests='"
+                + compressRequests + "'" + ", bulk='"
+                + bulk + "'" + "}";
     }
 
     /**
@@ -306,10 +949,91 @@ public class ElasticSearchAuditLogger extends AuditLogger {
      */
     static class ElasticSearchSender {
         private final CloseableHttpClient httpClient;
+        // null unless the requests are sent asynchronously
+        private final CloseableHttpAsyncClient asyncClient;
+        private final int maxInFlight;
+        private final Semaphore inFlight;
+        // set once closed, so that no request is sent anymore while waiting for those in flight
+        private volatile boolean closed;
 
         private final String url;
         private final String auth;
         private final boolean skipCertificateValidation;
+        // null if the URL has no bulk API counterpart
+        private final String bulkUrl;
+        private final byte[] bulkActionLine;
+
+        private volatile boolean compressRequests;
+        private volatile CircuitBreaker circuitBreaker;
+
+        final LongAdder bulkRequests = new LongAdder();
+        final LongAdder retriedDocuments = new LongAdder();
+        final LongAdder droppedDocuments = new LongAdder();
+        final LongAdder failedRequests = new LongAdder();
+        final LongAdder responses = new LongAdder();
+        final LongAdder responseNanos = new LongAdder();
+        // how long closing waits for the requests in flight, in seconds
+        private static final long CLOSE_TIMEOUT = 10;
+
+        /**
+         * The limits of the connection pools and the timeouts of the connections, in milliseconds.
+         */
+        static final class Connections {
+            static final Connections DEFAULT = new Connections(
+                    DEFAULT_MAX_CONNECTIONS,
+                    DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+                    DEFAULT_CONNECT_TIMEOUT,
+                    DEFAULT_CONNECTION_REQUEST_TIMEOUT,
+                    DEFAULT_SOCKET_TIMEOUT,
+                    DEFAULT_IDLE_TIMEOUT,
+                    0);
+
+            final int maxTotal;
+            final int maxPerRoute;
+            final int connectTimeout;
+            final int requestTimeout;
+            final int socketTimeout;
+            final long idleTimeout;
+            final long timeToLive;
+
+            /**
+             * @param requestTimeout how long a request waits for a connection of the pool
+             * @param socketTimeout how long a request waits for data from the server
+             * @param idleTimeout how long a connection stays idle in the pool, {@code 0} to keep it
+             * @param timeToLive how long a connection is used, {@code 0} for no limit
+             */
+            Connections(
+                    int maxTotal,
+                    int maxPerRoute,
+                    int connectTimeout,
+                    int requestTimeout,
+                    int socketTimeout,
+                    long idleTimeout,
+                    long timeToLive) {
+                this.maxTotal = Math.max(1, maxTotal);
+                this.maxPerRoute = Math.max(1, Math.min(maxPerRoute, this.maxTotal));
+                this.connectTimeout = connectTimeout;
+                this.requestTimeout = requestTimeout;
+                this.socketTimeout = socketTimeout;
+                this.idleTimeout = idleTimeout;
+                this.timeToLive = timeToLive;
+            }
+
+            ConnectionConfig connectionConfig() {
+                return ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout))
+                        .setSocketTimeout(Timeout.ofMilliseconds(socketTimeout))
+                        .setTimeToLive(timeToLive > 0 ? TimeValue.ofMilliseconds(timeToLive) : null)
+                        .build();
+            }
+
+            RequestConfig requestConfig() {
+                return RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(requestTimeout))
+                        .setResponseTimeout(Timeout.ofMilliseconds(socketTimeout))
+                        .build();
+            }
+        }
 
         public ElasticSearchSender(
                 String url,
@@ -319,6 +1043,35 @@ public class ElasticSearchAuditLogger extends AuditLogger {
                 String clientKeyStorePassword,
                 boolean skipCertificateValidation)
                 throws IOException, GeneralSecurityException {
+            this(
+                    url,
+                    username,
+                    password,
+                    clientKeyStore,
+                    clientKeyStorePassword,
+                    skipCertificateValidation,
+                    Connections.DEFAULT,
+                    0,
+                    false);
+        }
+
+        /**
+         * @param connections the limits and timeouts of the connections of both clients
+         * @param maxInFlight the number of requests sent at once by the asynchronous client, {@code 0} to send them
+         *     one at a time with the blocking client instead
+         * @param http2 whether the asynchronous client negotiates HTTP/2 with the servers supporting it
+         */
+        ElasticSearchSender(
+                String url,
+                String username,
+                String password,
+                KeyStore clientKeyStore,
+                String clientKeyStorePassword,
+                boolean skipCertificateValidation,
+                Connections connections,
+                int maxInFlight,
+                boolean http2)
+                throws IOException, GeneralSecurityException {
             this.url = url;
             if (StringUtils.isNotBlank(username)) {
                 auth = Base64.encodeBase64String(
@@ -327,7 +1080,23 @@ public class ElasticSearchAuditLogger extends AuditLogger {
                 auth = null;
             }
             this.skipCertificateValidation = skipCertificateValidation;
-            httpClient = createHttpClient(clientKeyStore, clientKeyStorePassword, skipCertificateValidation);
+            String bulkEndpoint = null;
+            byte[] actionLine = null;
+            try {
+                bulkEndpoint = ElasticSearchBulk.bulkUrl(url);
+                actionLine = ElasticSearchBulk.actionLine(url);
+            } catch (URISyntaxException e) {
+                LOGGER.log(Level.WARNING, "No bulk API for the Elastic Search URL " + url, e);
+            }
+            this.bulkUrl = bulkEndpoint;
+            this.bulkActionLine = actionLine;
+            SSLContext sslContext = createSslContext(clientKeyStore, clientKeyStorePassword, skipCertificateValidation);
+            httpClient = createHttpClient(sslContext, skipCertificateValidation, connections);
+            this.maxInFlight = Math.max(0, maxInFlight);
+            this.inFlight = new Semaphore(this.maxInFlight);
+            asyncClient = this.maxInFlight > 0
+                    ? createAsyncClient(sslContext, skipCertificateValidation, connections, http2)
+                    : null;
         }
 
         public String getUrl() {
@@ -338,7 +1107,40 @@ public class ElasticSearchAuditLogger extends AuditLogger {
             return skipCertificateValidation;
         }
 
-        private CloseableHttpClient createHttpClient(
+        boolean isCompressRequests() {
+            return compressRequests;
+        }
+
+        /**
+         * @param circuitBreaker told about the outcome of each request, the server being unavailable when a request
+         *     fails or is rejected for a transient reason
+         */
+        void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+        }
+
+        private void succeeded() {
+            CircuitBreaker breaker = circuitBreaker;
+            if (breaker != null) {
+                breaker.recordSuccess();
+            }
+        }
+
+        private void failed(Throwable cause) {
+            CircuitBreaker breaker = circuitBreaker;
+            if (breaker != null) {
+                breaker.recordFailure(cause);
+            }
+        }
+
+        /**
+         * @param compressRequests whether the request bodies are sent gzip compressed
+         */
+        void setCompressRequests(boolean compressRequests) {
+            this.compressRequests = compressRequests;
+        }
+
+        private static SSLContext createSslContext(
                 KeyStore keyStore, String keyStorePassword, boolean skipCertificateValidation)
                 throws GeneralSecurityException {
             TrustStrategy trustStrategy = null;
@@ -350,7 +1152,15 @@ public class ElasticSearchAuditLogger extends AuditLogger {
             if (keyStore != null) {
                 contextBuilder.loadKeyMaterial(keyStore, keyStorePassword.toCharArray());
             }
-            SSLContext sslContext = contextBuilder.build();
+            return contextBuilder.build();
+        }
+
+        /**
+         * Creates the client sending the requests one at a time, bounding how long it waits for a server that stopped
+         * responding, which would otherwise hold the delivery of the events for good.
+         */
+        private static CloseableHttpClient createHttpClient(
+                SSLContext sslContext, boolean skipCertificateValidation, Connections connections) {
             HttpClientBuilder builder = HttpClients.custom();
 
             SSLConnectionSocketFactoryBuilder sslConnectionBuilder =
@@ -361,64 +1171,514 @@ public class ElasticSearchAuditLogger extends AuditLogger {
 
             builder.setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
                     .setSSLSocketFactory(sslConnectionBuilder.build())
+                    .setDefaultConnectionConfig(connections.connectionConfig())
+                    .setMaxConnTotal(connections.maxTotal)
+                    .setMaxConnPerRoute(connections.maxPerRoute)
                     .build());
+            builder.setDefaultRequestConfig(connections.requestConfig());
+            builder.evictExpiredConnections();
+            if (connections.idleTimeout > 0) {
+                builder.evictIdleConnections(TimeValue.ofMilliseconds(connections.idleTimeout));
+            }
 
             return builder.build();
         }
 
-        public void sendMessage(String event) throws IOException {
-            HttpPost post = getHttpPost(event);
-            httpClient.execute(post, response -> {
-                int statusCode = response.getCode();
-                if (statusCode >= 200 && statusCode < 300) {
-                    LOGGER.log(Level.FINE, "Response: {0}", response);
+        /**
+         * Creates the client sending the requests without waiting for their responses, its connections multiplexing
+         * the requests once HTTP/2 is negotiated through TLS.
+         */
+        private static CloseableHttpAsyncClient createAsyncClient(
+                SSLContext sslContext, boolean skipCertificateValidation, Connections connections, boolean http2) {
+            ClientTlsStrategyBuilder tlsStrategyBuilder =
+                    ClientTlsStrategyBuilder.create().setSslContext(sslContext);
+            if (skipCertificateValidation) {
+                tlsStrategyBuilder.setHostnameVerifier(NoopHostnameVerifier.INSTANCE);
+            }
+            HttpAsyncClientBuilder builder = HttpAsyncClients.custom()
+                    .setConnectionManager(PoolingAsyncClientConnectionManagerBuilder.create()
+                            .setTlsStrategy(tlsStrategyBuilder.build())
+                            .setDefaultTlsConfig(TlsConfig.custom()
+                                    .setVersionPolicy(
+                                            http2 ? HttpVersionPolicy.NEGOTIATE : HttpVersionPolicy.FORCE_HTTP_1)
+                                    .build())
+                            .setDefaultConnectionConfig(connections.connectionConfig())
+                            .setMaxConnTotal(connections.maxTotal)
+                            .setMaxConnPerRoute(connections.maxPerRoute)
+                            .build())
+                    .setDefaultRequestConfig(connections.requestConfig())
+                    .evictExpiredConnections();
+            if (connections.idleTimeout > 0) {
+                builder.evictIdleConnections(TimeValue.ofMilliseconds(connections.idleTimeout));
+            }
+            CloseableHttpAsyncClient client = builder.build();
+            client.start();
+            return client;
+        }
+
+        boolean isAsync() {
+            return asyncClient != null;
+        }
+
+        /**
+         * Opens connections to the server ahead of the first events, in the background, by requesting its root, so
+         * that the first events don't pay for the TCP and TLS handshakes. The requests are sent at once, each of them
+         * opening its own connection, which then stays in the pool until it is idle for too long.
+         *
+         * @param executor runs the requests of the synchronous client, which wait for the server
+         */
+        void warmUp(int connections, Executor executor) {
+            String root;
+            try {
+                URI uri = new URI(url);
+                root = new URI(uri.getScheme(), null, uri.getHost(), uri.getPort(), "/", null, null).toString();
+            } catch (URISyntaxException e) {
+                LOGGER.log(Level.FINE, "Not warming up the connections to " + url, e);
+                return;
+            }
+            for (int i = 0; i < connections; i++) {
+                if (asyncClient != null) {
+                    SimpleRequestBuilder head = SimpleRequestBuilder.head(root);
+                    if (auth != null) {
+                        head.addHeader("Authorization", "Basic " + auth);
+                    }
+                    asyncClient.execute(head.build(), new FutureCallback<SimpleHttpResponse>() {
+                        @Override
+                        public void completed(SimpleHttpResponse response) {
+                            LOGGER.log(Level.FINE, "Warmed up a connection to {0}", root);
+                        }
+
+                        @Override
+                        public void failed(Exception e) {
+                            LOGGER.log(Level.FINE, "Couldn't warm up a connection to " + root, e);
+                        }
+
+                        @Override
+                        public void cancelled() {
+                            LOGGER.log(Level.FINE, "Cancelled warming up a connection to {0}", root);
+                        }
+                    });
                 } else {
-                    LOGGER.log(
-                            Level.WARNING,
-                            "Audit event not sent to Elastic Search server: " + event + " - " + this,
-                            getErrorMessage(response));
+                    HttpHead head = new HttpHead(root);
+                    if (auth != null) {
+                        head.addHeader("Authorization", "Basic " + auth);
+                    }
+                    executor.execute(() -> {
+                        try {
+                            httpClient.execute(head, response -> null);
+                        } catch (IOException e) {
+                            LOGGER.log(Level.FINE, "Couldn't warm up a connection to " + root, e);
+                        }
+                    });
+                }
+            }
+        }
+
+        /**
+         * @return the number of requests sent by the asynchronous client and waiting for their response
+         */
+        int getInFlight() {
+            return maxInFlight - inFlight.availablePermits();
+        }
+
+        /**
+         * Waits for the requests in flight, for a while, then releases the connections.
+         */
+        void close() {
+            closed = true;
+            if (asyncClient != null) {
+                try {
+                    if (inFlight.tryAcquire(maxInFlight, CLOSE_TIMEOUT, TimeUnit.SECONDS)) {
+                        // given back, so that closing again doesn't wait for requests that are long done
+                        inFlight.release(maxInFlight);
+                    } else {
+                        LOGGER.log(Level.WARNING, "Closing the Elastic Search client with requests in flight");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                asyncClient.close(CloseMode.GRACEFUL);
+            }
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Couldn't close the Elastic Search client", e);
+            }
+        }
+
+        public void sendMessage(String event) throws IOException {
+            send(getHttpPost(event), event);
+        }
+
+        public void sendEvent(AuditEvent event) throws IOException {
+            send(getHttpPost(event), event);
+        }
+
+        void send(HttpEntity entity, Object event) throws IOException {
+            send(createHttpPost(entity), event);
+        }
+
+        /**
+         * @throws IOException if the request failed or was rejected for a transient reason, in which case the event
+         *     may be sent again
+         */
+        private void send(HttpPost post, Object event) throws IOException {
+            long start = System.nanoTime();
+            try {
+                httpClient.execute(post, response -> {
+                    int statusCode = response.getCode();
+                    if (ElasticSearchBulk.isTransient(statusCode)) {
+                        throw new IOException(getErrorMessage(response));
+                    }
+                    if (statusCode >= 200 && statusCode < 300) {
+                        LOGGER.log(Level.FINE, "Response: {0}", response);
+                    } else {
+                        failedRequests.increment();
+                        LOGGER.log(
+                                Level.WARNING,
+                                "Audit event not sent to Elastic Search server: " + event + " - " + this,
+                                getErrorMessage(response));
+                    }
+                    return response;
+                });
+                succeeded();
+            } catch (IOException e) {
+                failedRequests.increment();
+                failed(e);
+                throw e;
+            } finally {
+                recordResponse(start);
+            }
+        }
+
+        /**
+         * Sends documents at once through the bulk API.
+         *
+         * @return the documents to send again, as they were rejected for a transient reason
+         */
+        List<ElasticSearchBulk.Document> sendBulk(List<ElasticSearchBulk.Document> documents) {
+            List<ElasticSearchBulk.Document> dropped = new ArrayList<>();
+            List<ElasticSearchBulk.Document> failed;
+            if (bulkUrl == null) {
+                dropped.addAll(documents);
+                failed = Collections.emptyList();
+            } else {
+                startBulk(documents);
+                HttpPost post = createHttpPost(bulkUrl, new NdjsonEntity(documents, bulkActionLine));
+                long start = System.nanoTime();
+                try {
+                    failed = httpClient.execute(post, response -> {
+                        int statusCode = response.getCode();
+                        String body = statusCode >= 200 && statusCode < 300
+                                ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8)
+                                : getErrorMessage(response);
+                        return bulkOutcome(documents, statusCode, body, dropped);
+                    });
+                } catch (IOException e) {
+                    failed = bulkFailure(documents, e);
+                }
+                recordResponse(start);
+            }
+            return bulkDone(failed, dropped);
+        }
+
+        /**
+         * Sends documents at once through the bulk API, without waiting for the response.
+         *
+         * @param retry called, by the thread receiving the response, with the documents to send again
+         * @param wait whether to wait until fewer than the maximum number of requests are in flight, which only the
+         *     delivery thread may do
+         * @return {@code false} if the documents weren't sent, and are left to the caller
+         */
+        boolean sendBulkAsync(
+                List<ElasticSearchBulk.Document> documents,
+                Consumer<List<ElasticSearchBulk.Document>> retry,
+                boolean wait) {
+            if (bulkUrl == null) {
+                droppedDocuments.add(documents.size());
+                return true;
+            }
+            AsyncRequestProducer request = createAsyncRequest(
+                    bulkUrl, new NdjsonEntity(documents, bulkActionLine).getBuffers(), NdjsonEntity.NDJSON);
+            if (!acquire(wait)) {
+                return false;
+            }
+            startBulk(documents);
+            long start = System.nanoTime();
+            asyncClient.execute(request, SimpleResponseConsumer.create(), new FutureCallback<SimpleHttpResponse>() {
+                @Override
+                public void completed(SimpleHttpResponse response) {
+                    inFlight.release();
+                    recordResponse(start);
+                    int statusCode = response.getCode();
+                    String body = statusCode >= 200 && statusCode < 300
+                            ? response.getBodyText()
+                            : getErrorMessage(statusCode, response.getBodyText());
+                    List<ElasticSearchBulk.Document> dropped = new ArrayList<>();
+                    List<ElasticSearchBulk.Document> failed = bulkOutcome(documents, statusCode, body, dropped);
+                    done(bulkDone(failed, dropped));
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    inFlight.release();
+                    done(bulkDone(bulkFailure(documents, e), Collections.emptyList()));
+                }
+
+                @Override
+                public void cancelled() {
+                    failed(new CancellationException("Request cancelled"));
+                }
+
+                private void done(List<ElasticSearchBulk.Document> failed) {
+                    if (!failed.isEmpty()) {
+                        retry.accept(failed);
+                    }
                 }
-                return response;
             });
+            return true;
         }
 
-        HttpPost getHttpPost(String data) {
-            HttpPost postRequest = new HttpPost(url);
-            // char encoding is set to UTF_8 since this request posts a JSON string
+        private void startBulk(List<ElasticSearchBulk.Document> documents) {
+            for (ElasticSearchBulk.Document document : documents) {
+                document.attempts++;
+            }
+            bulkRequests.increment();
+        }
+
+        /**
+         * @param body the response, or the error message if the request failed
+         * @return the documents to send again
+         */
+        private List<ElasticSearchBulk.Document> bulkOutcome(
+                List<ElasticSearchBulk.Document> documents,
+                int statusCode,
+                String body,
+                List<ElasticSearchBulk.Document> dropped) {
+            if (ElasticSearchBulk.isTransient(statusCode)) {
+                return bulkFailure(documents, new IOException(body));
+            }
+            succeeded();
+            if (statusCode >= 200 && statusCode < 300) {
+                LOGGER.log(Level.FINE, "Bulk of {0} audit events sent", documents.size());
+                return ElasticSearchBulk.failed(documents, body, dropped);
+            }
+            failedRequests.increment();
+            LOGGER.log(
+                    Level.WARNING,
+                    "{0} audit events not sent to Elastic Search server {1}: {2}",
+                    new Object[] {documents.size(), url, body});
+            return dropAll(documents, dropped);
+        }
+
+        /**
+         * The server being unavailable, the documents are held until it is back, the attempt not counting against
+         * them.
+         */
+        private List<ElasticSearchBulk.Document> bulkFailure(List<ElasticSearchBulk.Document> documents, Exception e) {
+            failedRequests.increment();
+            failed(e);
+            LOGGER.log(Level.FINE, documents.size() + " audit events not sent to Elastic Search server " + url, e);
+            for (ElasticSearchBulk.Document document : documents) {
+                document.attempts--;
+            }
+            return new ArrayList<>(documents);
+        }
+
+        private List<ElasticSearchBulk.Document> bulkDone(
+                List<ElasticSearchBulk.Document> failed, List<ElasticSearchBulk.Document> dropped) {
+            retriedDocuments.add(failed.size());
+            droppedDocuments.add(dropped.size());
+            return failed;
+        }
+
+        private void recordResponse(long start) {
+            responses.increment();
+            responseNanos.add(System.nanoTime() - start);
+        }
+
+        /**
+         * @return the mean time between sending a request and receiving its response
+         */
+        long getAverageResponseNanos() {
+            long count = responses.sum();
+            return count == 0 ? 0 : responseNanos.sum() / count;
+        }
+
+        /**
+         * Takes one of the requests that may be in flight, the thread that doesn't wait never being held by a slow
+         * server.
+         *
+         * @param wait whether to wait until fewer than the maximum number of requests are in flight
+         * @return whether the request may be sent, {@code false} if the sender is closed, if the maximum number of
+         *     requests are in flight without waiting for them, or if interrupted meanwhile
+         */
+        private boolean acquire(boolean wait) {
+            if (closed) {
+                return false;
+            }
+            if (!wait) {
+                return inFlight.tryAcquire();
+            }
+            try {
+                inFlight.acquire();
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        /**
+         * Sends a single event with the asynchronous client, without waiting for the response.
+         *
+         * @param wait whether to wait until fewer than the maximum number of requests are in flight, which only the
+         *     delivery thread may do
+         * @param retry called, by the thread receiving the response, if the server is unavailable
+         * @return {@code false} if the event wasn't sent, and is left to the caller
+         */
+        boolean sendAsync(ByteBufferEntity entity, Object event, boolean wait, Runnable retry) {
+            AsyncRequestProducer request =
+                    createAsyncRequest(url, entity.getBuffers(), ContentType.parse(entity.getContentType()));
+            if (!acquire(wait)) {
+                return false;
+            }
+            long start = System.nanoTime();
+            asyncClient.execute(request, SimpleResponseConsumer.create(), new FutureCallback<SimpleHttpResponse>() {
+                @Override
+                public void completed(SimpleHttpResponse response) {
+                    inFlight.release();
+                    recordResponse(start);
+                    int statusCode = response.getCode();
+                    if (ElasticSearchBulk.isTransient(statusCode)) {
+                        failure(new IOException(getErrorMessage(statusCode, response.getBodyText())));
+                        return;
+                    }
+                    succeeded();
+                    if (statusCode < 200 || statusCode >= 300) {
+                        failedRequests.increment();
+                        LOGGER.log(
+                                Level.WARNING,
+                                "Audit event not sent to Elastic Search server: {0} - {1}",
+                                new Object[] {event, getErrorMessage(statusCode, response.getBodyText())});
+                    }
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    inFlight.release();
+                    failure(e);
+                }
+
+                /**
+                 * The server being unavailable, the event is sent again, as the synchronous client does.
+                 */
+                private void failure(Exception e) {
+                    failedRequests.increment();
+                    ElasticSearchSender.this.failed(e);
+                    LOGGER.log(Level.FINE, "Audit event not sent to Elastic Search server: " + event + " - " + url, e);
+                    retry.run();
+                }
+
+                @Override
+                public void cancelled() {
+                    failed(new CancellationException("Request cancelled"));
+                }
+            });
+            return true;
+        }
+
+        private static List<ElasticSearchBulk.Document> dropAll(
+                List<ElasticSearchBulk.Document> documents, List<ElasticSearchBulk.Document> dropped) {
+            dropped.addAll(documents);
+            return Collections.emptyList();
+        }
+
+        static String getPayload(String data) {
             JSONObject payload = new JSONObject();
             payload.put("message", data);
             payload.put(
                     "@timestamp", DATE_FORMATTER.format(Calendar.getInstance().getTime()));
-            StringEntity input = new StringEntity(
-                    payload.toString(), ContentType.APPLICATION_JSON, StandardCharsets.UTF_8.name(), false);
-            postRequest.setEntity(input);
+            return payload.toString();
+        }
+
+        HttpPost getHttpPost(String data) {
+            return createHttpPost(createMessageEntity(data));
+        }
+
+        /**
+         * Posts the JSON encoding of the event shared with the other loggers, instead of rendering it again.
+         */
+        HttpPost getHttpPost(AuditEvent event) {
+            return createHttpPost(createEventEntity(event));
+        }
+
+        ByteBufferEntity createMessageEntity(String data) {
+            // char encoding is set to UTF_8 since this request posts a JSON string
+            return new ByteBufferEntity(
+                    ByteBuffer.wrap(getPayload(data).getBytes(StandardCharsets.UTF_8)), ContentType.APPLICATION_JSON);
+        }
+
+        ByteBufferEntity createEventEntity(AuditEvent event) {
+            return new ByteBufferEntity(event.getJsonBytes(), ContentType.APPLICATION_JSON);
+        }
+
+        private HttpPost createHttpPost(HttpEntity entity) {
+            return createHttpPost(url, entity);
+        }
+
+        /**
+         * The asynchronous client writing the body from a producer rather than a stream, the buffers are written as
+         * the connection accepts them, compressed on the way if requested.
+         */
+        private AsyncRequestProducer createAsyncRequest(String target, List<ByteBuffer> body, ContentType type) {
+            AsyncRequestBuilder builder = AsyncRequestBuilder.post(target)
+                    .setEntity(new BufferEntityProducer(body, type, compressRequests));
+            if (auth != null) {
+                builder.addHeader("Authorization", "Basic " + auth);
+            }
+            return builder.build();
+        }
+
+        /**
+         * Compresses the body while it is written to the connection, if requested.
+         */
+        private HttpPost createHttpPost(String target, HttpEntity entity) {
+            HttpPost postRequest = new HttpPost(target);
+            postRequest.setEntity(compressRequests ? new GzipCompressingEntity(entity) : entity);
             if (auth != null) {
                 postRequest.addHeader("Authorization", "Basic " + auth);
             }
             return postRequest;
         }
 
+        private String getErrorMessage(int statusCode, String body) {
+            return "HTTP error code: " + statusCode + "\nURL: " + url + "\nRESPONSE: " + body;
+        }
+
         private String getErrorMessage(ClassicHttpResponse response) {
-            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-            try (PrintStream stream = new PrintStream(byteStream, true, StandardCharsets.UTF_8)) {
+            StringBuilder message = new StringBuilder("HTTP error code: ")
+                    .append(response.getCode())
+                    .append("\nURL: ")
+                    .append(url)
+                    .append("\nRESPONSE: ")
+                    .append(response)
+                    .append('\n');
+            HttpEntity entity = response.getEntity();
+            if (entity != null) {
                 try {
-                    stream.print("HTTP error code: ");
-                    stream.println(response.getCode());
-                    stream.print("URL: ");
-                    stream.println(url);
-                    stream.println("RESPONSE: " + response);
-                    response.getEntity().writeTo(stream);
-                } catch (IOException e) {
-                    stream.println(ExceptionUtils.getStackTrace(e));
+                    // read once into the message rather than copied from an intermediate stream
+                    message.append(EntityUtils.toString(entity, StandardCharsets.UTF_8));
+                } catch (IOException | ParseException e) {
+                    message.append(ExceptionUtils.getStackTrace(e));
                 }
-                stream.flush();
-                return byteStream.toString(StandardCharsets.UTF_8);
             }
+            return message.toString();
         }
     }
 
     @Extension
-    public static class DescriptorImpl extends Descriptor<AuditLogger> {
+    public static class DescriptorImpl extends AuditLoggerDescriptor {
 
         @Override
         public String getDisplayName() {
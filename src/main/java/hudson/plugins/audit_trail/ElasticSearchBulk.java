@@ -0,0 +1,180 @@
+package hudson.plugins.audit_trail;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+import net.sf.json.util.JSONUtils;
+
+/**
+ * The documents buffered by an {@link ElasticSearchAuditLogger} until they are sent at once through the
+ * <a href="https://www.elastic.co/guide/en/elasticsearch/reference/current/docs-bulk.html">bulk API</a>.
+ * <p>
+ * A bulk request is an NDJSON body, written by {@link NdjsonEntity}, an {@code index} action line preceding each
+ * document. Elastic Search reports
+ * the outcome of each document in the response, so that the documents rejected for a transient reason, such as a
+ * full queue on the ingest node, are retried on their own, while the ones it will never accept are dropped.
+ */
+final class ElasticSearchBulk {
+
+    private static final Logger LOGGER = Logger.getLogger(ElasticSearchBulk.class.getName());
+    static final int MAX_ATTEMPTS = 3;
+    private static final String BULK_ENDPOINT = "_bulk";
+
+    /**
+     * A document and the number of times it was sent.
+     */
+    static final class Document {
+        final ByteBuffer json;
+        int attempts;
+
+        Document(ByteBuffer json) {
+            this.json = json;
+        }
+    }
+
+    private final int maxActions;
+    private final long maxBytes;
+    // both guarded by the logger
+    private final List<Document> documents = new ArrayList<>();
+    private long bytes;
+
+    /**
+     * @param maxActions the number of documents after which the bulk is full
+     * @param maxBytes the size of the documents after which the bulk is full
+     */
+    ElasticSearchBulk(int maxActions, long maxBytes) {
+        this.maxActions = Math.max(1, maxActions);
+        this.maxBytes = Math.max(1, maxBytes);
+    }
+
+    /**
+     * @return whether the bulk is full and should be sent
+     */
+    boolean add(ByteBuffer json) {
+        documents.add(new Document(json));
+        bytes += json.remaining();
+        return documents.size() >= maxActions || bytes >= maxBytes;
+    }
+
+    /**
+     * Puts documents that failed back first, so that they are sent before the newer ones.
+     */
+    void retry(List<Document> failed) {
+        documents.addAll(0, failed);
+        for (Document document : failed) {
+            bytes += document.json.remaining();
+        }
+    }
+
+    boolean isEmpty() {
+        return documents.isEmpty();
+    }
+
+    /**
+     * @return the buffered documents, the bulk being empty afterwards
+     */
+    List<Document> drain() {
+        List<Document> drained = new ArrayList<>(documents);
+        documents.clear();
+        bytes = 0;
+        return drained;
+    }
+
+    /**
+     * @param url the URL documents were posted to one by one, such as {@code https://elastic/myindex/jenkinslog/}
+     * @return the URL of the bulk API of the same index, with the same query string
+     */
+    static String bulkUrl(String url) throws URISyntaxException {
+        URI uri = new URI(url);
+        String index = pathSegment(uri, 0);
+        String path = "/" + (index != null ? index + "/" : "") + BULK_ENDPOINT;
+        String bulkUrl = new URI(uri.getScheme(), uri.getUserInfo(), uri.getHost(), uri.getPort(), path, null, null)
+                .toString();
+        // kept as it was encoded
+        return uri.getRawQuery() != null ? bulkUrl + "?" + uri.getRawQuery() : bulkUrl;
+    }
+
+    /**
+     * @return the action line preceding each document, naming the document type of the URL, if any, for the servers
+     *     still relying on it
+     */
+    static byte[] actionLine(String url) throws URISyntaxException {
+        String type = pathSegment(new URI(url), 1);
+        String action = type != null && !type.equals("_doc")
+                ? "{\"index\":{\"_type\":" + JSONUtils.quote(type) + "}}\n"
+                : "{\"index\":{}}\n";
+        return action.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String pathSegment(URI uri, int position) {
+        String path = uri.getPath();
+        if (path == null) {
+            return null;
+        }
+        String[] segments = path.replaceAll("^/+|/+$", "").split("/+");
+        return position < segments.length && !segments[position].isEmpty() ? segments[position] : null;
+    }
+
+    /**
+     * Finds the documents of a bulk request worth sending again, according to the outcome Elastic Search reported
+     * for each of them, in the order they were sent.
+     *
+     * @param sent the documents of the request, their attempts already counted
+     * @param response the body of a successful response
+     * @param dropped receives the documents that won't be sent again
+     * @return the documents rejected for a transient reason, unless they were sent too many times already
+     */
+    static List<Document> failed(List<Document> sent, String response, List<Document> dropped) {
+        JSONObject result;
+        try {
+            result = JSONObject.fromObject(response);
+        } catch (JSONException e) {
+            LOGGER.log(Level.WARNING, "Unreadable bulk response from Elastic Search, considering it successful", e);
+            return Collections.emptyList();
+        }
+        if (!result.optBoolean("errors")) {
+            return Collections.emptyList();
+        }
+        JSONArray items = result.optJSONArray("items");
+        List<Document> failed = new ArrayList<>();
+        for (int i = 0; items != null && i < items.size() && i < sent.size(); i++) {
+            JSONObject item = items.getJSONObject(i);
+            // keyed by the action, index here
+            Object outcome = item.isEmpty() ? null : item.values().iterator().next();
+            if (!(outcome instanceof JSONObject)) {
+                continue;
+            }
+            int status = ((JSONObject) outcome).optInt("status", 200);
+            if (status < 300) {
+                continue;
+            }
+            Document document = sent.get(i);
+            if (isTransient(status) && document.attempts < MAX_ATTEMPTS) {
+                failed.add(document);
+            } else {
+                LOGGER.log(Level.WARNING, "Audit event rejected by Elastic Search with status {0}: {1}", new Object[] {
+                    status, ((JSONObject) outcome).opt("error")
+                });
+                dropped.add(document);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * @return whether a request failing with the given status may succeed later
+     */
+    static boolean isTransient(int status) {
+        // too many requests, or a node unavailable or timing out
+        return status == 429 || status >= 500;
+    }
+}
@@ -0,0 +1,428 @@
+package hudson.plugins.audit_trail;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Aho-Corasick automaton telling whether a text contains at least one of a set of keywords, in a single pass and
+ * without allocating.
+ * <p>
+ * It is used in front of the audit pattern: {@link #forPattern(String)} extracts literals at least one of which must
+ * appear in any matching URI, so that the regex only runs on the few URIs containing one of them.
+ */
+final class KeywordPrefilter {
+
+    /**
+     * Shorter literals (typically {@code /}) appear in every URI and would not filter anything.
+     */
+    static final int MIN_LITERAL_LENGTH = 2;
+
+    /**
+     * Escapes standing for a single non literal token, any other letter or digit escape disables the extraction.
+     */
+    private static final String SINGLE_TOKEN_ESCAPES = "dDsSwWhHvVbBAzZGRXtnrfae";
+
+    private final List<String> keywords;
+    private final int[] asciiClasses = new int[128];
+    private final Map<Character, Integer> otherClasses = new HashMap<>();
+    private final int[][] transitions;
+    private final boolean[] accepting;
+
+    private KeywordPrefilter(Collection<String> keywords) {
+        this.keywords = List.copyOf(new LinkedHashSet<>(keywords));
+        int alphabet = 1; // class 0 stands for every character not appearing in a keyword
+        for (String keyword : this.keywords) {
+            if (keyword.isEmpty()) {
+                throw new IllegalArgumentException("Keywords must not be empty");
+            }
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if (classOf(c) == 0) {
+                    if (c < asciiClasses.length) {
+                        asciiClasses[c] = alphabet++;
+                    } else {
+                        otherClasses.put(c, alphabet++);
+                    }
+                }
+            }
+        }
+
+        // trie
+        List<int[]> goTo = new ArrayList<>();
+        List<Boolean> output = new ArrayList<>();
+        goTo.add(new int[alphabet]);
+        output.add(false);
+        for (String keyword : this.keywords) {
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                int c = classOf(keyword.charAt(i));
+                int next = goTo.get(state)[c];
+                if (next == 0) {
+                    goTo.add(new int[alphabet]);
+                    output.add(false);
+                    next = goTo.size() - 1;
+                    goTo.get(state)[c] = next;
+                }
+                state = next;
+            }
+            output.set(state, true);
+        }
+
+        // failure links, folded into a complete transition table in breadth first order
+        transitions = goTo.toArray(new int[0][]);
+        accepting = new boolean[transitions.length];
+        for (int s = 0; s < accepting.length; s++) {
+            accepting[s] = output.get(s);
+        }
+        int[] failure = new int[transitions.length];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 1; c < alphabet; c++) {
+            if (transitions[0][c] != 0) {
+                queue.add(transitions[0][c]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            accepting[state] |= accepting[failure[state]];
+            for (int c = 1; c < alphabet; c++) {
+                int next = transitions[state][c];
+                if (next != 0) {
+                    failure[next] = transitions[failure[state]][c];
+                    queue.add(next);
+                } else {
+                    transitions[state][c] = transitions[failure[state]][c];
+                }
+            }
+        }
+    }
+
+    static KeywordPrefilter of(Collection<String> keywords) {
+        return new KeywordPrefilter(keywords);
+    }
+
+    /**
+     * @return a prefilter accepting every text the given regex matches, or {@code null} if no useful literal could be
+     * safely extracted from it
+     */
+    @CheckForNull
+    static KeywordPrefilter forPattern(String regex) {
+        Set<String> literals = extractRequiredLiterals(regex);
+        return literals != null ? new KeywordPrefilter(literals) : null;
+    }
+
+    /**
+     * @return {@code false} only if the text contains none of the keywords
+     */
+    boolean mightMatch(CharSequence text) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state][classOf(text.charAt(i))];
+            if (accepting[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    List<String> getKeywords() {
+        return keywords;
+    }
+
+    private int classOf(char c) {
+        if (c < asciiClasses.length) {
+            return asciiClasses[c];
+        }
+        if (otherClasses.isEmpty()) {
+            return 0;
+        }
+        Integer clazz = otherClasses.get(c);
+        return clazz != null ? clazz : 0;
+    }
+
+    /**
+     * Looks at the top level sequence of the regex for a run of literal characters, or a group made only of literal
+     * alternatives, that is neither optional nor repeated: every match contains one of its literals. The one whose
+     * shortest literal is the longest is kept.
+     * <p>
+     * The parsing is deliberately conservative, anything it does not fully understand (top level alternation, inline
+     * flags, quoting, back references, unicode escapes...) disables the extraction rather than risking to filter out
+     * a URI the regex would have matched.
+     *
+     * @return the literals, or {@code null} if none could be extracted
+     */
+    @CheckForNull
+    static Set<String> extractRequiredLiterals(String regex) {
+        List<Set<String>> candidates = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        int n = regex.length();
+        int i = 0;
+        while (i < n) {
+            char c = regex.charAt(i);
+            String literal = null;
+            Set<String> alternatives = null;
+            int end;
+            switch (c) {
+                case '\\':
+                    if (i + 1 >= n) {
+                        return null;
+                    }
+                    char escaped = regex.charAt(i + 1);
+                    if (Character.isLetterOrDigit(escaped)) {
+                        if (SINGLE_TOKEN_ESCAPES.indexOf(escaped) < 0) {
+                            return null;
+                        }
+                    } else {
+                        literal = String.valueOf(escaped);
+                    }
+                    end = i + 2;
+                    break;
+                case '[':
+                    end = skipClass(regex, i);
+                    if (end < 0) {
+                        return null;
+                    }
+                    break;
+                case '(':
+                    int close = findGroupEnd(regex, i);
+                    if (close < 0) {
+                        return null;
+                    }
+                    int bodyStart = groupBodyStart(regex, i);
+                    if (bodyStart == -1) {
+                        return null;
+                    }
+                    if (bodyStart >= 0) {
+                        alternatives = literalAlternatives(regex.substring(bodyStart, close));
+                    }
+                    end = close + 1;
+                    break;
+                case '.':
+                case '^':
+                case '$':
+                    end = i + 1;
+                    break;
+                case '|':
+                case ')':
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                case '}':
+                case ']':
+                    return null;
+                default:
+                    literal = String.valueOf(c);
+                    end = i + 1;
+            }
+            int next = skipQuantifier(regex, end);
+            if (next < 0) {
+                return null;
+            }
+            boolean quantified = next != end;
+            if (literal != null && !quantified) {
+                run.append(literal);
+            } else {
+                addRun(run, candidates);
+                if (alternatives != null && !quantified) {
+                    candidates.add(alternatives);
+                }
+            }
+            i = next;
+        }
+        addRun(run, candidates);
+
+        Set<String> best = null;
+        int bestLength = MIN_LITERAL_LENGTH - 1;
+        for (Set<String> candidate : candidates) {
+            int length = candidate.stream().mapToInt(String::length).min().orElse(0);
+            if (length > bestLength) {
+                best = candidate;
+                bestLength = length;
+            }
+        }
+        return best;
+    }
+
+    private static void addRun(StringBuilder run, List<Set<String>> candidates) {
+        if (run.length() > 0) {
+            candidates.add(Collections.singleton(run.toString()));
+            run.setLength(0);
+        }
+    }
+
+    /**
+     * @return the index of the group body, {@code -2} for a lookaround (whose content is not required) and
+     * {@code -1} for a construct the extraction does not support
+     */
+    private static int groupBodyStart(String regex, int open) {
+        if (open + 1 >= regex.length() || regex.charAt(open + 1) != '?') {
+            return open + 1;
+        }
+        if (open + 2 >= regex.length()) {
+            return -1;
+        }
+        char kind = regex.charAt(open + 2);
+        switch (kind) {
+            case ':':
+                return open + 3;
+            case '=':
+            case '!':
+            case '>':
+                return -2;
+            case '<':
+                if (open + 3 < regex.length()) {
+                    char next = regex.charAt(open + 3);
+                    if (next == '=' || next == '!') {
+                        return -2;
+                    }
+                    int nameEnd = regex.indexOf('>', open + 3);
+                    return nameEnd < 0 ? -1 : nameEnd + 1;
+                }
+                return -1;
+            default:
+                // inline flags, e.g. (?i), change how the rest of the regex matches
+                return -1;
+        }
+    }
+
+    /**
+     * @return the alternatives of a group body made only of literals, {@code null} otherwise
+     */
+    @CheckForNull
+    private static Set<String> literalAlternatives(String body) {
+        Set<String> alternatives = new LinkedHashSet<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= body.length() || Character.isLetterOrDigit(body.charAt(i + 1))) {
+                    return null;
+                }
+                current.append(body.charAt(++i));
+            } else if (c == '|') {
+                if (current.length() == 0) {
+                    return null;
+                }
+                alternatives.add(current.toString());
+                current.setLength(0);
+            } else if (".^$*+?{}[]()".indexOf(c) >= 0) {
+                return null;
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() == 0) {
+            return null;
+        }
+        alternatives.add(current.toString());
+        return alternatives;
+    }
+
+    /**
+     * @return the index right after the character class starting at {@code open}, {@code -1} if it cannot be parsed
+     */
+    private static int skipClass(String regex, int open) {
+        int n = regex.length();
+        int i = open + 1;
+        if (i < n && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < n && regex.charAt(i) == ']') {
+            i++;
+        }
+        int depth = 1;
+        while (i < n) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < n && regex.charAt(i + 1) == 'Q') {
+                    return -1;
+                }
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return i + 1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the parenthesis closing the group opened at {@code open}, {@code -1} if it cannot be found
+     */
+    private static int findGroupEnd(String regex, int open) {
+        int n = regex.length();
+        int depth = 0;
+        int i = open;
+        while (i < n) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < n && regex.charAt(i + 1) == 'Q') {
+                    return -1;
+                }
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                i = skipClass(regex, i);
+                if (i < 0) {
+                    return -1;
+                }
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index after the quantifier starting at {@code i}, {@code i} itself if there is none, {@code -1} if
+     * it cannot be parsed
+     */
+    private static int skipQuantifier(String regex, int i) {
+        int n = regex.length();
+        if (i >= n) {
+            return i;
+        }
+        char c = regex.charAt(i);
+        int end;
+        if (c == '*' || c == '+' || c == '?') {
+            end = i + 1;
+        } else if (c == '{') {
+            int close = regex.indexOf('}', i);
+            if (close < 0) {
+                return -1;
+            }
+            for (int j = i + 1; j < close; j++) {
+                char d = regex.charAt(j);
+                if (!Character.isDigit(d) && d != ',') {
+                    return -1;
+                }
+            }
+            end = close + 1;
+        } else {
+            return i;
+        }
+        // possessive or reluctant
+        if (end < n && (regex.charAt(end) == '?' || regex.charAt(end) == '+')) {
+            end++;
+        }
+        return end;
+    }
+}
@@ -1,7 +1,6 @@
 package hudson.plugins.audit_trail;
 
 import hudson.Extension;
-import hudson.model.Descriptor;
 import java.io.IOException;
 import java.util.logging.FileHandler;
 import org.kohsuke.stapler.DataBoundConstructor;
@@ -32,12 +31,28 @@ public class LogFileAuditLogger extends AbstractLogFileAuditLogger {
         return new FileHandler(getLog(), getLimit() * 1024 * 1024, getCount(), true);
     }
 
+    @Override
+    AuditLogOutput getLogFileWriter() throws IOException {
+        return openOutput(getLog(), getLimit() * 1024L * 1024, getCount());
+    }
+
     public int getLimit() {
         return limit;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (!super.equals(o)) return false;
+        return limit == ((LogFileAuditLogger) o).limit;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + limit;
+    }
+
     @Extension
-    public static class DescriptorImpl extends Descriptor<AuditLogger> {
+    public static class DescriptorImpl extends AuditLoggerDescriptor {
 
         @Override
         public String getDisplayName() {
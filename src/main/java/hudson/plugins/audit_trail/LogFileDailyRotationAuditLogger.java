@@ -1,40 +1,98 @@
 package hudson.plugins.audit_trail;
 
-import static org.apache.commons.io.comparator.LastModifiedFileComparator.LASTMODIFIED_REVERSE;
+import static org.apache.commons.io.comparator.LastModifiedFileComparator.LASTMODIFIED_COMPARATOR;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.Extension;
-import hudson.model.Descriptor;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.DateTimeException;
 import java.time.Duration;
 import java.time.Instant;
-import java.time.ZoneId;
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import jenkins.util.Timer;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.filefilter.DirectoryFileFilter;
 import org.apache.commons.io.filefilter.RegexFileFilter;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 public class LogFileDailyRotationAuditLogger extends AbstractLogFileAuditLogger {
 
     private static final Logger LOGGER = Logger.getLogger(LogFileDailyRotationAuditLogger.class.getName());
-    static final String DAILY_ROTATING_FILE_REGEX_PATTERN = "-[0-9]{4}-[0-9]{2}-[0-9]{2}" + ".*" + "(?<!lck)$";
+    static final String DAILY_ROTATING_FILE_REGEX_PATTERN =
+            "-[0-9]{4}-[0-9]{2}-[0-9]{2}" + ".*" + "(?<!lck)(?<!\\.tmp)(?<!\\.idx)$";
+    static final int MINUTES_PER_DAY = 24 * 60;
+    private static final Pattern PERIOD_START =
+            Pattern.compile("([0-9]{4}-[0-9]{2}-[0-9]{2})(?:-([0-9]{2})-([0-9]{2}))?");
+    private static final Pattern PART = Pattern.compile("\\.([0-9]+)$");
+    private static final long BYTES_PER_MB = 1024L * 1024;
 
+    /**
+     * The length of a period, in minutes. Periods are aligned on midnight, the last one of a day being shortened if
+     * the day is not a multiple of the period.
+     */
+    private int rotationPeriod = MINUTES_PER_DAY;
+    /**
+     * The size in MB after which a file is rotated before the end of its period, {@code 0} for no limit.
+     */
+    private int limit;
+    /**
+     * The maximum total size in MB of the rotated files, {@code 0} for no limit.
+     */
+    private int retentionSize;
+    /**
+     * The number of days after which a rotated file is removed, {@code 0} for no limit.
+     */
+    private int retentionDays;
+
+    private transient Clock clock;
     private transient ZonedDateTime initInstant;
+    /**
+     * The number of times the current period was rotated because its file reached the limit.
+     */
+    private transient int part;
     private transient Path basePattern;
+    /**
+     * The name of the file written to, which {@link #computePattern()} doesn't give anymore once the rotation period
+     * changed.
+     */
+    private transient String fileName;
+    /**
+     * The end of the current period, in epoch milliseconds, so that checking whether to rotate is a mere comparison.
+     */
+    private transient volatile long nextRotation;
+    /**
+     * The rotation at the end of the current period, scheduled once the logger is started. Both guarded by this.
+     */
+    private transient boolean started;
+
+    @CheckForNull
+    private transient ScheduledFuture<?> scheduledRotation;
+    /**
+     * The files written so far, {@code null} if the log file has no parent directory.
+     */
+    @CheckForNull
+    private transient AuditLogManifest manifest;
 
     String getLogFilePath() {
         return computePattern();
@@ -45,63 +103,186 @@ public class LogFileDailyRotationAuditLogger extends AbstractLogFileAuditLogger
         return new FileHandler(getLogFilePath(), 0, 1, true);
     }
 
+    @Override
+    AuditLogOutput getLogFileWriter() throws IOException {
+        return openOutput(getLogFilePath(), 0, 1);
+    }
+
     @DataBoundConstructor
     public LogFileDailyRotationAuditLogger(String log, int count, String logSeparator) {
+        this(log, count, logSeparator, Clock.systemDefaultZone());
+    }
+
+    LogFileDailyRotationAuditLogger(String log, int count, String logSeparator, Clock clock) {
         super(log, count, logSeparator);
         this.basePattern = Paths.get(log);
+        this.clock = clock;
         initializeDailyRotation();
     }
 
     Object readResolve() {
         this.basePattern = Paths.get(getLog());
+        this.clock = Clock.systemDefaultZone();
         super.readResolve();
         initializeDailyRotation();
         return this;
     }
 
     /**
-     * Initializes initInstant to the instant obtained from the latest daily
-     * log file saved on disk (if present), or if not present, to the current instant.
+     * Initializes initInstant to the period of the latest log file saved on disk (if present), or if not present, to
+     * the current period.
+     * <p>
+     * The latest file is read from the manifest, the directory being only listed if the manifest is missing or corrupt.
      */
     private void initializeDailyRotation() {
         Path directoryPath = basePattern.getParent();
-        boolean directoryExists = false;
+        initInstant = null;
+        manifest = null;
+        boolean rebuilt = false;
         if (directoryPath != null) {
-            directoryExists = directoryPath.toFile().exists();
-        }
-
-        if (directoryExists) {
-            // audit-log.log-2022-10-19-15-50.0
-            Collection<File> files = FileUtils.listFiles(
-                    new File(directoryPath.toString()),
-                    new RegexFileFilter(
-                            ".*" + FilenameUtils.getName(basePattern.toString()) + DAILY_ROTATING_FILE_REGEX_PATTERN),
-                    DirectoryFileFilter.DIRECTORY);
-            if (files.size() > 0) {
-                List<File> orderedList =
-                        files.stream().sorted(LASTMODIFIED_REVERSE).collect(Collectors.toList());
-                File lastFile = orderedList.get(0);
-                Matcher matcher = Pattern.compile("[0-9]{4}-[0-9]{2}-[0-9]{2}").matcher(lastFile.getName());
-                if (matcher.find()) {
-                    // Initialize initInstant with the date saved on the audit file name
-                    // See example https://stackoverflow.com/questions/14385834/java-regex-group-0
-                    initInstant =
-                            Instant.parse(matcher.group(0) + "T00:00:00.00Z").atZone(ZoneId.systemDefault());
-                }
+            manifest = AuditLogManifest.read(getManifestPath());
+            if (manifest == null) {
+                manifest = scan(directoryPath);
+                rebuilt = true;
+            }
+            AuditLogManifest.Entry latest = manifest.latest();
+            if (latest != null) {
+                initInstant = periodStart(latest.start.atZoneSameInstant(clock.getZone()));
+                part = parsePart(latest.name);
             }
         }
-        // Initialize initInstant to the current instant
+        // Initialize initInstant to the current period
         if (initInstant == null) {
-            initInstant = ZonedDateTime.now().truncatedTo(ChronoUnit.DAYS);
+            initInstant = periodStart(ZonedDateTime.now(clock));
+            part = 0;
         }
+        nextRotation = nextPeriodStart(initInstant).toInstant().toEpochMilli();
         configure();
+        fileName = getLogFileName();
+        if (manifest != null && (manifest.add(fileName, initInstant.toOffsetDateTime()) || rebuilt)) {
+            writeManifest(manifest);
+        }
+        compressRotatedFiles();
+    }
+
+    Path getManifestPath() {
+        return basePattern.resolveSibling(basePattern.getFileName() + AuditLogManifest.SUFFIX);
+    }
+
+    private String getLogFileName() {
+        return FilenameUtils.getName(computePattern());
+    }
+
+    /**
+     * @return a manifest of the log files found in the directory, ordered by last modification
+     */
+    private AuditLogManifest scan(Path directoryPath) {
+        AuditLogManifest scanned = new AuditLogManifest(getManifestPath());
+        if (!directoryPath.toFile().exists()) {
+            return scanned;
+        }
+        // audit-log.log-2022-10-19-15-50.0
+        Collection<File> files = FileUtils.listFiles(
+                new File(directoryPath.toString()),
+                new RegexFileFilter(
+                        ".*" + FilenameUtils.getName(basePattern.toString()) + DAILY_ROTATING_FILE_REGEX_PATTERN),
+                DirectoryFileFilter.DIRECTORY);
+        List<File> orderedList = files.stream().sorted(LASTMODIFIED_COMPARATOR).collect(Collectors.toList());
+        for (File file : orderedList) {
+            ZonedDateTime start = parsePeriodStart(file.getName());
+            if (start != null) {
+                scanned.add(file.getName(), start.toOffsetDateTime());
+            }
+        }
+        // the sizes count for the retention
+        List<AuditLogManifest.Entry> entries = scanned.getEntries();
+        for (AuditLogManifest.Entry entry : entries.subList(0, Math.max(0, entries.size() - 1))) {
+            scanned.seal(entry.name, false);
+        }
+        return scanned;
+    }
+
+    /**
+     * Replaces the manifest on disk, or deletes it if that fails, so that the next startup lists the directory rather
+     * than trusting an outdated manifest.
+     */
+    private void writeManifest(AuditLogManifest manifest) {
+        try {
+            manifest.write();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Couldn't write the manifest of the audit log files " + getManifestPath(), e);
+            try {
+                Files.deleteIfExists(getManifestPath());
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't delete the outdated manifest " + getManifestPath(), ex);
+            }
+        }
+    }
+
+    /**
+     * @return the start of the period written to the given file, in the time zone of the clock
+     */
+    private ZonedDateTime parsePeriodStart(String fileName) {
+        Matcher matcher = PERIOD_START.matcher(fileName);
+        if (!matcher.find()) {
+            return null;
+        }
+        try {
+            LocalDate date = LocalDate.parse(matcher.group(1));
+            LocalTime time = matcher.group(2) == null
+                    ? LocalTime.MIDNIGHT
+                    : LocalTime.of(Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(3)));
+            return periodStart(date.atTime(time).atZone(clock.getZone()));
+        } catch (DateTimeException | NumberFormatException e) {
+            LOGGER.log(Level.FINE, "Ignoring the date of " + fileName, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the number of times the period of the given file was rotated because of its size
+     */
+    private static int parsePart(String fileName) {
+        Matcher matcher = PART.matcher(fileName);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+
+    /**
+     * @return the start of the period containing the given instant
+     */
+    ZonedDateTime periodStart(ZonedDateTime instant) {
+        ZonedDateTime startOfDay = instant.toLocalDate().atStartOfDay(instant.getZone());
+        int period = getRotationPeriod();
+        if (period >= MINUTES_PER_DAY) {
+            return startOfDay;
+        }
+        long minutes = Duration.between(startOfDay, instant).toMinutes();
+        return startOfDay.plusMinutes(minutes / period * period);
+    }
+
+    /**
+     * @return the start of the period following the one starting at the given instant, computed in the time zone of
+     *     the instant so that days stay aligned on midnight across daylight saving time changes
+     */
+    ZonedDateTime nextPeriodStart(ZonedDateTime periodStart) {
+        ZonedDateTime nextDay = periodStart.toLocalDate().plusDays(1).atStartOfDay(periodStart.getZone());
+        int period = getRotationPeriod();
+        if (period >= MINUTES_PER_DAY) {
+            return nextDay;
+        }
+        ZonedDateTime next = periodStart.plusMinutes(period);
+        return next.isBefore(nextDay) ? next : nextDay;
     }
 
     String computePattern() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneId.systemDefault());
+        String format = getRotationPeriod() >= MINUTES_PER_DAY ? "yyyy-MM-dd" : "yyyy-MM-dd-HH-mm";
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(format).withZone(clock.getZone());
         String formattedInstant = formatter.format(initInstant);
         String computedFileName =
                 String.format("%s-%s", FilenameUtils.getName(basePattern.toString()), formattedInstant);
+        if (part > 0) {
+            computedFileName += "." + part;
+        }
         Path parentFolder = basePattern.getParent();
         if (parentFolder != null) {
             return parentFolder.resolve(computedFileName).toString();
@@ -109,57 +290,297 @@ public class LogFileDailyRotationAuditLogger extends AbstractLogFileAuditLogger
         return computedFileName;
     }
 
+    /**
+     * @return whether the current period ended, or its file reached the limit
+     */
     private boolean shouldRotate() {
-        return ZonedDateTime.now().isAfter(initInstant.plus(Duration.ofDays(1)));
+        return clock.millis() >= nextRotation || (limit > 0 && getOutputLength() >= limit * BYTES_PER_MB);
     }
 
     /**
      * Rotates the daily rotation logger
      */
     private void rotate() {
-        if (getHandler() != null) {
-            getHandler().close();
-        }
-        initInstant = ZonedDateTime.now().truncatedTo(ChronoUnit.DAYS);
-        configure();
+        startCurrentPeriod(clock.millis() < nextRotation, false);
         // After rotating remove old files
         removeOldFiles();
     }
 
+    /**
+     * Starts the current period again once the settings are bound, which switches to another file if the rotation
+     * period changed.
+     */
+    @Override
+    void reopenOutput() {
+        startCurrentPeriod(false, true);
+    }
+
+    /**
+     * Closes the current file and opens the one of the current period, recording the change in the manifest and
+     * compressing the previous file if a {@link Compression} is selected.
+     *
+     * @param nextPart whether the current period goes on in a new file, as its file reached the limit
+     * @param discardUnused whether the previous file is removed rather than kept if nothing was written to it, as
+     *     when it was opened by the constructor with the default rotation period
+     */
+    private void startCurrentPeriod(boolean nextPart, boolean discardUnused) {
+        String previous = fileName;
+        closeOutput();
+        ZonedDateTime start = periodStart(ZonedDateTime.now(clock));
+        if (nextPart) {
+            part++;
+        } else if (!start.toInstant().equals(initInstant.toInstant())) {
+            part = 0;
+        }
+        initInstant = start;
+        nextRotation = nextPeriodStart(initInstant).toInstant().toEpochMilli();
+        configure();
+        scheduleRotation();
+        String current = getLogFileName();
+        fileName = current;
+        boolean rotated = !previous.equals(current);
+        if (rotated && discardUnused && discard(previous)) {
+            rotated = false;
+        }
+        AuditLogCompressor compressor = getCompressor();
+        if (manifest != null) {
+            if (rotated) {
+                // the checksum of a compressed file is recorded once it is compressed
+                manifest.seal(previous, compressor == null);
+            }
+            if (manifest.add(current, initInstant.toOffsetDateTime())) {
+                writeManifest(manifest);
+            }
+        }
+        if (rotated && compressor != null) {
+            compressor.compress(basePattern.resolveSibling(previous), this::compressed);
+        }
+    }
+
+    /**
+     * Removes the given file if it is empty, along with its manifest entry.
+     *
+     * @return whether the file was removed
+     */
+    private boolean discard(String name) {
+        Path file = basePattern.resolveSibling(name);
+        try {
+            if (Files.size(file) > 0) {
+                return false;
+            }
+            AuditLogCompressor.delete(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Keeping the unused audit log file " + file, e);
+            return false;
+        }
+        if (manifest != null) {
+            manifest.remove(name);
+        }
+        return true;
+    }
+
+    /**
+     * Compresses the files rotated before the compression was selected, or while Jenkins was stopping.
+     */
+    private synchronized void compressRotatedFiles() {
+        AuditLogCompressor compressor = getCompressor();
+        if (compressor == null || manifest == null) {
+            return;
+        }
+        List<AuditLogManifest.Entry> entries = manifest.getEntries();
+        // the latest file is the one written to
+        for (AuditLogManifest.Entry entry : entries.subList(0, Math.max(0, entries.size() - 1))) {
+            if (!Compression.isCompressed(entry.name)) {
+                compressor.compress(basePattern.resolveSibling(entry.name), this::compressed);
+            }
+        }
+    }
+
+    private void compressed(Path source, Path target, long size, String checksum) {
+        synchronized (this) {
+            if (manifest == null) {
+                return;
+            }
+            String name = source.getFileName().toString();
+            if (manifest.compressed(name, target.getFileName().toString(), size, checksum)) {
+                writeManifest(manifest);
+                return;
+            }
+        }
+        // expired while it was compressed
+        try {
+            Files.deleteIfExists(target);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Couldn't remove the expired audit log file " + target, e);
+        }
+    }
+
+    @Override
+    void compressionChanged() {
+        compressRotatedFiles();
+    }
+
     private void removeOldFiles() {
         Path directoryPath = basePattern.getParent();
-        if (directoryPath != null) {
-            Collection<File> files = FileUtils.listFiles(
-                    directoryPath.toFile(),
-                    new RegexFileFilter(
-                            ".*" + FilenameUtils.getName(basePattern.toString()) + DAILY_ROTATING_FILE_REGEX_PATTERN),
-                    DirectoryFileFilter.DIRECTORY);
-            if (files.size() > getCount()) {
-                List<File> orderedList =
-                        files.stream().sorted(LASTMODIFIED_REVERSE).collect(Collectors.toList());
-                List<File> toDelete = orderedList.subList(getCount(), orderedList.size());
-                for (File file : toDelete) {
-                    if (!file.delete()) {
-                        LOGGER.log(Level.SEVERE, "File {0} could not be removed on rotate overation", file.getName());
-                    }
+        if (directoryPath != null && manifest != null) {
+            Instant endedBefore = retentionDays > 0 ? clock.instant().minus(Duration.ofDays(retentionDays)) : null;
+            List<AuditLogManifest.Entry> toDelete =
+                    manifest.expire(getCount(), retentionSize * BYTES_PER_MB, endedBefore);
+            if (toDelete.isEmpty()) {
+                return;
+            }
+            List<AuditLogManifest.Entry> undeleted = new ArrayList<>();
+            for (AuditLogManifest.Entry entry : toDelete) {
+                try {
+                    AuditLogCompressor.delete(directoryPath.resolve(entry.name));
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, "File {0} could not be removed on rotate overation", entry.name);
+                    undeleted.add(entry);
                 }
             }
+            manifest.restore(undeleted);
+            writeManifest(manifest);
+        }
+    }
+
+    /**
+     * Schedules the rotation at the end of the current period, so that the next file is ready and the old ones
+     * removed when it starts, rather than when the next event is logged.
+     */
+    @Override
+    public synchronized void start() {
+        started = true;
+        scheduleRotation();
+    }
+
+    /**
+     * Schedules the rotation again for the end of the current period, once started.
+     */
+    private synchronized void scheduleRotation() {
+        if (!started || isClosed()) {
+            return;
+        }
+        if (scheduledRotation != null) {
+            scheduledRotation.cancel(false);
+        }
+        long delay = Math.max(0, nextRotation - clock.millis());
+        scheduledRotation = Timer.get().schedule(this::rotateOnTime, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Rotates at the end of the period, unless this logger was cleaned up meanwhile, as its file would be reopened
+     * and never closed.
+     */
+    synchronized void rotateOnTime() {
+        if (isClosed()) {
+            return;
+        }
+        applySettings();
+        rotateIfNeeded();
+        // the timer may run slightly ahead of the clock
+        scheduleRotation();
+    }
+
+    @Override
+    public void cleanUp() throws SecurityException {
+        synchronized (this) {
+            if (scheduledRotation != null) {
+                scheduledRotation.cancel(false);
+            }
         }
+        super.cleanUp();
     }
 
     @Override
-    public void log(String event) {
+    void rotateIfNeeded() {
         // to avoid synchronizing the whole method
         if (shouldRotate()) {
             synchronized (this) {
                 if (shouldRotate()) rotate();
             }
         }
-        super.log(event);
+    }
+
+    /**
+     * @return the length of a rotation period, in minutes, at most a day
+     */
+    public int getRotationPeriod() {
+        return rotationPeriod > 0 && rotationPeriod < MINUTES_PER_DAY ? rotationPeriod : MINUTES_PER_DAY;
+    }
+
+    @DataBoundSetter
+    public void setRotationPeriod(int rotationPeriod) {
+        this.rotationPeriod = rotationPeriod;
+        settingsChanged();
+    }
+
+    /**
+     * @return the size in MB after which a file is rotated before the end of its period, {@code 0} for no limit
+     */
+    public int getLimit() {
+        return Math.max(0, limit);
+    }
+
+    /**
+     * Rotates files on whichever comes first, the end of the period or the limit. Knowing the size of the current
+     * file requires an {@link AuditLogOutput} rather than a {@link FileHandler}.
+     */
+    @DataBoundSetter
+    public void setLimit(int limit) {
+        this.limit = Math.max(0, limit);
+        settingsChanged();
+    }
+
+    @Override
+    boolean requiresWriter() {
+        return limit > 0;
+    }
+
+    /**
+     * @return the maximum total size in MB of the rotated files, {@code 0} for no limit
+     */
+    public int getRetentionSize() {
+        return Math.max(0, retentionSize);
+    }
+
+    @DataBoundSetter
+    public void setRetentionSize(int retentionSize) {
+        this.retentionSize = Math.max(0, retentionSize);
+    }
+
+    /**
+     * @return the number of days after which a rotated file is removed, {@code 0} for no limit
+     */
+    public int getRetentionDays() {
+        return Math.max(0, retentionDays);
+    }
+
+    @DataBoundSetter
+    public void setRetentionDays(int retentionDays) {
+        this.retentionDays = Math.max(0, retentionDays);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!super.equals(o)) return false;
+        LogFileDailyRotationAuditLogger that = (LogFileDailyRotationAuditLogger) o;
+        return getRotationPeriod() == that.getRotationPeriod()
+                && getLimit() == that.getLimit()
+                && getRetentionSize() == that.getRetentionSize()
+                && getRetentionDays() == that.getRetentionDays();
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 31 * super.hashCode() + getRotationPeriod();
+        result = 31 * result + getLimit();
+        result = 31 * result + getRetentionSize();
+        result = 31 * result + getRetentionDays();
+        return result;
     }
 
     @Extension
-    public static class DescriptorImpl extends Descriptor<AuditLogger> {
+    public static class DescriptorImpl extends AuditLoggerDescriptor {
 
         @Override
         public String getDisplayName() {
@@ -0,0 +1,26 @@
+package hudson.plugins.audit_trail;
+
+/**
+ * How a log file logger writes each event.
+ */
+public enum LogFormat {
+    /**
+     * The date, the separator and the message, the message of a script spanning as many lines as the script.
+     */
+    TEXT("Date, separator and message"),
+    /**
+     * One JSON document per line, as described by <a href="https://jsonlines.org/">JSON Lines</a>: the fields sent to
+     * Elastic Search, preceded by the time of the event in milliseconds since the epoch.
+     */
+    JSON_LINES("JSON Lines");
+
+    private final String displayName;
+
+    LogFormat(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
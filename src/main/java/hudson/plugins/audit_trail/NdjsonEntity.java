@@ -0,0 +1,105 @@
+package hudson.plugins.audit_trail;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.AbstractHttpEntity;
+
+/**
+ * Repeatable entity writing the body of a bulk request, an action line before each document, straight from the
+ * buffered documents, without assembling the body in an array first.
+ */
+final class NdjsonEntity extends AbstractHttpEntity {
+
+    static final ContentType NDJSON = ContentType.create("application/x-ndjson", StandardCharsets.UTF_8);
+    private static final int BUFFER_SIZE = 8192;
+    private static final ByteBuffer NEW_LINE = ByteBuffer.wrap(new byte[] {'\n'}).asReadOnlyBuffer();
+
+    private final List<ElasticSearchBulk.Document> documents;
+    private final byte[] actionLine;
+    private final long length;
+
+    NdjsonEntity(List<ElasticSearchBulk.Document> documents, byte[] actionLine) {
+        super(NDJSON, null, false);
+        this.documents = documents;
+        this.actionLine = actionLine;
+        long size = 0;
+        for (ElasticSearchBulk.Document document : documents) {
+            size += actionLine.length + document.json.remaining() + 1;
+        }
+        this.length = size;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return length;
+    }
+
+    /**
+     * @return the body as the buffers to send in turn, the buffered documents among them, for the asynchronous client
+     */
+    List<ByteBuffer> getBuffers() {
+        List<ByteBuffer> buffers = new ArrayList<>(documents.size() * 3);
+        ByteBuffer action = ByteBuffer.wrap(actionLine).asReadOnlyBuffer();
+        for (ElasticSearchBulk.Document document : documents) {
+            buffers.add(action);
+            buffers.add(document.json);
+            buffers.add(NEW_LINE);
+        }
+        return buffers;
+    }
+
+    /**
+     * Only used when the body is logged, the request being sent with {@link #writeTo(OutputStream)}.
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream((int) Math.min(length, Integer.MAX_VALUE));
+        writeTo(body);
+        return new ByteArrayInputStream(body.toByteArray());
+    }
+
+    /**
+     * Buffers the small writes of the action lines, which matters most when the stream compresses what it is given.
+     */
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        BufferedOutputStream out = new BufferedOutputStream(outStream, BUFFER_SIZE);
+        // not closed, it would close the stream of the connection
+        WritableByteChannel channel = Channels.newChannel(out);
+        for (ElasticSearchBulk.Document document : documents) {
+            out.write(actionLine);
+            ByteBuffer json = document.json.duplicate();
+            while (json.hasRemaining()) {
+                channel.write(json);
+            }
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+}
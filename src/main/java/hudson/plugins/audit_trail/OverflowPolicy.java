@@ -0,0 +1,35 @@
+package hudson.plugins.audit_trail;
+
+/**
+ * What to do with an audit entry when the dispatch queue it is offered to is already full.
+ *
+ * @see AuditDispatchQueue
+ */
+public enum OverflowPolicy {
+    /**
+     * Wait for room in the queue, up to the configured timeout, then drop the entry.
+     */
+    BLOCK("Block with timeout"),
+    /**
+     * Evict the oldest queued entry to make room for the new one.
+     */
+    DROP_OLDEST("Drop oldest"),
+    /**
+     * Drop the entry being offered.
+     */
+    DROP_NEWEST("Drop newest"),
+    /**
+     * Append the entry to a spill file which is replayed once the queue has drained.
+     */
+    SPILL_TO_DISK("Spill to disk");
+
+    private final String displayName;
+
+    OverflowPolicy(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
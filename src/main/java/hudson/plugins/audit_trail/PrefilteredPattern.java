@@ -0,0 +1,42 @@
+package hudson.plugins.audit_trail;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A {@link Pattern} guarded by a {@link KeywordPrefilter}: the regex, and its backtracking over leading {@code .*},
+ * only runs on inputs containing one of the literals any match requires.
+ */
+final class PrefilteredPattern {
+
+    private final Pattern pattern;
+
+    @CheckForNull
+    private final KeywordPrefilter prefilter;
+
+    private PrefilteredPattern(Pattern pattern, @CheckForNull KeywordPrefilter prefilter) {
+        this.pattern = pattern;
+        this.prefilter = prefilter;
+    }
+
+    static PrefilteredPattern compile(String regex) throws PatternSyntaxException {
+        return new PrefilteredPattern(Pattern.compile(regex), KeywordPrefilter.forPattern(regex));
+    }
+
+    /**
+     * Same result as {@code pattern.matcher(input).matches()}.
+     */
+    boolean matches(String input) {
+        return (prefilter == null || prefilter.mightMatch(input)) && pattern.matcher(input).matches();
+    }
+
+    Pattern getPattern() {
+        return pattern;
+    }
+
+    @CheckForNull
+    KeywordPrefilter getPrefilter() {
+        return prefilter;
+    }
+}
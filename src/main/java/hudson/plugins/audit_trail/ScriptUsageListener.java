@@ -40,6 +40,9 @@ public class ScriptUsageListener implements ScriptListener {
     @Inject
     AuditTrailPlugin configuration;
 
+    @Inject
+    AuditEventBus eventBus;
+
     /**
      * {@inheritDoc}
      */
@@ -54,25 +57,32 @@ public class ScriptUsageListener implements ScriptListener {
         if (!configuration.getLogScriptUsage()) {
             return;
         }
+        String origin = prettyPrintFeature(feature);
+        String userId = user != null ? user.getId() : null;
+        AuditEvent event = AuditEvent.builder(AuditEvent.Type.SCRIPT_EXECUTION, origin)
+                .user(userId)
+                .field("origin", origin)
+                .field("script", script)
+                .message(() -> renderMessage(script, origin, userId))
+                .build();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Detected groovy script usage, details: {0}", new Object[] {event.getMessage()});
+        }
+        eventBus.publish(event);
+    }
+
+    private static String renderMessage(String script, String origin, @CheckForNull String userId) {
         StringBuilder builder = new StringBuilder();
 
-        if (user != null) {
-            builder.append(String.format(
-                    "A groovy script was executed by user '%s'. Origin: %s. ",
-                    user.getId(), prettyPrintFeature(feature)));
+        if (userId != null) {
+            builder.append(String.format("A groovy script was executed by user '%s'. Origin: %s. ", userId, origin));
         } else {
-            builder.append(String.format("A groovy script was executed. Origin: %s.", prettyPrintFeature(feature)));
+            builder.append(String.format("A groovy script was executed. Origin: %s.", origin));
         }
 
         builder.append("\nThe executed script: \n");
         builder.append(script);
-        String log = builder.toString();
-        if (LOGGER.isLoggable(Level.FINE)) {
-            LOGGER.log(Level.FINE, "Detected groovy script usage, details: {0}", new Object[] {log});
-        }
-        for (AuditLogger logger : configuration.getLoggers()) {
-            logger.log(log);
-        }
+        return builder.toString();
     }
 
     private static String prettyPrintFeature(Object feature) {
@@ -0,0 +1,40 @@
+package hudson.plugins.audit_trail;
+
+import hudson.Extension;
+import hudson.model.AdministrativeMonitor;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import javax.inject.Inject;
+
+/**
+ * Warns about the loggers holding their events because their server is unavailable, as told by their
+ * {@link CircuitBreaker}.
+ */
+@Extension
+public class SinkHealthMonitor extends AdministrativeMonitor {
+
+    @Inject
+    private AuditTrailPlugin auditTrailPlugin;
+
+    @Override
+    public String getDisplayName() {
+        return "Audit Trail loggers holding events";
+    }
+
+    /**
+     * @return the breakers of the configured loggers whose circuit isn't closed
+     */
+    public List<CircuitBreaker> getOpenCircuits() {
+        return auditTrailPlugin.getLoggers().stream()
+                .map(AuditLogger::getCircuitBreaker)
+                .filter(Objects::nonNull)
+                .filter(breaker -> breaker.getState() != CircuitBreaker.State.CLOSED)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean isActivated() {
+        return !getOpenCircuits().isEmpty();
+    }
+}
@@ -8,10 +8,10 @@ import com.cloudbees.syslog.sender.SyslogMessageSender;
 import com.cloudbees.syslog.sender.UdpSyslogMessageSender;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import hudson.Extension;
-import hudson.model.Descriptor;
 import hudson.util.ListBoxModel;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.kohsuke.stapler.DataBoundConstructor;
@@ -27,8 +27,13 @@ public class SyslogAuditLogger extends AuditLogger {
     public static final String DEFAULT_APP_NAME = "jenkins";
     public static final Facility DEFAULT_FACILITY = Facility.USER;
     public static final MessageFormat DEFAULT_MESSAGE_FORMAT = MessageFormat.RFC_3164;
+    private static final long UNSENT_WARNING_INTERVAL = TimeUnit.MINUTES.toMillis(1);
 
     private transient SyslogMessageSender syslogMessageSender;
+    private transient CircuitBreaker circuitBreaker;
+    // both guarded by this
+    private transient long unsentCount;
+    private transient long lastUnsentWarning;
     private String syslogServerHostname;
     private int syslogServerPort;
     private String appName;
@@ -70,15 +75,58 @@ public class SyslogAuditLogger extends AuditLogger {
                 Level.FINER, "Send audit message \"{0}\" to syslog server {1}", new Object[] {event, syslogMessageSender
                 });
 
-        try {
-            syslogMessageSender.sendMessage(event);
-        } catch (IOException e) {
+        CircuitBreaker breaker = getCircuitBreaker();
+        // a single attempt per event, once the backoff elapsed, the next events being held in the delivery queue
+        if (breaker.acquire()) {
+            try {
+                syslogMessageSender.sendMessage(event);
+                breaker.recordSuccess();
+                return;
+            } catch (IOException e) {
+                breaker.recordFailure(e);
+                LOGGER.log(
+                        Level.FINE,
+                        "Exception sending audit message to syslog server " + syslogMessageSender.toString(),
+                        e);
+            }
+        }
+        reportUnsent(event, breaker);
+    }
+
+    /**
+     * Warns about the messages not sent at most once a minute, the state of the server being shown by the
+     * {@link SinkHealthMonitor} meanwhile, and not at all once the logger is cleaned up.
+     */
+    private synchronized void reportUnsent(String event, CircuitBreaker breaker) {
+        unsentCount++;
+        long now = System.currentTimeMillis();
+        if (!breaker.isReleased() && now - lastUnsentWarning > UNSENT_WARNING_INTERVAL) {
+            lastUnsentWarning = now;
             LOGGER.log(
                     Level.WARNING,
-                    "Exception sending audit message to syslog server " + syslogMessageSender.toString(),
-                    e);
-            LOGGER.warning(event);
+                    "{0} audit messages not sent to syslog server {1} so far, the last one being: {2}",
+                    new Object[] {unsentCount, syslogMessageSender, event});
+        } else {
+            LOGGER.log(Level.FINE, "Audit message not sent to syslog server {0}: {1}", new Object[] {
+                syslogMessageSender, event
+            });
+        }
+    }
+
+    @Override
+    public synchronized CircuitBreaker getCircuitBreaker() {
+        if (circuitBreaker == null) {
+            circuitBreaker = new CircuitBreaker("syslog server " + syslogServerHostname + ":" + syslogServerPort);
         }
+        return circuitBreaker;
+    }
+
+    /**
+     * Gives up the events held while the server is unavailable.
+     */
+    @Override
+    public void cleanUp() throws SecurityException {
+        getCircuitBreaker().release();
     }
 
     private void configure() {
@@ -192,7 +240,7 @@ public class SyslogAuditLogger extends AuditLogger {
     }
 
     @Extension
-    public static class DescriptorImpl extends Descriptor<AuditLogger> {
+    public static class DescriptorImpl extends AuditLoggerDescriptor {
 
         @Override
         public String getDisplayName() {
@@ -0,0 +1,170 @@
+package hudson.plugins.audit_trail;
+
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.lang.time.FastDateFormat;
+
+/**
+ * Renders timestamps with a {@link SimpleDateFormat} pattern, without locking and almost without allocating.
+ * <p>
+ * Everything but the milliseconds is only formatted, by a {@link DateTimeFormatter}, once per second: the text before
+ * and after the milliseconds is cached for the current second, so that rendering a timestamp of that second only
+ * appends the millisecond digits. The cache is an immutable snapshot replaced as a whole, so concurrent threads never
+ * wait for each other, at worst formatting the same second twice.
+ * <p>
+ * Patterns using fields whose meaning differs between {@link SimpleDateFormat} and {@link DateTimeFormatter}, or
+ * several millisecond fields, are rendered by a {@link FastDateFormat} instead, which is thread-safe too.
+ */
+final class TimestampRenderer {
+
+    private static final Map<String, TimestampRenderer> RENDERERS = new ConcurrentHashMap<>();
+
+    /**
+     * The maximum number of letters, for the fields whose rendering is the same with both formatters up to that count.
+     */
+    private static final String MAX_COUNTS = "y9Y9M4L4w2W1D3d2E4a9H2k2K2h2m2s2Z3X3";
+
+    private static final class Second {
+        final long epochSecond;
+        final String before;
+        final String after;
+
+        Second(long epochSecond, String before, String after) {
+            this.epochSecond = epochSecond;
+            this.before = before;
+            this.after = after;
+        }
+    }
+
+    private final String pattern;
+    // null if the pattern is not cacheable
+    private final DateTimeFormatter beforeMillis;
+    private final DateTimeFormatter afterMillis;
+    private final int millisDigits;
+    private final FastDateFormat fallback;
+
+    private volatile Second second = new Second(Long.MIN_VALUE, "", "");
+
+    /**
+     * @throws IllegalArgumentException if the pattern is not a valid {@link SimpleDateFormat} pattern
+     */
+    private TimestampRenderer(String pattern) {
+        // validated like it always was
+        new SimpleDateFormat(pattern);
+        this.pattern = pattern;
+        StringBuilder before = new StringBuilder();
+        StringBuilder after = new StringBuilder();
+        int digits = -1;
+        boolean cacheable = true;
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length() && cacheable; ) {
+            char c = pattern.charAt(i);
+            StringBuilder current = digits < 0 ? before : after;
+            if (c == '\'') {
+                quoted = !quoted;
+                current.append(c);
+                i++;
+            } else if (quoted || !isLetter(c)) {
+                if (!quoted && "[]{}#".indexOf(c) >= 0) {
+                    // literals for SimpleDateFormat, reserved by DateTimeFormatter
+                    current.append('\'').append(c).append('\'');
+                } else {
+                    current.append(c);
+                }
+                i++;
+            } else {
+                int run = 1;
+                while (i + run < pattern.length() && pattern.charAt(i + run) == c) {
+                    run++;
+                }
+                i += run;
+                if (c == 'S') {
+                    cacheable = digits < 0;
+                    digits = run;
+                } else if (c == 'a') {
+                    // SimpleDateFormat accepts any count for the same text
+                    current.append('a');
+                } else if (c == 'G') {
+                    // SimpleDateFormat renders the short era of the Gregorian calendar whatever the count, while
+                    // DateTimeFormatter renders the full text for 4 letters and the narrow one for 5
+                    current.append('G');
+                } else if (run <= maxCount(c)) {
+                    current.append(String.valueOf(c).repeat(run));
+                } else {
+                    cacheable = false;
+                }
+            }
+        }
+        if (cacheable) {
+            ZoneId zone = ZoneId.systemDefault();
+            this.beforeMillis = DateTimeFormatter.ofPattern(before.toString()).withZone(zone);
+            this.afterMillis = DateTimeFormatter.ofPattern(after.toString()).withZone(zone);
+            this.millisDigits = Math.max(digits, 0);
+            this.fallback = null;
+        } else {
+            this.beforeMillis = null;
+            this.afterMillis = null;
+            this.millisDigits = 0;
+            this.fallback = FastDateFormat.getInstance(pattern);
+        }
+    }
+
+    /**
+     * @return the renderer shared by every caller of the same pattern
+     * @throws IllegalArgumentException if the pattern is not a valid {@link SimpleDateFormat} pattern
+     */
+    static TimestampRenderer of(String pattern) {
+        TimestampRenderer renderer = RENDERERS.get(pattern);
+        if (renderer == null) {
+            renderer = RENDERERS.computeIfAbsent(pattern, TimestampRenderer::new);
+        }
+        return renderer;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static int maxCount(char letter) {
+        int index = MAX_COUNTS.indexOf(letter);
+        return index < 0 ? 0 : MAX_COUNTS.charAt(index + 1) - '0';
+    }
+
+    String getPattern() {
+        return pattern;
+    }
+
+    boolean isCached() {
+        return fallback == null;
+    }
+
+    String format(long millis) {
+        return appendTo(new StringBuilder(pattern.length() + 8), millis).toString();
+    }
+
+    StringBuilder appendTo(StringBuilder builder, long millis) {
+        if (fallback != null) {
+            return builder.append(fallback.format(millis));
+        }
+        long epochSecond = Math.floorDiv(millis, 1000);
+        Second current = second;
+        if (current.epochSecond != epochSecond) {
+            Instant instant = Instant.ofEpochSecond(epochSecond);
+            current = new Second(epochSecond, beforeMillis.format(instant), afterMillis.format(instant));
+            second = current;
+        }
+        builder.append(current.before);
+        if (millisDigits > 0) {
+            int milliOfSecond = (int) Math.floorMod(millis, 1000);
+            for (int width = milliOfSecond < 10 ? 1 : milliOfSecond < 100 ? 2 : 3; width < millisDigits; width++) {
+                builder.append('0');
+            }
+            builder.append(milliOfSecond);
+        }
+        return builder.append(current.after);
+    }
+}
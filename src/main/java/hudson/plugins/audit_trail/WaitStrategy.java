@@ -0,0 +1,29 @@
+package hudson.plugins.audit_trail;
+
+/**
+ * How the threads of an {@link AuditRingBuffer} wait for entries, or for room when the buffer is full.
+ */
+public enum WaitStrategy {
+    /**
+     * Park the waiting thread until it is signalled, cheapest in CPU but with the highest latency.
+     */
+    BLOCKING("Blocking"),
+    /**
+     * Spin for a short while then yield the CPU to other threads.
+     */
+    YIELDING("Yielding"),
+    /**
+     * Spin without ever giving up the CPU, lowest latency but keeps a core busy.
+     */
+    BUSY_SPIN("Busy spin");
+
+    private final String displayName;
+
+    WaitStrategy(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
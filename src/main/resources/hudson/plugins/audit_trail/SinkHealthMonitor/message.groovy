@@ -0,0 +1,25 @@
+package hudson.plugins.audit_trail.SinkHealthMonitor
+
+/**
+ * Administrative monitor of the loggers whose server is unavailable
+ */
+def monitor = my
+
+dl {
+    div(class: 'alert alert-warning') {
+        b("Some Audit Trail loggers cannot reach their server and hold their events until it is back:")
+        ul {
+            for (breaker in monitor.openCircuits) {
+                li {
+                    text("${breaker.name}: ${breaker.state}, since ${new Date(breaker.stateSince)}, "
+                            + "${breaker.consecutiveFailures} failures in a row")
+                    if (breaker.lastError != null) {
+                        br()
+                        code(breaker.lastError)
+                    }
+                }
+            }
+        }
+        text("Events are dropped once the delivery queue of a logger is full, according to its overflow policy.")
+    }
+}
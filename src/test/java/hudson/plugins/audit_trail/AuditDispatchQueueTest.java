@@ -0,0 +1,190 @@
+package hudson.plugins.audit_trail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AuditDispatchQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<Integer> dispatched = new CopyOnWriteArrayList<>();
+    private AuditDispatchQueue<Integer> queue;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    public void dropNewestDropsTheOfferedEntryWhenFull() throws Exception {
+        queue = new AuditDispatchQueue<>("test", this::blockingHandler);
+        queue.configure(2, OverflowPolicy.DROP_NEWEST, 0);
+        blockWorkerOn(1);
+
+        assertTrue(queue.offer(2));
+        assertTrue(queue.offer(3));
+        assertFalse(queue.offer(4));
+
+        release.countDown();
+        assertTrue(queue.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 2, 3), dispatched);
+        assertEquals(1, queue.getDroppedCount());
+        assertEquals(2, queue.getHighWaterMark());
+    }
+
+    @Test
+    public void dropOldestEvictsTheOldestWaitingEntry() throws Exception {
+        queue = new AuditDispatchQueue<>("test", this::blockingHandler);
+        queue.configure(2, OverflowPolicy.DROP_OLDEST, 0);
+        blockWorkerOn(1);
+
+        assertTrue(queue.offer(2));
+        assertTrue(queue.offer(3));
+        assertTrue(queue.offer(4));
+
+        release.countDown();
+        assertTrue(queue.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 3, 4), dispatched);
+        assertEquals(1, queue.getDroppedCount());
+    }
+
+    @Test
+    public void blockGivesUpAfterTheTimeout() throws Exception {
+        queue = new AuditDispatchQueue<>("test", this::blockingHandler);
+        queue.configure(1, OverflowPolicy.BLOCK, 50);
+        blockWorkerOn(1);
+
+        assertTrue(queue.offer(2));
+        long start = System.nanoTime();
+        assertFalse(queue.offer(3));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+
+        release.countDown();
+        assertTrue(queue.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 2), dispatched);
+        assertEquals(1, queue.getDroppedCount());
+    }
+
+    @Test
+    public void spilledEntriesAreReplayedInOrder() throws Exception {
+        File spillFile = new File(folder.getRoot(), "spill");
+        queue = new AuditDispatchQueue<>("test", this::blockingHandler, new IntegerCodec(), spillFile);
+        queue.configure(1, OverflowPolicy.SPILL_TO_DISK, 0);
+        blockWorkerOn(1);
+
+        assertTrue(queue.offer(2));
+        assertTrue(queue.offer(3));
+        assertTrue(queue.offer(4));
+        assertTrue(spillFile.exists());
+
+        release.countDown();
+        assertTrue(queue.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 2, 3, 4), dispatched);
+        assertEquals(2, queue.getSpilledCount());
+        assertEquals(0, queue.getDroppedCount());
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void entriesLeftOverByAPreviousRunAreOutstandingUntilDispatched() throws Exception {
+        File spillFile = new File(folder.getRoot(), "spill");
+        Files.write(spillFile.toPath(), Arrays.asList("1", "2", "3"));
+        queue = new AuditDispatchQueue<>("test", this::blockingHandler, new IntegerCodec(), spillFile);
+
+        assertFalse(queue.awaitIdle(100, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertTrue(queue.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 2, 3), dispatched);
+        assertFalse(spillFile.exists());
+    }
+
+    @Test
+    public void entriesSpilledConcurrentlyAreAllReplayed() throws Exception {
+        File spillFile = new File(folder.getRoot(), "spill");
+        queue = new AuditDispatchQueue<>("test", dispatched::add, new IntegerCodec(), spillFile);
+        queue.configure(1, OverflowPolicy.SPILL_TO_DISK, 0);
+
+        int producers = 4;
+        int entries = 1000;
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int first = p * entries;
+            Thread thread = new Thread(() -> {
+                for (int i = first; i < first + entries; i++) {
+                    queue.offer(i);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+
+        assertTrue(queue.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(producers * entries, dispatched.size());
+        assertEquals(producers * entries, new HashSet<>(dispatched).size());
+        assertEquals(0, queue.getDroppedCount());
+    }
+
+    @Test
+    public void spillingWithoutCodecDropsTheNewestEntry() throws Exception {
+        queue = new AuditDispatchQueue<>("test", this::blockingHandler);
+        queue.configure(1, OverflowPolicy.SPILL_TO_DISK, 0);
+        blockWorkerOn(1);
+
+        assertTrue(queue.offer(2));
+        assertFalse(queue.offer(3));
+        assertEquals(1, queue.getDroppedCount());
+    }
+
+    private void blockWorkerOn(int element) throws InterruptedException {
+        assertTrue(queue.offer(element));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (queue.getSize() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, queue.getSize());
+    }
+
+    private void blockingHandler(Integer element) {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dispatched.add(element);
+    }
+
+    private static class IntegerCodec implements AuditDispatchQueue.SpillCodec<Integer> {
+        @Override
+        public String encode(Integer element) {
+            return element.toString();
+        }
+
+        @Override
+        public Integer decode(String line) {
+            return Integer.valueOf(line);
+        }
+    }
+}
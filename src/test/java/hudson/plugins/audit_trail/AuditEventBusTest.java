@@ -0,0 +1,251 @@
+package hudson.plugins.audit_trail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import hudson.ExtensionList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import net.sf.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.kohsuke.stapler.StaplerRequest2;
+
+public class AuditEventBusTest {
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void aSlowLoggerDoesNotDelayPublishers() throws Exception {
+        BlockingLogger logger = new BlockingLogger();
+        ExtensionList.lookupSingleton(AuditTrailPlugin.class).setLoggers(Collections.singletonList(logger));
+        AuditEventBus bus = AuditEventBus.get();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(bus.publish(AuditEvent.builder(AuditEvent.Type.HTTP_REQUEST, "/job/test/enable")
+                    .message(() -> "/job/test/enable by NA from 127.0.0.1")
+                    .build()));
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertTrue(bus.getMaxPublishNanos() < TimeUnit.SECONDS.toNanos(1));
+
+        logger.release.countDown();
+        assertTrue(bus.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(10, logger.messages.size());
+        assertEquals("/job/test/enable by NA from 127.0.0.1", logger.messages.get(0));
+    }
+
+    @Test
+    public void aStalledLoggerDoesNotDelayTheOthers() throws Exception {
+        BlockingLogger stalled = new BlockingLogger();
+        stalled.setQueueCapacity(5);
+        stalled.setQueueOverflowPolicy(OverflowPolicy.BLOCK);
+        BlockingLogger healthy = new BlockingLogger();
+        healthy.release.countDown();
+        AuditTrailPlugin plugin = ExtensionList.lookupSingleton(AuditTrailPlugin.class);
+        plugin.setDispatchBlockTimeout(10);
+        plugin.setLoggers(Arrays.asList(stalled, healthy));
+        AuditEventBus bus = AuditEventBus.get();
+
+        for (int i = 0; i < 20; i++) {
+            bus.publish(AuditEvent.builder(AuditEvent.Type.HTTP_REQUEST, "/job/test/build")
+                    .message(() -> "/job/test/build by NA from 127.0.0.1")
+                    .build());
+        }
+        AuditEventBus.Sink stalledSink = bus.getSinks().get(0);
+        AuditEventBus.Sink healthySink = bus.getSinks().get(1);
+        assertTrue(healthySink.getQueue().awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(20, healthy.messages.size());
+        assertEquals(0, healthySink.getDroppedCount());
+        assertEquals(5, stalledSink.getQueueCapacity());
+        assertEquals(5, stalledSink.getHighWaterMark());
+        assertTrue(stalledSink.getDroppedCount() >= 14);
+
+        stalled.release.countDown();
+        assertTrue(bus.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(20 - stalledSink.getDroppedCount(), stalled.messages.size());
+        assertTrue(stalledSink.getMaxLagMillis() >= 0);
+        assertEquals(stalledSink.getDroppedCount(), bus.getDroppedCount());
+    }
+
+    @Test
+    public void switchingToTheRingBufferKeepsDelivering() throws Exception {
+        BlockingLogger logger = new BlockingLogger();
+        logger.release.countDown();
+        AuditTrailPlugin plugin = ExtensionList.lookupSingleton(AuditTrailPlugin.class);
+        plugin.setLoggers(Collections.singletonList(logger));
+        AuditEventBus bus = AuditEventBus.get();
+        bus.publish(AuditEvent.builder(AuditEvent.Type.HTTP_REQUEST, "/job/test/enable").build());
+        assertTrue(bus.awaitIdle(10, TimeUnit.SECONDS));
+
+        plugin.setDispatchMode(DispatchMode.RING_BUFFER);
+        plugin.setDispatchWaitStrategy(WaitStrategy.YIELDING);
+        assertTrue(bus.getSinks().get(0).getQueue() instanceof AuditRingBuffer);
+        assertTrue(
+                ExtensionList.lookupSingleton(AuditTrailFilter.class).getDispatchQueue() instanceof AuditRingBuffer);
+        bus.publish(AuditEvent.builder(AuditEvent.Type.HTTP_REQUEST, "/job/test/disable").build());
+
+        assertTrue(bus.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("/job/test/enable", "/job/test/disable"), logger.messages);
+    }
+
+    @Test
+    public void aRemovedLoggerIsCleanedUpOnceItsEventsAreDelivered() throws Exception {
+        BlockingLogger removed = new BlockingLogger();
+        AuditTrailPlugin plugin = ExtensionList.lookupSingleton(AuditTrailPlugin.class);
+        plugin.setLoggers(Collections.singletonList(removed));
+        AuditEventBus bus = AuditEventBus.get();
+        bus.publish(AuditEvent.builder(AuditEvent.Type.HTTP_REQUEST, "/job/test/enable").build());
+
+        BlockingLogger added = new BlockingLogger();
+        added.release.countDown();
+        plugin.setLoggers(Collections.singletonList(added));
+        bus.updateLoggers(plugin);
+        assertSame(added, bus.getSinks().get(0).getLogger());
+        assertEquals(1, removed.cleanedUp.getCount());
+
+        removed.release.countDown();
+        assertTrue(removed.cleanedUp.await(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("/job/test/enable"), removed.messages);
+    }
+
+    @Test
+    public void eventsPublishedWhileTheLoggersAreReplacedAreDeliveredToTheNewOnes() throws Exception {
+        NamedLogger previous = new NamedLogger("audit.log");
+        previous.release.countDown();
+        AuditTrailPlugin plugin = ExtensionList.lookupSingleton(AuditTrailPlugin.class);
+        plugin.setLoggers(Collections.singletonList(previous));
+        AuditEventBus bus = AuditEventBus.get();
+        bus.publish(AuditEvent.builder(AuditEvent.Type.HTTP_REQUEST, "/job/test/enable").build());
+
+        bus.suspend();
+        assertEquals(0, previous.cleanedUp.getCount());
+        assertEquals(Collections.singletonList("/job/test/enable"), previous.messages);
+        bus.publish(AuditEvent.builder(AuditEvent.Type.HTTP_REQUEST, "/job/test/disable").build());
+
+        NamedLogger next = new NamedLogger("audit.log");
+        next.release.countDown();
+        plugin.setLoggers(Collections.singletonList(next));
+        bus.updateLoggers(plugin);
+        assertTrue(bus.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("/job/test/disable"), next.messages);
+        assertEquals(1, previous.messages.size());
+        assertEquals(0, bus.getDroppedCount());
+    }
+
+    @Test
+    public void eventsPublishedWhileTheConfigurationIsSavedReachExactlyOneLogger() throws Exception {
+        AuditTrailPlugin plugin = ExtensionList.lookupSingleton(AuditTrailPlugin.class);
+        List<NamedLogger> generations = new CopyOnWriteArrayList<>();
+        NamedLogger first = new NamedLogger("audit.log");
+        first.release.countDown();
+        generations.add(first);
+        plugin.setLoggers(Collections.singletonList(first));
+        AuditEventBus bus = AuditEventBus.get();
+        bus.getSinks();
+
+        JSONObject formData = new JSONObject();
+        StaplerRequest2 req = mock(StaplerRequest2.class);
+        doAnswer(invocation -> {
+                    NamedLogger next = new NamedLogger("audit.log");
+                    next.release.countDown();
+                    generations.add(next);
+                    plugin.setLoggers(Collections.singletonList(next));
+                    return null;
+                })
+                .when(req)
+                .bindJSON(plugin, formData);
+
+        int publishers = 4;
+        int events = 500;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < publishers; p++) {
+            String prefix = "/job/test" + p + "/build/";
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < events; i++) {
+                    bus.publish(AuditEvent.builder(AuditEvent.Type.HTTP_REQUEST, prefix + i).build());
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (int i = 0; i < 5; i++) {
+            plugin.configure(req, formData);
+        }
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+
+        assertTrue(bus.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(6, generations.size());
+        Set<String> delivered = new HashSet<>();
+        int count = 0;
+        for (NamedLogger logger : generations) {
+            delivered.addAll(logger.messages);
+            count += logger.messages.size();
+        }
+        assertEquals(publishers * events, delivered.size());
+        assertEquals(publishers * events, count);
+        assertEquals(0, bus.getDroppedCount());
+    }
+
+    private static class BlockingLogger extends AuditLogger {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch cleanedUp = new CountDownLatch(1);
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void cleanUp() {
+            cleanedUp.countDown();
+        }
+
+        @Override
+        public void log(String event) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            messages.add(event);
+        }
+    }
+
+    private static class NamedLogger extends BlockingLogger {
+        private final String name;
+
+        NamedLogger(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof NamedLogger && name.equals(((NamedLogger) o).name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+    }
+}
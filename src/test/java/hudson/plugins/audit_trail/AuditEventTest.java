@@ -0,0 +1,77 @@
+package hudson.plugins.audit_trail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class AuditEventTest {
+
+    @Test
+    public void messageIsRenderedLazilyAndOnce() {
+        AtomicInteger renderings = new AtomicInteger();
+        AuditEvent event = AuditEvent.builder(AuditEvent.Type.HTTP_REQUEST, "/job/test/configSubmit")
+                .message(() -> "rendered " + renderings.incrementAndGet())
+                .build();
+        assertEquals(0, renderings.get());
+
+        String message = event.getMessage();
+        assertEquals("rendered 1", message);
+        assertSame(message, event.getMessage());
+        assertEquals(1, renderings.get());
+    }
+
+    @Test
+    public void defaultRenderingUsesTheFields() {
+        AuditEvent event = AuditEvent.builder(AuditEvent.Type.HTTP_REQUEST, "/job/test/configSubmit")
+                .user("alice")
+                .sourceIp("127.0.0.1")
+                .field("method", "POST")
+                .field("ignored", null)
+                .build();
+        assertEquals("/job/test/configSubmit method=POST by alice from 127.0.0.1", event.getMessage());
+    }
+
+    @Test
+    public void jsonEscapesValuesInsteadOfInterpretingThemWithoutRenderingTheMessage() {
+        AuditEvent event = AuditEvent.builder(AuditEvent.Type.SCRIPT_EXECUTION, "Script Console Controller")
+                .timestamp(0)
+                .user("alice")
+                .field("script", "{ println \"a\\b\" }\n")
+                .message(() -> {
+                    throw new AssertionError("the message is not part of the document");
+                })
+                .build();
+        String json = AuditEventJson.toJson(event);
+        assertEquals(
+                "{\"@timestamp\":\"" + AuditEventJson.TIMESTAMP_FORMAT.format(0L)
+                        + "\",\"type\":\"SCRIPT_EXECUTION\",\"subject\":\"Script Console Controller\","
+                        + "\"user\":\"alice\",\"fields\":{\"script\":\"{ println \\\"a\\\\b\\\" }\\n\"}}",
+                json);
+    }
+
+    @Test
+    public void encodingsAreRenderedOnceAndSharedReadOnly() {
+        AtomicInteger renderings = new AtomicInteger();
+        AuditEvent event = AuditEvent.builder(AuditEvent.Type.HTTP_REQUEST, "/job/caf\u00e9/configSubmit")
+                .message(() -> {
+                    renderings.incrementAndGet();
+                    return "/job/caf\u00e9/configSubmit by alice";
+                })
+                .build();
+
+        ByteBuffer first = event.getMessageBytes();
+        ByteBuffer second = event.getMessageBytes();
+        assertTrue(first.isReadOnly());
+        first.get();
+        assertEquals(0, second.position());
+        assertEquals("/job/caf\u00e9/configSubmit by alice", StandardCharsets.UTF_8.decode(second).toString());
+        assertEquals(AuditEventJson.toJson(event), StandardCharsets.UTF_8.decode(event.getJsonBytes()).toString());
+        assertTrue(event.getJsonBytes().isReadOnly());
+        assertEquals(1, renderings.get());
+    }
+}
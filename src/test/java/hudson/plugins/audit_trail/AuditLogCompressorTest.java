@@ -0,0 +1,126 @@
+package hudson.plugins.audit_trail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AuditLogCompressorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String LINES = "Mar 12, 2024 10:42:00,000 AM /job/foo/build by alice\n".repeat(1000);
+
+    @Test
+    public void rotatedFileIsReplacedByItsCompressedVersion() throws Exception {
+        Path source = folder.getRoot().toPath().resolve("audit.log.1");
+        Files.write(source, LINES.getBytes(StandardCharsets.UTF_8));
+        AuditLogCompressor.Statistics statistics = new AuditLogCompressor.Statistics();
+        AuditLogCompressor compressor = new AuditLogCompressor(Compression.GZIP, 2, statistics);
+        CountDownLatch done = new CountDownLatch(1);
+        Path[] compressed = new Path[1];
+        compressor.compress(source, (from, target, size, checksum) -> {
+            compressed[0] = target;
+            done.countDown();
+        });
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        compressor.shutdown();
+
+        Assert.assertEquals(folder.getRoot().toPath().resolve("audit.log.1.gz"), compressed[0]);
+        Assert.assertFalse(Files.exists(source));
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(compressed[0]))) {
+            Assert.assertEquals(LINES, read(in));
+        }
+        Assert.assertEquals(1, statistics.getFiles());
+        Assert.assertEquals(LINES.length(), statistics.getBytesIn());
+        Assert.assertEquals(Files.size(compressed[0]), statistics.getBytesOut());
+        Assert.assertTrue(statistics.getRatio() < 0.1);
+        Assert.assertTrue(statistics.getThroughput() > 0);
+    }
+
+    @Test
+    public void generationsAreShiftedAlongWithTheirCompressedVersions() throws Exception {
+        String pattern = folder.getRoot().toPath().resolve("audit.log").toString();
+        AuditLogFileWriter writer = new AuditLogFileWriter(pattern, 1024, 3);
+        AuditLogCompressor compressor =
+                new AuditLogCompressor(Compression.DEFLATE, 1, new AuditLogCompressor.Statistics());
+        writer.setCompressor(compressor);
+        String line = "x".repeat(1100);
+        for (int i = 0; i < 5; i++) {
+            writer.appendLine(i + " ", line);
+            awaitCompression(folder.getRoot().toPath().resolve("audit.log.1"));
+        }
+        writer.close();
+        compressor.shutdown();
+
+        Assert.assertFalse(Files.exists(folder.getRoot().toPath().resolve("audit.log.1")));
+        Assert.assertFalse(Files.exists(folder.getRoot().toPath().resolve("audit.log.2")));
+        Assert.assertFalse(Files.exists(folder.getRoot().toPath().resolve("audit.log.3.zz")));
+        try (InputStream in = new InflaterInputStream(
+                Files.newInputStream(folder.getRoot().toPath().resolve("audit.log.1.zz")))) {
+            Assert.assertEquals("4 " + line + "\n", read(in));
+        }
+        try (InputStream in = new InflaterInputStream(
+                Files.newInputStream(folder.getRoot().toPath().resolve("audit.log.2.zz")))) {
+            Assert.assertEquals("3 " + line + "\n", read(in));
+        }
+    }
+
+    @Test
+    public void fileDeletedWhileBeingCompressedLeavesNothingBehind() throws Exception {
+        Path source = folder.getRoot().toPath().resolve("audit.log-2024-03-12");
+        Files.write(source, LINES.getBytes(StandardCharsets.UTF_8));
+        AuditLogCompressor compressor =
+                new AuditLogCompressor(Compression.GZIP, 1, new AuditLogCompressor.Statistics());
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // keeps the only thread busy, so that the file is deleted before being compressed
+        compressor.compress(folder.newFile("blocker").toPath(), (from, target, size, checksum) -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        compressor.compress(source, (from, target, size, checksum) -> Assert.fail("deleted files are not reported"));
+        AuditLogCompressor.delete(source);
+        release.countDown();
+        compressor.shutdown();
+        awaitCompression(folder.getRoot().toPath().resolve("blocker"));
+
+        Assert.assertFalse(Files.exists(source));
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            Assert.assertEquals(
+                    Collections.singletonList("blocker.gz"),
+                    files.map(file -> file.getFileName().toString()).collect(Collectors.toList()));
+        }
+    }
+
+    private static void awaitCompression(Path source) throws InterruptedException {
+        for (int i = 0; i < 500 && Files.exists(source); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        in.transferTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,115 @@
+package hudson.plugins.audit_trail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AuditLogFileWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void filesAreNamedLikeTheFileHandlerDoes() {
+        assertEquals(new File("audit.log"), AuditLogOutput.generate("audit.log", 0, 1));
+        assertEquals(new File("audit.log.2"), AuditLogOutput.generate("audit.log", 2, 3));
+        assertEquals(new File("audit-1.log"), AuditLogOutput.generate("audit-%g.log", 1, 3));
+        assertEquals(new File("audit-0%.log"), AuditLogOutput.generate("audit-%u%%.log", 0, 1));
+        assertEquals(
+                new File(System.getProperty("java.io.tmpdir") + "/audit.log"),
+                AuditLogOutput.generate("%t/audit.log", 0, 1));
+    }
+
+    @Test
+    public void linesAreOnlyWrittenWhenFlushed() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("subdirectory").resolve("audit.log");
+        try (AuditLogFileWriter writer = new AuditLogFileWriter(log.toString(), 0, 1)) {
+            writer.appendLine("first ", "line");
+            writer.appendLine("second ", ByteBuffer.wrap("line".getBytes(StandardCharsets.UTF_8)));
+            assertEquals(0, Files.size(log));
+
+            writer.flush();
+            assertEquals(Arrays.asList("first line", "second line"), Files.readAllLines(log));
+        }
+        assertFalse(Files.exists(log.resolveSibling("audit.log.lck")));
+    }
+
+    @Test
+    public void linesLongerThanTheBufferAreWrittenWhole() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("audit.log");
+        String message = String.join("", Collections.nCopies(AuditLogFileWriter.BUFFER_SIZE / 4 * 3, "\u00e9t"));
+        try (AuditLogFileWriter writer = new AuditLogFileWriter(log.toString(), 0, 1)) {
+            writer.appendLine("", message);
+        }
+        assertEquals(Collections.singletonList(message), Files.readAllLines(log));
+    }
+
+    @Test
+    public void filesRollOverOnceTheLimitIsReached() throws Exception {
+        String pattern = folder.getRoot().toPath().resolve("audit.log").toString();
+        try (AuditLogFileWriter writer = new AuditLogFileWriter(pattern, 10, 3)) {
+            for (int i = 0; i < 5; i++) {
+                writer.appendLine("line ", "number" + i);
+            }
+        }
+        assertEquals(Collections.emptyList(), Files.readAllLines(Path.of(pattern + ".0")));
+        assertEquals(Collections.singletonList("line number4"), Files.readAllLines(Path.of(pattern + ".1")));
+        assertEquals(Collections.singletonList("line number3"), Files.readAllLines(Path.of(pattern + ".2")));
+        assertFalse(Files.exists(Path.of(pattern + ".3")));
+    }
+
+    @Test
+    public void existingFilesAreAppendedTo() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("audit.log");
+        Files.write(log, "previous\n".getBytes(StandardCharsets.UTF_8));
+        try (AuditLogFileWriter writer = new AuditLogFileWriter(log.toString(), 0, 1)) {
+            writer.appendLine("", "next");
+        }
+        assertEquals(Arrays.asList("previous", "next"), Files.readAllLines(log));
+    }
+
+    @Test
+    public void syncWaitsForTheLinesToBeForced() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("audit.log");
+        AuditLogOutput.SyncStatistics statistics = new AuditLogOutput.SyncStatistics();
+        try (AuditLogFileWriter writer = new AuditLogFileWriter(log.toString(), 0, 1, statistics)) {
+            writer.setDurability(Durability.PER_EVENT_TYPE, 1000, 1);
+            writer.appendLine("", "script");
+            writer.sync();
+
+            assertEquals(Collections.singletonList("script"), Files.readAllLines(log));
+            assertEquals(1, statistics.getCount());
+            assertTrue(statistics.getMaxNanos() >= statistics.getAverageNanos());
+        }
+    }
+
+    @Test
+    public void everyNEventsRequestsABackgroundSync() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("audit.log");
+        AuditLogOutput.SyncStatistics statistics = new AuditLogOutput.SyncStatistics();
+        try (AuditLogFileWriter writer = new AuditLogFileWriter(log.toString(), 0, 1, statistics)) {
+            writer.setDurability(Durability.EVERY_N_EVENTS, 1000, 2);
+            writer.appendLine("", "first");
+            writer.appendLine("", "second");
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (statistics.getCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, statistics.getCount());
+            assertEquals(Arrays.asList("first", "second"), Files.readAllLines(log));
+        }
+    }
+}
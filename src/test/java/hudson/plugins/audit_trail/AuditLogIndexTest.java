@@ -0,0 +1,97 @@
+package hudson.plugins.audit_trail;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AuditLogIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final long START = 1710236520000L;
+    private static final AuditLogIndex.TimestampParser PARSER = AuditLogIndex.parserOf(LogFormat.JSON_LINES, null);
+
+    @Test
+    public void everyNthEventIsIndexedAndRangesAreReadFromTheIndex() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("audit.log");
+        writeEvents(log, 0, 100);
+
+        assertEquals(10 * AuditLogIndex.RECORD_SIZE, Files.size(AuditLogIndex.indexOf(log)));
+        assertEquals(Arrays.asList(event(42), event(43), event(44)), read(log, 42, 44));
+        assertEquals(Arrays.asList(event(98), event(99)), read(log, 98, 1000));
+        assertTrue(read(log, 200, 300).isEmpty());
+    }
+
+    @Test
+    public void lostIndexIsRebuiltFromTheLogFile() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("audit.log");
+        writeEvents(log, 0, 50);
+        byte[] written = Files.readAllBytes(AuditLogIndex.indexOf(log));
+
+        Files.delete(AuditLogIndex.indexOf(log));
+        assertEquals(Arrays.asList(event(10), event(11)), read(log, 10, 11));
+        assertFalse(Files.exists(AuditLogIndex.indexOf(log)));
+
+        writeEvents(log, 50, 60);
+        byte[] rebuilt = Files.readAllBytes(AuditLogIndex.indexOf(log));
+        assertArrayEquals(written, Arrays.copyOf(rebuilt, written.length));
+        assertEquals(6 * AuditLogIndex.RECORD_SIZE, rebuilt.length);
+        assertEquals(Arrays.asList(event(55)), read(log, 55, 55));
+    }
+
+    @Test
+    public void compressedFilesAreReadWithTheIndexOfTheOriginalFile() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("audit.log.1");
+        writeEvents(log, 0, 100);
+        try (OutputStream out = Compression.GZIP.wrap(Files.newOutputStream(log.resolveSibling("audit.log.1.gz")))) {
+            Files.copy(log, out);
+        }
+        Files.delete(log);
+
+        assertEquals(Arrays.asList(event(77)), read(log, 77, 77));
+
+        AuditLogCompressor.delete(log.resolveSibling("audit.log.1.gz"));
+        assertFalse(Files.exists(AuditLogIndex.indexOf(log)));
+    }
+
+    @Test
+    public void textLinesAreParsedWithTheTimestampPattern() {
+        AuditLogIndex.TimestampParser parser = AuditLogIndex.parserOf(LogFormat.TEXT, "yyyy-MM-dd HH:mm:ss,SSS");
+        assertEquals(-1, parser.parse("println 'second line of a script'"));
+        assertTrue(parser.parse("2024-03-12 10:42:00,123 /job/foo/ by alice") > 0);
+        assertEquals(-1, PARSER.parse("{\"message\":\"no timestamp\"}"));
+        assertEquals(START, PARSER.parse("{\"timestamp\":" + START + ",\"message\":\"m\"}"));
+    }
+
+    private static void writeEvents(Path log, int from, int to) throws IOException {
+        try (AuditLogFileWriter writer = new AuditLogFileWriter(log.toString(), 0, 1)) {
+            writer.setIndex(new AuditLogIndex.Settings(10, 0, PARSER));
+            for (int i = from; i < to; i++) {
+                writer.appendLine(START + i * 1000L, "", event(i));
+            }
+        }
+    }
+
+    private static String event(int second) {
+        return "{\"timestamp\":" + (START + second * 1000L) + ",\"message\":\"event " + second + "\"}";
+    }
+
+    private static List<String> read(Path log, int fromSecond, int toSecond) throws IOException {
+        List<String> lines = new ArrayList<>();
+        AuditLogIndex.read(log, START + fromSecond * 1000L, START + toSecond * 1000L, PARSER, lines::add);
+        return lines;
+    }
+}
@@ -0,0 +1,103 @@
+package hudson.plugins.audit_trail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AuditLogManifestTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final OffsetDateTime DAY = OffsetDateTime.parse("2024-03-12T00:00+01:00");
+
+    @Test
+    public void entriesSurviveAWriteAndARead() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("audit.log.manifest");
+        Files.write(file.resolveSibling("audit.log-2024-03-12"), "line1\n".getBytes(StandardCharsets.UTF_8));
+        AuditLogManifest manifest = new AuditLogManifest(file);
+        Assert.assertTrue(manifest.add("audit.log-2024-03-12", DAY));
+        Assert.assertFalse(manifest.add("audit.log-2024-03-12", DAY));
+        manifest.seal("audit.log-2024-03-12", true);
+        Assert.assertTrue(manifest.add("audit.log-2024-03-13", DAY.plusDays(1)));
+        manifest.write();
+
+        AuditLogManifest read = AuditLogManifest.read(file);
+        Assert.assertNotNull(read);
+        List<AuditLogManifest.Entry> entries = read.getEntries();
+        Assert.assertEquals(2, entries.size());
+        Assert.assertEquals("audit.log-2024-03-12", entries.get(0).name);
+        Assert.assertTrue(DAY.isEqual(entries.get(0).start));
+        Assert.assertEquals(6, entries.get(0).size);
+        Assert.assertEquals(
+                AuditLogManifest.checksum(file.resolveSibling("audit.log-2024-03-12")), entries.get(0).checksum);
+        Assert.assertEquals("audit.log-2024-03-13", read.latest().name);
+        Assert.assertEquals(-1, read.latest().size);
+        Assert.assertNull(read.latest().checksum);
+    }
+
+    @Test
+    public void missingOrCorruptManifestsAreNotRead() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("audit.log.manifest");
+        Assert.assertNull(AuditLogManifest.read(file));
+
+        AuditLogManifest manifest = new AuditLogManifest(file);
+        manifest.add("audit.log-2024-03-12", DAY);
+        manifest.write();
+        String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        Files.write(file, content.replace("2024-03-12", "2024-03-11").getBytes(StandardCharsets.UTF_8));
+        Assert.assertNull(AuditLogManifest.read(file));
+
+        Files.write(file, content.substring(0, content.length() / 2).getBytes(StandardCharsets.UTF_8));
+        Assert.assertNull(AuditLogManifest.read(file));
+    }
+
+    @Test
+    public void expiringKeepsTheLatestEntries() {
+        AuditLogManifest manifest = new AuditLogManifest(folder.getRoot().toPath().resolve("audit.log.manifest"));
+        for (int day = 0; day < 5; day++) {
+            manifest.add("audit.log-" + day, DAY.plusDays(day));
+        }
+        List<AuditLogManifest.Entry> expired = manifest.expire(2, 0, null);
+        Assert.assertEquals(3, expired.size());
+        Assert.assertEquals("audit.log-0", expired.get(0).name);
+        Assert.assertEquals(2, manifest.getEntries().size());
+        Assert.assertEquals("audit.log-3", manifest.getEntries().get(0).name);
+
+        manifest.restore(Collections.singletonList(expired.get(2)));
+        Assert.assertEquals("audit.log-2", manifest.getEntries().get(0).name);
+        Assert.assertEquals("audit.log-4", manifest.latest().name);
+    }
+
+    @Test
+    public void expiringHonorsTheSizeAndAgeLimitsButKeepsTheLatestFile() {
+        AuditLogManifest manifest = new AuditLogManifest(folder.getRoot().toPath().resolve("audit.log.manifest"));
+        for (int day = 0; day < 5; day++) {
+            manifest.add("audit.log-" + day, DAY.plusDays(day));
+        }
+        for (AuditLogManifest.Entry entry : manifest.getEntries().subList(0, 4)) {
+            entry.size = 100;
+        }
+
+        Assert.assertEquals(2, manifest.expire(0, 250, null).size());
+        Assert.assertEquals("audit.log-2", manifest.getEntries().get(0).name);
+
+        // audit.log-2 ends when audit.log-3 starts
+        Assert.assertEquals(0, manifest.expire(0, 0, DAY.plusDays(3).toInstant()).size());
+        Assert.assertEquals(
+                1, manifest.expire(0, 0, DAY.plusDays(3).plusHours(1).toInstant()).size());
+
+        Assert.assertEquals(1, manifest.expire(1, 1, Instant.MAX).size());
+        Assert.assertEquals(1, manifest.getEntries().size());
+        Assert.assertEquals("audit.log-4", manifest.latest().name);
+    }
+}
@@ -0,0 +1,82 @@
+package hudson.plugins.audit_trail;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AuditLogSegmentWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AuditLogOutput.SyncStatistics statistics = new AuditLogOutput.SyncStatistics();
+
+    @Test
+    public void theZeroFilledTailIsTruncatedOnClose() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("audit.log");
+        try (AuditLogSegmentWriter writer = new AuditLogSegmentWriter(log.toString(), 0, 1, 1024, statistics)) {
+            writer.appendLine("first ", "line");
+            writer.appendLine("second ", ByteBuffer.wrap("line".getBytes(StandardCharsets.UTF_8)));
+            assertEquals(1024, Files.size(log));
+        }
+        assertEquals(Arrays.asList("first line", "second line"), Files.readAllLines(log));
+        assertEquals("first line\nsecond line\n".length(), Files.size(log));
+    }
+
+    @Test
+    public void linesSpanningSegmentsAreWrittenWhole() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("audit.log");
+        String longLine = String.join("", Collections.nCopies(40, "x"));
+        try (AuditLogSegmentWriter writer = new AuditLogSegmentWriter(log.toString(), 0, 1, 16, statistics)) {
+            writer.appendLine("", "short");
+            writer.appendLine("", longLine);
+            writer.appendLine("", "short again");
+        }
+        assertEquals(Arrays.asList("short", longLine, "short again"), Files.readAllLines(log));
+    }
+
+    @Test
+    public void anIncompleteTailIsRecoveredWhenOpening() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("audit.log");
+        byte[] crashed = new byte[64];
+        byte[] lines = "complete\npartial".getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(lines, 0, crashed, 0, lines.length);
+        Files.write(log, crashed);
+
+        try (AuditLogSegmentWriter writer = new AuditLogSegmentWriter(log.toString(), 0, 1, 1024, statistics)) {
+            writer.appendLine("", "next");
+        }
+        assertEquals(Arrays.asList("complete", "next"), Files.readAllLines(log));
+    }
+
+    @Test
+    public void filesRollOverOnceTheLimitIsReached() throws Exception {
+        String pattern = folder.getRoot().toPath().resolve("audit.log").toString();
+        try (AuditLogSegmentWriter writer = new AuditLogSegmentWriter(pattern, 10, 2, 1024, statistics)) {
+            for (int i = 0; i < 3; i++) {
+                writer.appendLine("line ", "number" + i);
+            }
+        }
+        assertEquals(Collections.emptyList(), Files.readAllLines(Path.of(pattern + ".0")));
+        assertEquals(Collections.singletonList("line number2"), Files.readAllLines(Path.of(pattern + ".1")));
+    }
+
+    @Test
+    public void syncForcesTheWrittenLines() throws Exception {
+        Path log = folder.getRoot().toPath().resolve("audit.log");
+        try (AuditLogSegmentWriter writer = new AuditLogSegmentWriter(log.toString(), 0, 1, 1024, statistics)) {
+            writer.setDurability(Durability.PER_EVENT_TYPE, 1000, 1);
+            writer.appendLine("", "script");
+            writer.sync();
+            assertEquals(1, statistics.getCount());
+        }
+    }
+}
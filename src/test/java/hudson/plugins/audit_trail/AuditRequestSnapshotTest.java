@@ -0,0 +1,93 @@
+package hudson.plugins.audit_trail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class AuditRequestSnapshotTest {
+
+    @Test
+    public void captureOnlyParsesTheRequestedParameters() {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getRemoteAddr()).thenReturn("127.0.0.1");
+        when(request.getQueryString()).thenReturn("id=42");
+        when(request.getParameter("id")).thenReturn("42");
+
+        long before = System.currentTimeMillis();
+        AuditRequestSnapshot snapshot = AuditRequestSnapshot.capture(request, "/queue/cancelItem", null, "id");
+
+        assertTrue(snapshot.getTimestamp() >= before);
+        assertTrue(snapshot.getTimestamp() <= System.currentTimeMillis());
+        assertEquals("/queue/cancelItem", snapshot.getUri());
+        assertEquals("POST", snapshot.getMethod());
+        assertEquals("127.0.0.1", snapshot.getRemoteAddress());
+        assertEquals("id=42", snapshot.getQueryString());
+        assertEquals("42", snapshot.getParameter("id"));
+        assertNull(snapshot.getUserId());
+        verify(request, never()).getParameter("name");
+        verify(request, never()).getParameterMap();
+    }
+
+    @Test
+    public void spillCodecRoundTrip() {
+        AuditRequestSnapshot snapshot = new AuditRequestSnapshot(
+                1234567890123L,
+                "/job/test/createItem",
+                "POST",
+                "10.0.0.1",
+                null,
+                Collections.singletonMap("name", "new job"),
+                "alice",
+                "Alice");
+
+        String line = AuditRequestSnapshot.SPILL_CODEC.encode(snapshot);
+        AuditRequestSnapshot decoded = AuditRequestSnapshot.SPILL_CODEC.decode(line);
+
+        assertEquals(1234567890123L, decoded.getTimestamp());
+        assertEquals(snapshot.getUri(), decoded.getUri());
+        assertEquals(snapshot.getMethod(), decoded.getMethod());
+        assertEquals(snapshot.getRemoteAddress(), decoded.getRemoteAddress());
+        assertNull(decoded.getQueryString());
+        assertEquals(snapshot.getParameters(), decoded.getParameters());
+        assertEquals("alice", decoded.getUserId());
+        assertEquals("Alice", decoded.getUserDisplayName());
+    }
+
+    @Test
+    public void spilledValuesLookingLikeJsonReadBackAsStrings() {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put("array", "[1]");
+        parameters.put("object", "{\"a\":1}");
+        parameters.put("null", "null");
+        parameters.put("text", "line\nbreak \"quoted\" \\ \u2028 \u0001");
+        AuditRequestSnapshot snapshot =
+                new AuditRequestSnapshot(1L, "/script", "POST", "10.0.0.1", "null", parameters, "[alice]", null);
+
+        AuditRequestSnapshot decoded =
+                AuditRequestSnapshot.SPILL_CODEC.decode(AuditRequestSnapshot.SPILL_CODEC.encode(snapshot));
+
+        assertEquals(parameters, decoded.getParameters());
+        assertEquals("null", decoded.getQueryString());
+        assertEquals("[alice]", decoded.getUserId());
+        assertNull(decoded.getUserDisplayName());
+    }
+
+    @Test
+    public void unreadableSpilledLinesAreSkipped() {
+        assertNull(AuditRequestSnapshot.SPILL_CODEC.decode("not json"));
+        assertNull(AuditRequestSnapshot.SPILL_CODEC.decode("{\"uri\":\"/script\""));
+        assertNull(AuditRequestSnapshot.SPILL_CODEC.decode("{\"method\":\"POST\"}"));
+        assertNull(AuditRequestSnapshot.SPILL_CODEC.decode("{\"uri\":\"/script\",\"timestamp\":\"yesterday\"}"));
+    }
+}
@@ -0,0 +1,193 @@
+package hudson.plugins.audit_trail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.After;
+import org.junit.Test;
+
+public class AuditRingBufferTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<Integer> dispatched = new CopyOnWriteArrayList<>();
+    private AuditRingBuffer<Integer> buffer;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (buffer != null) {
+            buffer.shutdown();
+        }
+    }
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(2, AuditRingBuffer.slotCount(1));
+        assertEquals(2, AuditRingBuffer.slotCount(2));
+        assertEquals(4, AuditRingBuffer.slotCount(3));
+        assertEquals(16384, AuditRingBuffer.slotCount(AuditDispatchQueue.DEFAULT_CAPACITY));
+    }
+
+    @Test
+    public void dropNewestDropsTheOfferedEntryWhenFull() throws Exception {
+        buffer = new AuditRingBuffer<>("test", this::blockingHandler, 2, WaitStrategy.BLOCKING);
+        buffer.configure(2, OverflowPolicy.DROP_NEWEST, 0);
+        blockWorkerOn(1);
+
+        assertTrue(buffer.offer(2));
+        assertTrue(buffer.offer(3));
+        assertFalse(buffer.offer(4));
+        assertSame(AuditDispatcher.Offer.DROPPED, buffer.tryOffer(5));
+
+        release.countDown();
+        assertTrue(buffer.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 2, 3), dispatched);
+        assertEquals(2, buffer.getDroppedCount());
+        assertEquals(3, buffer.getProcessedCount());
+        assertEquals(2, buffer.getHighWaterMark());
+    }
+
+    @Test
+    public void blockGivesUpAfterTheTimeout() throws Exception {
+        buffer = new AuditRingBuffer<>("test", this::blockingHandler, 2, WaitStrategy.YIELDING);
+        buffer.configure(2, OverflowPolicy.BLOCK, 50);
+        blockWorkerOn(1);
+
+        assertTrue(buffer.offer(2));
+        assertTrue(buffer.offer(3));
+        assertSame(AuditDispatcher.Offer.FULL, buffer.tryOffer(4));
+        assertEquals(0, buffer.getDroppedCount());
+        long start = System.nanoTime();
+        assertFalse(buffer.offer(4));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+
+        release.countDown();
+        assertTrue(buffer.awaitIdle(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 2, 3), dispatched);
+        assertEquals(1, buffer.getDroppedCount());
+    }
+
+    @Test
+    public void concurrentProducersLoseNothingAndKeepTheirOwnOrder() throws Exception {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            List<Integer> received = new ArrayList<>();
+            AuditRingBuffer<Integer> ringBuffer = new AuditRingBuffer<>("test", received::add, 64, waitStrategy);
+            ringBuffer.configure(64, OverflowPolicy.BLOCK, TimeUnit.SECONDS.toMillis(10));
+            int producers = 4;
+            int perProducer = 5_000;
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < perProducer; i++) {
+                        ringBuffer.offer(producer * perProducer + i);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertTrue(ringBuffer.awaitIdle(10, TimeUnit.SECONDS));
+            ringBuffer.shutdown();
+
+            assertEquals(waitStrategy.name(), producers * perProducer, received.size());
+            assertEquals(0, ringBuffer.getDroppedCount());
+            int[] last = new int[producers];
+            Arrays.fill(last, -1);
+            for (int value : received) {
+                int producer = value / perProducer;
+                assertTrue(waitStrategy.name(), value > last[producer]);
+                last[producer] = value;
+            }
+        }
+    }
+
+    @Test
+    public void entriesQueuedWhileStoppingAreDispatchedOrRefused() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            List<Integer> received = new CopyOnWriteArrayList<>();
+            AuditRingBuffer<Integer> ringBuffer =
+                    new AuditRingBuffer<>("test", received::add, 1024, WaitStrategy.BUSY_SPIN);
+            LongAdder queued = new LongAdder();
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        if (ringBuffer.offer(i)) {
+                            queued.increment();
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            ringBuffer.shutdown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertTrue(ringBuffer.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(queued.sum(), received.size());
+            assertEquals(800 - queued.sum(), ringBuffer.getDroppedCount());
+        }
+    }
+
+    @Test
+    public void supportsOnlyItsOwnModeStrategyAndSize() {
+        buffer = new AuditRingBuffer<>("test", dispatched::add, 1000, WaitStrategy.BUSY_SPIN);
+        assertTrue(buffer.supports(DispatchMode.RING_BUFFER, WaitStrategy.BUSY_SPIN, 1024));
+        assertFalse(buffer.supports(DispatchMode.RING_BUFFER, WaitStrategy.BLOCKING, 1024));
+        assertFalse(buffer.supports(DispatchMode.RING_BUFFER, WaitStrategy.BUSY_SPIN, 2048));
+        assertFalse(buffer.supports(DispatchMode.QUEUE, WaitStrategy.BUSY_SPIN, 1024));
+    }
+
+    @Test
+    public void aReplacingDispatcherWaitsForThePreviousOneToDrain() throws Exception {
+        AuditDispatchQueue<Integer> queue = new AuditDispatchQueue<>("test", this::blockingHandler);
+        queue.offer(1);
+        queue.offer(2);
+        AuditDispatcher<Integer> replacement = AuditDispatcher.replace(
+                queue, "test", dispatched::add, null, null, DispatchMode.RING_BUFFER, WaitStrategy.BLOCKING, 8);
+        try {
+            assertTrue(replacement.offer(3));
+            assertTrue(replacement.offer(4));
+            Thread.sleep(50);
+            assertTrue(dispatched.isEmpty());
+
+            release.countDown();
+            assertTrue(queue.awaitTermination(10, TimeUnit.SECONDS));
+            assertTrue(replacement.awaitIdle(10, TimeUnit.SECONDS));
+            assertEquals(Arrays.asList(1, 2, 3, 4), dispatched);
+        } finally {
+            replacement.shutdown();
+        }
+    }
+
+    private void blockWorkerOn(int first) throws InterruptedException {
+        buffer.offer(first);
+        // wait for the dispatcher thread to take the first entry, so the buffer is empty again
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (buffer.getSize() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private void blockingHandler(Integer value) {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dispatched.add(value);
+    }
+}
@@ -1,13 +1,16 @@
 package hudson.plugins.audit_trail;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import hudson.ExtensionList;
 import hudson.Util;
 import hudson.model.Cause;
 import hudson.model.FreeStyleProject;
 import java.io.File;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import org.htmlunit.FailingHttpStatusCodeException;
 import org.htmlunit.HttpMethod;
@@ -51,6 +54,7 @@ public class AuditTrailFilterTest {
             // see https://issues.jenkins-ci.org/browse/JENKINS-21311
         }
 
+        SimpleAuditTrailPluginConfiguratorHelper.waitForAuditEvents();
         String log = Util.loadFile(new File(tmpDir.getRoot(), "test.log.0"), StandardCharsets.UTF_8);
         assertTrue(
                 "logged actions: " + log,
@@ -78,6 +82,7 @@ public class AuditTrailFilterTest {
         wc.waitForBackgroundJavaScript(50);
         j.submit(form);
 
+        SimpleAuditTrailPluginConfiguratorHelper.waitForAuditEvents();
         String log = Util.loadFile(new File(tmpDir.getRoot(), "create-item.log.0"), StandardCharsets.UTF_8);
         assertTrue(
                 "logged actions: " + log,
@@ -85,4 +90,25 @@ public class AuditTrailFilterTest {
                         .matcher(log)
                         .matches());
     }
+
+    @Test
+    public void onlyMatchingRequestsAreHandedOverToTheDispatcher() throws Exception {
+        File logFile = new File(tmpDir.getRoot(), "dispatch.log");
+        JenkinsRule.WebClient wc = j.createWebClient();
+        new SimpleAuditTrailPluginConfiguratorHelper(logFile).sendConfiguration(j, wc);
+        FreeStyleProject job = j.createFreeStyleProject("test-job");
+        AuditDispatcher<AuditRequestSnapshot> queue =
+                ExtensionList.lookupSingleton(AuditTrailFilter.class).getDispatchQueue();
+        assertTrue(queue.awaitIdle(LONG_DELAY, TimeUnit.MILLISECONDS));
+        long processed = queue.getProcessedCount();
+
+        wc.goTo("api/json", "application/json");
+        wc.goTo(job.getUrl());
+        assertTrue(queue.awaitIdle(LONG_DELAY, TimeUnit.MILLISECONDS));
+        assertEquals(processed, queue.getProcessedCount());
+
+        wc.getPage(new WebRequest(wc.createCrumbedUrl(job.getUrl() + "enable"), HttpMethod.POST));
+        assertTrue(queue.awaitIdle(LONG_DELAY, TimeUnit.MILLISECONDS));
+        assertEquals(processed + 1, queue.getProcessedCount());
+    }
 }
@@ -46,6 +46,7 @@ public class AuditTrailRunListenerFreestyleTest {
             freestyle.save();
 
             freestyle.scheduleBuild2(0).get();
+            SimpleAuditTrailPluginConfiguratorHelper.waitForAuditEvents();
             var log = Util.loadFile(new File(rootDir, logFileName + ".0"), StandardCharsets.UTF_8);
             assertThat(log, containsString("slave0"));
         });
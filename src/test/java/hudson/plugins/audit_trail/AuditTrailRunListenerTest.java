@@ -54,6 +54,7 @@ public class AuditTrailRunListenerTest {
                 new BooleanParameterDefinition("booleanParam", false, "")));
         job.scheduleBuild2(0, new Cause.UserIdCause()).get();
 
+        SimpleAuditTrailPluginConfiguratorHelper.waitForAuditEvents();
         String log = Util.loadFile(new File(tmpDir.getRoot(), logFileName + ".0"), StandardCharsets.UTF_8);
         assertTrue(
                 "logged actions: " + log,
@@ -75,6 +76,7 @@ public class AuditTrailRunListenerTest {
         FreeStyleProject job = j.createFreeStyleProject("test-job");
         job.scheduleBuild2(0, new Cause.UserIdCause()).get();
 
+        SimpleAuditTrailPluginConfiguratorHelper.waitForAuditEvents();
         String log = Util.loadFile(new File(tmpDir.getRoot(), logFileName + ".0"), StandardCharsets.UTF_8);
         assertTrue(
                 "logged actions: " + log,
@@ -96,6 +98,7 @@ public class AuditTrailRunListenerTest {
                 new ParametersDefinitionProperty(new PasswordParameterDefinition("passParam", "thisIsASecret", "")));
         job.scheduleBuild2(0, new Cause.UserIdCause()).get();
 
+        SimpleAuditTrailPluginConfiguratorHelper.waitForAuditEvents();
         String log = Util.loadFile(new File(tmpDir.getRoot(), logFileName + ".0"), StandardCharsets.UTF_8);
         assertTrue(
                 "logged actions: " + log,
@@ -119,6 +122,7 @@ public class AuditTrailRunListenerTest {
                 new ParametersDefinitionProperty(new PasswordParameterDefinition("passParam", "thisIsASecret", "")));
         job.scheduleBuild2(0, new Cause.UserIdCause()).get();
 
+        SimpleAuditTrailPluginConfiguratorHelper.waitForAuditEvents();
         String log = Util.loadFile(new File(tmpDir.getRoot(), logFileName + ".0"), StandardCharsets.UTF_8);
         assertTrue(log.isEmpty());
     }
@@ -176,6 +180,7 @@ public class AuditTrailRunListenerTest {
 
         System.out.println(run.getLog());
 
+        SimpleAuditTrailPluginConfiguratorHelper.waitForAuditEvents();
         var log = Util.loadFile(new File(tmpDir.getRoot(), logFileName + ".0"), StandardCharsets.UTF_8);
 
         // the API creates agents with name slaveN
@@ -223,6 +228,7 @@ public class AuditTrailRunListenerTest {
         workflowJob.save();
         workflowJob.scheduleBuild2(0).get();
 
+        SimpleAuditTrailPluginConfiguratorHelper.waitForAuditEvents();
         var log = Util.loadFile(new File(tmpDir.getRoot(), logFileName + ".0"), StandardCharsets.UTF_8);
 
         assertThat(log, containsString("Built-In Node"));
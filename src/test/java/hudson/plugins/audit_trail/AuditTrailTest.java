@@ -183,5 +183,6 @@ public class AuditTrailTest {
         job.scheduleBuild2(0, new Cause.UserIdCause()).get();
         JenkinsRule.WebClient wc = j.createWebClient();
         wc.getPage(new WebRequest(wc.createCrumbedUrl(job.getUrl() + "enable"), HttpMethod.POST));
+        SimpleAuditTrailPluginConfiguratorHelper.waitForAuditEvents();
     }
 }
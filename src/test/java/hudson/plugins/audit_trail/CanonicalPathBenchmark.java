@@ -0,0 +1,42 @@
+package hudson.plugins.audit_trail;
+
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares {@link AuditTrailFilter#canonicalPath(String)} with the implementation copied from Stapler. The
+ * {@code gc.alloc.rate.norm} reported by the GC profiler gives the bytes allocated per invocation.
+ */
+@JmhBenchmark
+@State(Scope.Benchmark)
+public class CanonicalPathBenchmark {
+
+    private static final String NOT_CANONICAL = "/static/forged/..//job/folder/./job/pipeline/configSubmit";
+
+    @Benchmark
+    public void stapler(Blackhole blackhole) {
+        for (String uri : UriPatternBenchmark.URIS) {
+            blackhole.consume(CanonicalPathTest.staplerCanonicalPath(uri));
+        }
+    }
+
+    @Benchmark
+    public void singlePass(Blackhole blackhole) {
+        for (String uri : UriPatternBenchmark.URIS) {
+            blackhole.consume(AuditTrailFilter.canonicalPath(uri));
+        }
+    }
+
+    @Benchmark
+    public void singlePassNotCanonical(Blackhole blackhole) {
+        blackhole.consume(AuditTrailFilter.canonicalPath(NOT_CANONICAL));
+    }
+
+    @Benchmark
+    public void staplerNotCanonical(Blackhole blackhole) {
+        blackhole.consume(CanonicalPathTest.staplerCanonicalPath(NOT_CANONICAL));
+    }
+}
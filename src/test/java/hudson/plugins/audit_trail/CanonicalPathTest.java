@@ -0,0 +1,127 @@
+package hudson.plugins.audit_trail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.jvnet.hudson.test.Issue;
+
+/**
+ * Differential tests of {@link AuditTrailFilter#canonicalPath(String)} against the implementation copied from Stapler.
+ */
+@Issue("SECURITY-1815")
+public class CanonicalPathTest {
+
+    private static final char[] ALPHABET = {'/', '.', 'a', 'b'};
+
+    @Test
+    public void knownPaths() {
+        List<String> paths = Arrays.asList(
+                "",
+                "/",
+                "//",
+                ".",
+                "..",
+                "/..",
+                "/../",
+                "a/..",
+                "a/../",
+                "/job/test/configSubmit",
+                "/job/test/configSubmit/",
+                "/job/test//configSubmit",
+                "//job/test/configSubmit",
+                "/job/test/configSubmit//",
+                "/job/./test/configSubmit",
+                "/job/test/../other/configSubmit",
+                "/static/forged/..//job/test/doDelete",
+                "/job/test/.../configSubmit",
+                "/job/test/.hidden/..x/x..",
+                "/../../job/test",
+                "job/test/../../..");
+        for (String path : paths) {
+            assertEquals(path, staplerCanonicalPath(path), AuditTrailFilter.canonicalPath(path));
+        }
+    }
+
+    @Test
+    public void everyShortPath() {
+        for (int length = 0; length <= 8; length++) {
+            char[] path = new char[length];
+            int combinations = 1 << (2 * length);
+            for (int combination = 0; combination < combinations; combination++) {
+                for (int i = 0; i < length; i++) {
+                    path[i] = ALPHABET[(combination >> (2 * i)) & 3];
+                }
+                String p = new String(path);
+                assertEquals(p, staplerCanonicalPath(p), AuditTrailFilter.canonicalPath(p));
+            }
+        }
+    }
+
+    @Test
+    public void randomPaths() {
+        Random random = new Random(1815);
+        String[] segments = {"", ".", "..", "...", "job", "configSubmit", ".a", "a."};
+        for (int run = 0; run < 100_000; run++) {
+            StringBuilder path = new StringBuilder();
+            int count = random.nextInt(12);
+            for (int i = 0; i < count; i++) {
+                if (i > 0 || random.nextBoolean()) {
+                    path.append('/');
+                }
+                path.append(segments[random.nextInt(segments.length)]);
+            }
+            if (random.nextBoolean()) {
+                path.append('/');
+            }
+            String p = path.toString();
+            assertEquals(p, staplerCanonicalPath(p), AuditTrailFilter.canonicalPath(p));
+        }
+    }
+
+    @Test
+    public void canonicalPathsAreReturnedAsIs() {
+        String path = "/job/test/configSubmit/";
+        assertSame(path, AuditTrailFilter.canonicalPath(path));
+    }
+
+    // Copied from Stapler#canonicalPath
+    static String staplerCanonicalPath(String path) {
+        List<String> r = new ArrayList<>(Arrays.asList(path.split("/+")));
+        for (int i = 0; i < r.size(); ) {
+            if (r.get(i).length() == 0 || r.get(i).equals(".")) {
+                // empty token occurs for example, "".split("/+") is [""]
+                r.remove(i);
+            } else if (r.get(i).equals("..")) {
+                // i==0 means this is a broken URI.
+                r.remove(i);
+                if (i > 0) {
+                    r.remove(i - 1);
+                    i--;
+                }
+            } else {
+                i++;
+            }
+        }
+
+        StringBuilder buf = new StringBuilder();
+        if (path.startsWith("/")) {
+            buf.append('/');
+        }
+        boolean first = true;
+        for (String token : r) {
+            if (!first) buf.append('/');
+            else first = false;
+            buf.append(token);
+        }
+        // translation: if (path.endsWith("/") && !buf.endsWith("/"))
+        if (path.endsWith("/") && (buf.length() == 0 || buf.charAt(buf.length() - 1) != '/')) {
+            buf.append('/');
+        }
+        return buf.toString();
+    }
+}
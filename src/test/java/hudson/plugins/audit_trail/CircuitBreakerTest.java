@@ -0,0 +1,67 @@
+package hudson.plugins.audit_trail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void circuitOpensAfterTheThresholdAndClosesOnceATrialSucceeds() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 3, 100, 400);
+        for (int i = 0; i < 2; i++) {
+            assertTrue(breaker.acquire());
+            breaker.recordFailure(new IOException("refused"));
+            assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        }
+        assertTrue(breaker.acquire());
+        breaker.recordFailure(new IOException("refused"));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getOpenCount());
+        assertFalse(breaker.tryAcquire());
+
+        // the trial is let through once the backoff elapsed, a single one at a time
+        assertTrue(breaker.acquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        breaker.recordFailure(new IOException("still refused"));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals("java.io.IOException: still refused", breaker.getLastError());
+
+        assertTrue(breaker.acquire());
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getConsecutiveFailures());
+        assertEquals(4, breaker.getFailureCount());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void backoffGrowsExponentiallyWithJitterUpToTheMaximum() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 100, 1000, 4000);
+        long[] maximums = {1000, 2000, 4000, 4000};
+        for (long maximum : maximums) {
+            breaker.recordFailure(new IOException("refused"));
+            long delay = breaker.getRetryDelay();
+            assertTrue(delay + " > " + maximum, delay <= maximum);
+            // jittered over the second half of the backoff, some time having passed since
+            assertTrue(delay + " < " + maximum / 2, delay >= maximum / 2 - 100);
+        }
+    }
+
+    @Test
+    public void releasingTheBreakerGivesUpTheHeldAttempts() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 60000, 60000);
+        breaker.recordFailure(new IOException("refused"));
+        boolean[] acquired = {true};
+        Thread delivery = new Thread(() -> acquired[0] = breaker.acquire());
+        delivery.start();
+        breaker.release();
+        delivery.join(5000);
+        assertFalse(delivery.isAlive());
+        assertFalse(acquired[0]);
+    }
+}
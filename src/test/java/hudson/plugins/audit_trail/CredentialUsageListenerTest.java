@@ -38,6 +38,7 @@ public class CredentialUsageListenerTest {
                 new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, id, "description", "username", "password");
         CredentialsProvider.track(job, creds);
 
+        SimpleAuditTrailPluginConfiguratorHelper.waitForAuditEvents();
         String log = Util.loadFile(new File(tmpDir.getRoot(), logFileName + ".0"), StandardCharsets.UTF_8);
         assertTrue(
                 "logged actions: " + log,
@@ -60,6 +61,7 @@ public class CredentialUsageListenerTest {
                 new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, id, "description", "username", "password");
         CredentialsProvider.track(dummyAgent, creds);
 
+        SimpleAuditTrailPluginConfiguratorHelper.waitForAuditEvents();
         String log = Util.loadFile(new File(tmpDir.getRoot(), logFileName + ".0"), StandardCharsets.UTF_8);
         assertTrue(
                 "logged actions: " + log,
@@ -81,6 +83,7 @@ public class CredentialUsageListenerTest {
         Credentials creds =
                 new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, id, "description", "username", "password");
         CredentialsProvider.track(item, creds);
+        SimpleAuditTrailPluginConfiguratorHelper.waitForAuditEvents();
         String log = Util.loadFile(new File(tmpDir.getRoot(), logFileName + ".0"), StandardCharsets.UTF_8);
         assertTrue(
                 "logged actions: " + log,
@@ -104,6 +107,7 @@ public class CredentialUsageListenerTest {
                 new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, id, "description", "username", "password");
         CredentialsProvider.track(job, creds);
 
+        SimpleAuditTrailPluginConfiguratorHelper.waitForAuditEvents();
         String log = Util.loadFile(new File(tmpDir.getRoot(), logFileName + ".0"), StandardCharsets.UTF_8);
         assertTrue(log.isEmpty());
     }
@@ -0,0 +1,75 @@
+package hudson.plugins.audit_trail;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Compares the cost, for concurrent producers, of handing audit entries over to a dispatcher thread: through the
+ * single thread executor the filter used to submit a task to per request, the {@link AuditDispatchQueue} and the
+ * {@link AuditRingBuffer} with each {@link WaitStrategy}. The {@code gc.alloc.rate.norm} reported by the GC profiler
+ * gives the bytes allocated per hand-over.
+ */
+@JmhBenchmark
+@State(Scope.Benchmark)
+public class DispatchPipelineBenchmark {
+
+    @Param({"EXECUTOR", "QUEUE", "RING_BUFFER_BLOCKING", "RING_BUFFER_YIELDING", "RING_BUFFER_BUSY_SPIN"})
+    public String pipeline;
+
+    private final String entry = "/job/folder/job/pipeline/configSubmit";
+    private final Consumer<String> handler = value -> {};
+
+    private ExecutorService executor;
+    private AuditDispatcher<String> dispatcher;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (pipeline.equals("EXECUTOR")) {
+            executor = Executors.newSingleThreadExecutor();
+        } else if (pipeline.equals("QUEUE")) {
+            dispatcher = new AuditDispatchQueue<>("benchmark", handler);
+        } else {
+            WaitStrategy waitStrategy = WaitStrategy.valueOf(pipeline.substring("RING_BUFFER_".length()));
+            dispatcher =
+                    new AuditRingBuffer<>("benchmark", handler, AuditDispatchQueue.DEFAULT_CAPACITY, waitStrategy);
+        }
+        if (dispatcher != null) {
+            dispatcher.configure(
+                    AuditDispatchQueue.DEFAULT_CAPACITY,
+                    OverflowPolicy.BLOCK,
+                    AuditDispatchQueue.DEFAULT_BLOCK_TIMEOUT);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } else {
+            dispatcher.shutdown();
+            dispatcher.awaitIdle(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean handOver() {
+        if (executor != null) {
+            executor.execute(() -> handler.accept(entry));
+            return true;
+        }
+        return dispatcher.offer(entry);
+    }
+}
@@ -1,6 +1,11 @@
 package hudson.plugins.audit_trail;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import jenkins.model.GlobalConfiguration;
@@ -48,4 +53,80 @@ public class ElasticSearchAuditLoggerTest {
         assertEquals(esUrl, auditLogger.getElasticSearchSender().getUrl());
         assertEquals(true, auditLogger.getElasticSearchSender().getSkipCertificateValidation());
     }
+
+    @Test
+    public void requestCompressionIsAppliedToTheSender() throws Exception {
+        ElasticSearchAuditLogger auditLogger = new ElasticSearchAuditLogger(esUrl, true);
+        auditLogger.setCompressRequests(true);
+        auditLogger.configure();
+        assertTrue(auditLogger.getElasticSearchSender().isCompressRequests());
+
+        auditLogger.setCompressRequests(false);
+        assertFalse(auditLogger.getElasticSearchSender().isCompressRequests());
+    }
+
+    @Test
+    public void asyncSettingsSelectTheClientOfTheSender() throws Exception {
+        ElasticSearchAuditLogger auditLogger = new ElasticSearchAuditLogger(esUrl, true);
+        auditLogger.configure();
+        assertFalse(auditLogger.getElasticSearchSender().isAsync());
+
+        auditLogger.setAsync(true);
+        auditLogger.setMaxInFlightRequests(0);
+        auditLogger.setHttp2(true);
+        auditLogger.configure();
+        assertEquals(ElasticSearchAuditLogger.DEFAULT_MAX_IN_FLIGHT_REQUESTS, auditLogger.getMaxInFlightRequests());
+        assertTrue(auditLogger.getElasticSearchSender().isAsync());
+        assertEquals(0, auditLogger.getInFlightRequestCount());
+        auditLogger.cleanUp();
+    }
+
+    @Test
+    public void equalLoggersHaveTheSameHashCode() {
+        ElasticSearchAuditLogger auditLogger = new ElasticSearchAuditLogger(esUrl, true);
+        ElasticSearchAuditLogger other = new ElasticSearchAuditLogger(esUrl, true);
+        for (ElasticSearchAuditLogger logger : new ElasticSearchAuditLogger[] {auditLogger, other}) {
+            logger.setBulk(true);
+            logger.setCompressRequests(true);
+            logger.setAsync(true);
+            logger.setMaxConnections(2);
+            logger.setSocketTimeout(5000);
+        }
+        assertEquals(auditLogger, other);
+        assertEquals(auditLogger.hashCode(), other.hashCode());
+
+        other.setSocketTimeout(6000);
+        assertNotEquals(auditLogger, other);
+    }
+
+    @Test
+    public void startingABoundLoggerCreatesItsSender() {
+        ElasticSearchAuditLogger auditLogger = new ElasticSearchAuditLogger(esUrl, true);
+        auditLogger.setWarmUpConnections(2);
+        assertNull(auditLogger.getElasticSearchSender());
+
+        auditLogger.start();
+        ElasticSearchAuditLogger.ElasticSearchSender sender = auditLogger.getElasticSearchSender();
+        assertNotNull(sender);
+        auditLogger.start();
+        assertSame(sender, auditLogger.getElasticSearchSender());
+        auditLogger.cleanUp();
+    }
+
+    @Test
+    public void connectionSettingsFallBackToTheirDefaults() {
+        ElasticSearchAuditLogger auditLogger = new ElasticSearchAuditLogger(esUrl, true);
+        auditLogger.setMaxConnections(2);
+        auditLogger.setMaxConnectionsPerRoute(8);
+        auditLogger.setSocketTimeout(0);
+        auditLogger.setConnectionTimeToLive(300000);
+
+        ElasticSearchAuditLogger.ElasticSearchSender.Connections connections = auditLogger.getConnections();
+        assertEquals(2, connections.maxTotal);
+        assertEquals(2, connections.maxPerRoute);
+        assertEquals(ElasticSearchAuditLogger.DEFAULT_SOCKET_TIMEOUT, connections.socketTimeout);
+        assertEquals(ElasticSearchAuditLogger.DEFAULT_CONNECT_TIMEOUT, connections.connectTimeout);
+        assertEquals(ElasticSearchAuditLogger.DEFAULT_IDLE_TIMEOUT, connections.idleTimeout);
+        assertEquals(300000, connections.timeToLive);
+    }
 }
@@ -0,0 +1,166 @@
+package hudson.plugins.audit_trail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import org.apache.hc.client5.http.entity.GzipCompressingEntity;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.nio.DataStreamChannel;
+import org.junit.Test;
+
+public class ElasticSearchBulkTest {
+
+    @Test
+    public void bulkEndpointIsTheOneOfTheIndex() throws Exception {
+        assertEquals(
+                "https://localhost:9200/myindex/_bulk",
+                ElasticSearchBulk.bulkUrl("https://localhost:9200/myindex/jenkins/"));
+        assertEquals("https://localhost/myindex/_bulk", ElasticSearchBulk.bulkUrl("https://localhost/myindex"));
+        assertEquals(
+                "https://localhost/myindex/_bulk?pipeline=audit&refresh=wait_for",
+                ElasticSearchBulk.bulkUrl("https://localhost/myindex/_doc?pipeline=audit&refresh=wait_for"));
+        assertEquals(
+                "{\"index\":{\"_type\":\"jenkins\"}}\n",
+                new String(ElasticSearchBulk.actionLine("https://localhost/myindex/jenkins"), StandardCharsets.UTF_8));
+        assertEquals(
+                "{\"index\":{}}\n",
+                new String(ElasticSearchBulk.actionLine("https://localhost/myindex/_doc/"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void bulkIsFullOnceEitherLimitIsReached() {
+        ElasticSearchBulk bulk = new ElasticSearchBulk(3, 1024);
+        assertFalse(bulk.add(document("{\"message\":\"1\"}")));
+        assertFalse(bulk.add(document("{\"message\":\"2\"}")));
+        assertTrue(bulk.add(document("{\"message\":\"3\"}")));
+        assertEquals(3, bulk.drain().size());
+        assertTrue(bulk.isEmpty());
+
+        assertTrue(bulk.add(document("{\"message\":\"" + "x".repeat(1024) + "\"}")));
+    }
+
+    @Test
+    public void bodyIsAnActionLineBeforeEachDocument() throws Exception {
+        List<ElasticSearchBulk.Document> documents = Arrays.asList(
+                new ElasticSearchBulk.Document(document("{\"message\":\"1\"}")),
+                new ElasticSearchBulk.Document(document("{\"message\":\"2\"}").asReadOnlyBuffer()));
+        NdjsonEntity entity = new NdjsonEntity(documents, "{\"index\":{}}\n".getBytes(StandardCharsets.UTF_8));
+        String expected = "{\"index\":{}}\n{\"message\":\"1\"}\n{\"index\":{}}\n{\"message\":\"2\"}\n";
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        entity.writeTo(body);
+        assertEquals(expected, body.toString(StandardCharsets.UTF_8));
+        assertEquals(expected.length(), entity.getContentLength());
+
+        // written again when the request is retried
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        new GzipCompressingEntity(entity).writeTo(gzipped);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.toByteArray()))) {
+            assertEquals(expected, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void asynchronousBodyIsStreamedFromTheDocuments() throws Exception {
+        List<ElasticSearchBulk.Document> documents = new ArrayList<>();
+        StringBuilder expected = new StringBuilder();
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            String json = "{\"message\":\"" + Long.toHexString(random.nextLong()) + "\"}";
+            documents.add(new ElasticSearchBulk.Document(document(json)));
+            expected.append("{\"index\":{}}\n").append(json).append('\n');
+        }
+        NdjsonEntity entity = new NdjsonEntity(documents, "{\"index\":{}}\n".getBytes(StandardCharsets.UTF_8));
+
+        BufferEntityProducer plain = new BufferEntityProducer(entity.getBuffers(), NdjsonEntity.NDJSON, false);
+        assertEquals(expected.length(), plain.getContentLength());
+        assertEquals(expected.toString(), new String(produce(plain), StandardCharsets.UTF_8));
+
+        BufferEntityProducer gzipped = new BufferEntityProducer(entity.getBuffers(), NdjsonEntity.NDJSON, true);
+        assertEquals("gzip", gzipped.getContentEncoding());
+        for (int attempt = 0; attempt < 2; attempt++) {
+            // produced again when the request is retried
+            byte[] body = produce(gzipped);
+            gzipped.releaseResources();
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                assertEquals(expected.toString(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * @return the body written to a connection accepting a few bytes at a time
+     */
+    private static byte[] produce(BufferEntityProducer producer) throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        boolean[] ended = new boolean[1];
+        DataStreamChannel channel = new DataStreamChannel() {
+            @Override
+            public void requestOutput() {}
+
+            @Override
+            public int write(ByteBuffer src) {
+                int count = Math.min(src.remaining(), 1000);
+                for (int i = 0; i < count; i++) {
+                    body.write(src.get());
+                }
+                return count;
+            }
+
+            @Override
+            public void endStream() {
+                ended[0] = true;
+            }
+
+            @Override
+            public void endStream(List<? extends Header> trailers) {
+                endStream();
+            }
+        };
+        for (int i = 0; i < 100_000 && !ended[0]; i++) {
+            producer.produce(channel);
+        }
+        assertTrue(ended[0]);
+        return body.toByteArray();
+    }
+
+    @Test
+    public void onlyTransientFailuresAreRetried() {
+        List<ElasticSearchBulk.Document> sent = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ElasticSearchBulk.Document document = new ElasticSearchBulk.Document(document("{}"));
+            document.attempts = 1;
+            sent.add(document);
+        }
+        sent.get(3).attempts = ElasticSearchBulk.MAX_ATTEMPTS;
+        String response = "{\"took\":3,\"errors\":true,\"items\":["
+                + "{\"index\":{\"status\":201}},"
+                + "{\"index\":{\"status\":429,\"error\":{\"type\":\"es_rejected_execution_exception\"}}},"
+                + "{\"index\":{\"status\":400,\"error\":{\"type\":\"mapper_parsing_exception\"}}},"
+                + "{\"index\":{\"status\":503,\"error\":{\"type\":\"unavailable_shards_exception\"}}}]}";
+        List<ElasticSearchBulk.Document> dropped = new ArrayList<>();
+
+        List<ElasticSearchBulk.Document> failed = ElasticSearchBulk.failed(sent, response, dropped);
+
+        assertEquals(1, failed.size());
+        assertSame(sent.get(1), failed.get(0));
+        assertEquals(Arrays.asList(sent.get(2), sent.get(3)), dropped);
+        String success = "{\"took\":3,\"errors\":false,\"items\":[]}";
+        assertTrue(ElasticSearchBulk.failed(sent, success, dropped).isEmpty());
+    }
+
+    private static ByteBuffer document(String json) {
+        return ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,112 @@
+package hudson.plugins.audit_trail;
+
+import static hudson.plugins.audit_trail.AuditTrailPlugin.DEFAULT_PATTERN;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+public class KeywordPrefilterTest {
+
+    private static final List<String> PATTERNS = Arrays.asList(
+            DEFAULT_PATTERN,
+            ".*/(?:configSubmit|doDelete|postBuildResult|cancelQueue|stop|toggleLogKeep|doWipeOutWorkspace|createItem)",
+            "/job/[^/]+/configSubmit/?",
+            ".*/(?<action>enable|disable)/?",
+            ".*/job/.*/build.*",
+            ".*\\/do(?:Delete|Rename)\\/?.*",
+            ".*(?:stop|exit)+.*",
+            ".*/(?i)configsubmit.*",
+            "(?i).*/CONFIGSUBMIT.*",
+            ".*/\\QconfigSubmit\\E.*",
+            ".*/configSubmit|.*/doDelete",
+            ".*/(?:configSubmit|)/?.*",
+            ".*/(?=config)configSubmit.*",
+            ".*\\p{Alpha}+/doDelete.*",
+            ".*/do[Dd]elete.*",
+            "(.*)/\\1",
+            ".*",
+            "");
+
+    private static final List<String> URIS = Arrays.asList(
+            "",
+            "/",
+            "/configSubmit",
+            "/job/test/configSubmit",
+            "/job/test/configSubmit/",
+            "/job/test/CONFIGSUBMIT",
+            "/job/test/configsubmit/foo",
+            "/job/test/1/stop",
+            "/job/test/1/stopped",
+            "/job/test/enable",
+            "/job/test/disable/",
+            "/job/test/doDelete",
+            "/job/test/dodelete",
+            "/job/test/doRename",
+            "/job/test/build",
+            "/job/test/buildWithParameters",
+            "/job/test/lastBuild/console",
+            "/static/abc/jsbundles/app.js",
+            "/ajaxBuildQueue",
+            "/createItem",
+            "/view/all/createItem",
+            "/queue/cancelItem",
+            "/safeExit",
+            "/exit",
+            "/job/ex/job/it/",
+            "/job/\u00e9t\u00e9/configSubmit");
+
+    @Test
+    public void keywordsAreExtractedFromTheDefaultPattern() {
+        KeywordPrefilter prefilter = KeywordPrefilter.forPattern(DEFAULT_PATTERN);
+        assertNotNull(prefilter);
+        assertEquals(new HashSet<>(AuditTrailPlugin.getKnownKeywords()), new HashSet<>(prefilter.getKeywords()));
+    }
+
+    @Test
+    public void theLongestRequiredLiteralIsKept() {
+        assertEquals(Collections.singleton("/build"), KeywordPrefilter.extractRequiredLiterals(".*/job/.*/build.*"));
+        assertEquals(
+                new HashSet<>(Arrays.asList("Delete", "Rename")),
+                KeywordPrefilter.extractRequiredLiterals(".*\\/do(?:Delete|Rename)\\/?.*"));
+    }
+
+    @Test
+    public void unsupportedConstructsDisableTheExtraction() {
+        assertNull(KeywordPrefilter.forPattern(".*/configSubmit|.*/doDelete"));
+        assertNull(KeywordPrefilter.forPattern("(?i).*/CONFIGSUBMIT.*"));
+        assertNull(KeywordPrefilter.forPattern(".*/\\QconfigSubmit\\E.*"));
+        assertNull(KeywordPrefilter.forPattern(".*(?:stop|exit)+.*"));
+        assertNull(KeywordPrefilter.forPattern(".*/(?:configSubmit|)/?.*"));
+        assertNull(KeywordPrefilter.forPattern(".*"));
+    }
+
+    @Test
+    public void automatonFindsOverlappingKeywords() {
+        KeywordPrefilter prefilter = KeywordPrefilter.of(Arrays.asList("he", "she", "his", "hers"));
+        assertTrue(prefilter.mightMatch("ushers"));
+        assertTrue(prefilter.mightMatch("ahishers"));
+        assertTrue(prefilter.mightMatch("she"));
+        assertFalse(prefilter.mightMatch("hxsxh"));
+        assertFalse(prefilter.mightMatch(""));
+    }
+
+    @Test
+    public void prefilteredPatternMatchesLikeThePlainPattern() {
+        for (String regex : PATTERNS) {
+            Pattern pattern = Pattern.compile(regex);
+            PrefilteredPattern prefiltered = PrefilteredPattern.compile(regex);
+            for (String uri : URIS) {
+                assertEquals(regex + " on " + uri, pattern.matcher(uri).matches(), prefiltered.matches(uri));
+            }
+        }
+    }
+}
@@ -1,7 +1,12 @@
 package hudson.plugins.audit_trail;
 
 import hudson.EnvVars;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.FileHandler;
+import net.sf.json.JSONObject;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -38,4 +43,67 @@ public class LogFileAuditLoggerTest {
         LogFileAuditLogger logger = new LogFileAuditLogger(logFile, 5, 1, null);
         Assert.assertEquals(rootFolder.resolve("expandMe").toString(), logger.getLog());
     }
+
+    @Test
+    public void jsonLinesWriteEachEventOnASingleLine() throws Exception {
+        Path logFile = folder.getRoot().toPath().resolve("file");
+        LogFileAuditLogger logger = new LogFileAuditLogger(logFile.toString(), 5, 1, null);
+        logger.setFormat(LogFormat.JSON_LINES);
+        AuditEvent event = AuditEvent.builder(AuditEvent.Type.SCRIPT_EXECUTION, "Script Console Controller")
+                .timestamp(1711893600123L)
+                .user("alice")
+                .field("script", "println 'a'\nprintln 'b'")
+                .build();
+        logger.log(event);
+        logger.log("a message\non two lines");
+        logger.cleanUp();
+
+        List<String> lines = Files.readAllLines(logFile, StandardCharsets.UTF_8);
+        Assert.assertEquals(2, lines.size());
+        JSONObject json = JSONObject.fromObject(lines.get(0));
+        Assert.assertEquals(1711893600123L, json.getLong("timestamp"));
+        Assert.assertEquals("SCRIPT_EXECUTION", json.getString("type"));
+        Assert.assertEquals("Script Console Controller", json.getString("subject"));
+        Assert.assertEquals("alice", json.getString("user"));
+        Assert.assertEquals("println 'a'\nprintln 'b'", json.getJSONObject("fields").getString("script"));
+        Assert.assertEquals(
+                "{\"timestamp\":1711893600123," + AuditEventJson.toJson(event).substring(1), lines.get(0));
+        json = JSONObject.fromObject(lines.get(1));
+        Assert.assertEquals("a message\non two lines", json.getString("message"));
+        Assert.assertTrue(json.getLong("timestamp") > 0);
+    }
+
+    @Test
+    public void aMessageLoggedDirectlyIsWrittenRightAway() throws Exception {
+        Path logFile = folder.getRoot().toPath().resolve("file");
+        LogFileAuditLogger logger = new LogFileAuditLogger(logFile.toString(), 5, 1, null);
+        logger.setGroupCommit(true);
+
+        // logged without the event bus, which would end the batch
+        logger.log("a message");
+        List<String> lines = Files.readAllLines(logFile, StandardCharsets.UTF_8);
+        Assert.assertEquals(1, lines.size());
+        Assert.assertTrue(lines.get(0).endsWith("a message"));
+        logger.cleanUp();
+    }
+
+    @Test
+    public void settingsAreAppliedOnceBeforeTheNextEvent() throws Exception {
+        Path logFile = folder.getRoot().toPath().resolve("file");
+        LogFileAuditLogger logger = new LogFileAuditLogger(logFile.toString(), 5, 1, null);
+        FileHandler handler = logger.getHandler();
+        logger.setFormat(LogFormat.JSON_LINES);
+        logger.setGroupCommit(true);
+        logger.setDurability(Durability.PER_EVENT_TYPE);
+        logger.setIndexed(true);
+        // binding a form doesn't reopen the file for each setting
+        Assert.assertSame(handler, logger.getHandler());
+
+        logger.log("a message");
+        Assert.assertNull(logger.getHandler());
+        logger.cleanUp();
+        List<String> lines = Files.readAllLines(logFile, StandardCharsets.UTF_8);
+        Assert.assertEquals(1, lines.size());
+        Assert.assertEquals("a message", JSONObject.fromObject(lines.get(0)).getString("message"));
+    }
 }
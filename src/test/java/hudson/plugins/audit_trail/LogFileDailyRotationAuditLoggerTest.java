@@ -6,7 +6,13 @@ import hudson.Util;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.Collection;
 import org.apache.commons.io.FileUtils;
@@ -16,9 +22,6 @@ import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
-import org.mockito.Answers;
-import org.mockito.MockedStatic;
-import org.mockito.Mockito;
 
 public class LogFileDailyRotationAuditLoggerTest {
 
@@ -74,45 +77,39 @@ public class LogFileDailyRotationAuditLoggerTest {
      */
     @Test
     public void logFileProperlyRotatingInNextDayWithDailyRotation() throws IOException {
-        ZonedDateTime zonedDateTime1 = ZonedDateTime.now();
-        ZonedDateTime zonedDateTime2 = zonedDateTime1.plusDays(1);
-
-        try (MockedStatic<ZonedDateTime> mockedLocalDateTime = Mockito.mockStatic(
-                ZonedDateTime.class, Mockito.withSettings().defaultAnswer(Answers.CALLS_REAL_METHODS))) {
-            mockedLocalDateTime.when(ZonedDateTime::now).thenReturn(zonedDateTime1);
-            // Check that the log file is created with the corresponded format (Today date)
-            Path logFile = folder.getRoot().toPath().resolve("file");
-            LogFileDailyRotationAuditLogger logFileAuditLogger =
-                    new LogFileDailyRotationAuditLogger(logFile.toString(), 2, null);
-            logFileAuditLogger.log("configuringAFileLoggerRotatingDaily - line1");
-            Path logFileRotating = folder.getRoot().toPath().resolve(logFileAuditLogger.computePattern());
-            Assert.assertTrue(logFileRotating.toFile().exists());
-
-            // Check that there is ONLY one file generated at this point (Today date)
-            String directoryPath = logFile.toFile().getParent();
-            Collection<File> directoryFiles = FileUtils.listFiles(
-                    new File(directoryPath),
-                    new RegexFileFilter(".*" + logFile.toFile().getName()
-                            + LogFileDailyRotationAuditLogger.DAILY_ROTATING_FILE_REGEX_PATTERN),
-                    DirectoryFileFilter.DIRECTORY);
-            Assert.assertEquals(directoryFiles.size(), 1);
-
-            // Log something and check it appears in the logger file
-            String log = Util.loadFile(logFileRotating.toFile(), StandardCharsets.UTF_8);
-            Assert.assertTrue(log.contains("configuringAFileLoggerRotatingDaily - line1"));
-
-            // Increase +1 day
-            mockedLocalDateTime.when(ZonedDateTime::now).thenReturn(zonedDateTime2);
-
-            // Log something else
-            logFileAuditLogger.log("configuringAFileLoggerRotatingDaily - line2");
-
-            // Check that the corresponded is the ONLY one which appear on this file (Today +1)
-            logFileRotating = folder.getRoot().toPath().resolve(logFileAuditLogger.computePattern());
-            log = Util.loadFile(logFileRotating.toFile(), StandardCharsets.UTF_8);
-            Assert.assertTrue(log.contains("configuringAFileLoggerRotatingDaily - line2"));
-            Assert.assertFalse(log.contains("configuringAFileLoggerRotatingDaily - line1"));
-        }
+        MutableClock clock = new MutableClock(ZonedDateTime.now());
+        // Check that the log file is created with the corresponded format (Today date)
+        Path logFile = folder.getRoot().toPath().resolve("file");
+        LogFileDailyRotationAuditLogger logFileAuditLogger =
+                new LogFileDailyRotationAuditLogger(logFile.toString(), 2, null, clock);
+        logFileAuditLogger.log("configuringAFileLoggerRotatingDaily - line1");
+        Path logFileRotating = folder.getRoot().toPath().resolve(logFileAuditLogger.computePattern());
+        Assert.assertTrue(logFileRotating.toFile().exists());
+
+        // Check that there is ONLY one file generated at this point (Today date)
+        String directoryPath = logFile.toFile().getParent();
+        Collection<File> directoryFiles = FileUtils.listFiles(
+                new File(directoryPath),
+                new RegexFileFilter(".*" + logFile.toFile().getName()
+                        + LogFileDailyRotationAuditLogger.DAILY_ROTATING_FILE_REGEX_PATTERN),
+                DirectoryFileFilter.DIRECTORY);
+        Assert.assertEquals(directoryFiles.size(), 1);
+
+        // Log something and check it appears in the logger file
+        String log = Util.loadFile(logFileRotating.toFile(), StandardCharsets.UTF_8);
+        Assert.assertTrue(log.contains("configuringAFileLoggerRotatingDaily - line1"));
+
+        // Increase +1 day
+        clock.advance(Duration.ofDays(1));
+
+        // Log something else
+        logFileAuditLogger.log("configuringAFileLoggerRotatingDaily - line2");
+
+        // Check that the corresponded is the ONLY one which appear on this file (Today +1)
+        logFileRotating = folder.getRoot().toPath().resolve(logFileAuditLogger.computePattern());
+        log = Util.loadFile(logFileRotating.toFile(), StandardCharsets.UTF_8);
+        Assert.assertTrue(log.contains("configuringAFileLoggerRotatingDaily - line2"));
+        Assert.assertFalse(log.contains("configuringAFileLoggerRotatingDaily - line1"));
     }
 
     /**
@@ -122,59 +119,264 @@ public class LogFileDailyRotationAuditLoggerTest {
     public void oldLogFilesProperlyRemovedWithDailyRotation() throws IOException {
         // test seems to be flaky on Windows, let's skip it for now I have no Windows machine to debug
         assumeTrue(!System.getProperty("os.name").toLowerCase().contains("windows"));
-        ZonedDateTime zonedDateTime1 = ZonedDateTime.now();
-        ZonedDateTime zonedDateTime2 = zonedDateTime1.plusDays(1);
-        ZonedDateTime zonedDateTime3 = zonedDateTime1.plusDays(3);
-
-        try (MockedStatic<ZonedDateTime> mockedLocalDateTime = Mockito.mockStatic(
-                ZonedDateTime.class, Mockito.withSettings().defaultAnswer(Answers.CALLS_REAL_METHODS))) {
-            mockedLocalDateTime.when(ZonedDateTime::now).thenReturn(zonedDateTime1);
-            Path logFile = folder.getRoot().toPath().resolve("file");
-            LogFileDailyRotationAuditLogger logFileAuditLogger =
-                    new LogFileDailyRotationAuditLogger(logFile.toString(), 2, null);
-
-            // Today: Log something
-            logFileAuditLogger.log("configuringAFileLoggerRotatingDaily - line1");
-            File logFileRotating1 = folder.getRoot()
-                    .toPath()
-                    .resolve(logFileAuditLogger.computePattern())
-                    .toFile();
-
-            // Today+1 Log something
-            mockedLocalDateTime.when(ZonedDateTime::now).thenReturn(zonedDateTime2);
-            logFileAuditLogger.log("configuringAFileLoggerRotatingDaily - line2");
-            File logFileRotating2 = folder.getRoot()
-                    .toPath()
-                    .resolve(logFileAuditLogger.computePattern())
-                    .toFile();
-
-            // Today+2 Log something
-            mockedLocalDateTime.when(ZonedDateTime::now).thenReturn(zonedDateTime3);
-            logFileAuditLogger.log("configuringAFileLoggerRotatingDaily - line3");
-            File logFileRotating3 = folder.getRoot()
-                    .toPath()
-                    .resolve(logFileAuditLogger.computePattern())
-                    .toFile();
-
-            // Check that the oldest file got removed after rotation
-            Assert.assertFalse(logFileRotating1.exists());
-            Assert.assertTrue(logFileRotating2.exists());
-            Assert.assertTrue(logFileRotating3.exists());
-
-            // Check that that files contains their expected content
-            String log = Util.loadFile(logFileRotating2, StandardCharsets.UTF_8);
-            Assert.assertTrue(log.contains("configuringAFileLoggerRotatingDaily - line2"));
-            log = Util.loadFile(logFileRotating3, StandardCharsets.UTF_8);
-            Assert.assertTrue(log.contains("configuringAFileLoggerRotatingDaily - line3"));
-
-            // Check that there are only two log files
-            String directoryPath = logFile.toFile().getParent();
-            Collection<File> directoryFiles = FileUtils.listFiles(
-                    new File(directoryPath),
-                    new RegexFileFilter(".*" + logFile.toFile().getName()
-                            + LogFileDailyRotationAuditLogger.DAILY_ROTATING_FILE_REGEX_PATTERN),
-                    DirectoryFileFilter.DIRECTORY);
-            Assert.assertEquals(directoryFiles.size(), 2);
+        MutableClock clock = new MutableClock(ZonedDateTime.now());
+        Path logFile = folder.getRoot().toPath().resolve("file");
+        LogFileDailyRotationAuditLogger logFileAuditLogger =
+                new LogFileDailyRotationAuditLogger(logFile.toString(), 2, null, clock);
+
+        // Today: Log something
+        logFileAuditLogger.log("configuringAFileLoggerRotatingDaily - line1");
+        File logFileRotating1 = folder.getRoot()
+                .toPath()
+                .resolve(logFileAuditLogger.computePattern())
+                .toFile();
+
+        // Today+1 Log something
+        clock.advance(Duration.ofDays(1));
+        logFileAuditLogger.log("configuringAFileLoggerRotatingDaily - line2");
+        File logFileRotating2 = folder.getRoot()
+                .toPath()
+                .resolve(logFileAuditLogger.computePattern())
+                .toFile();
+
+        // Today+2 Log something
+        clock.advance(Duration.ofDays(2));
+        logFileAuditLogger.log("configuringAFileLoggerRotatingDaily - line3");
+        File logFileRotating3 = folder.getRoot()
+                .toPath()
+                .resolve(logFileAuditLogger.computePattern())
+                .toFile();
+
+        // Check that the oldest file got removed after rotation
+        Assert.assertFalse(logFileRotating1.exists());
+        Assert.assertTrue(logFileRotating2.exists());
+        Assert.assertTrue(logFileRotating3.exists());
+
+        // Check that that files contains their expected content
+        String log = Util.loadFile(logFileRotating2, StandardCharsets.UTF_8);
+        Assert.assertTrue(log.contains("configuringAFileLoggerRotatingDaily - line2"));
+        log = Util.loadFile(logFileRotating3, StandardCharsets.UTF_8);
+        Assert.assertTrue(log.contains("configuringAFileLoggerRotatingDaily - line3"));
+
+        // Check that there are only two log files
+        String directoryPath = logFile.toFile().getParent();
+        Collection<File> directoryFiles = FileUtils.listFiles(
+                new File(directoryPath),
+                new RegexFileFilter(".*" + logFile.toFile().getName()
+                        + LogFileDailyRotationAuditLogger.DAILY_ROTATING_FILE_REGEX_PATTERN),
+                DirectoryFileFilter.DIRECTORY);
+        Assert.assertEquals(directoryFiles.size(), 2);
+    }
+
+    /**
+     * Ensures that shorter periods are aligned on midnight and named after their start
+     */
+    @Test
+    public void logFileRotatingEveryHour() throws IOException {
+        ZoneId zone = ZoneId.systemDefault();
+        MutableClock clock = new MutableClock(LocalDateTime.of(2024, 3, 12, 10, 42).atZone(zone));
+        Path logFile = folder.getRoot().toPath().resolve("file");
+        LogFileDailyRotationAuditLogger logFileAuditLogger =
+                new LogFileDailyRotationAuditLogger(logFile.toString(), 5, null, clock);
+        logFileAuditLogger.setRotationPeriod(60);
+        logFileAuditLogger.log("hourly - line1");
+        Assert.assertEquals(
+                folder.getRoot().toPath().resolve("file-2024-03-12-10-00").toString(),
+                logFileAuditLogger.computePattern());
+        // the file opened before the period was bound is not left behind
+        Assert.assertFalse(Files.exists(folder.getRoot().toPath().resolve("file-2024-03-12")));
+        AuditLogManifest manifest = AuditLogManifest.read(logFileAuditLogger.getManifestPath());
+        Assert.assertNotNull(manifest);
+        Assert.assertEquals(1, manifest.getEntries().size());
+
+        clock.advance(Duration.ofMinutes(17));
+        logFileAuditLogger.log("hourly - line2");
+        Assert.assertEquals(
+                folder.getRoot().toPath().resolve("file-2024-03-12-10-00").toString(),
+                logFileAuditLogger.computePattern());
+
+        clock.advance(Duration.ofMinutes(1));
+        logFileAuditLogger.log("hourly - line3");
+        Path logFileRotating = folder.getRoot().toPath().resolve("file-2024-03-12-11-00");
+        Assert.assertEquals(logFileRotating.toString(), logFileAuditLogger.computePattern());
+        String log = Util.loadFile(logFileRotating.toFile(), StandardCharsets.UTF_8);
+        Assert.assertTrue(log.contains("hourly - line3"));
+        Assert.assertFalse(log.contains("hourly - line2"));
+        logFileAuditLogger.cleanUp();
+    }
+
+    /**
+     * Ensures that a day shortened or lengthened by a daylight saving time change still starts at midnight
+     */
+    @Test
+    public void periodsStayAlignedOnMidnightAcrossDaylightSavingTimeChanges() {
+        ZoneId paris = ZoneId.of("Europe/Paris");
+        MutableClock clock = new MutableClock(LocalDateTime.of(2024, 3, 30, 12, 0).atZone(paris));
+        Path logFile = folder.getRoot().toPath().resolve("file");
+        LogFileDailyRotationAuditLogger logFileAuditLogger =
+                new LogFileDailyRotationAuditLogger(logFile.toString(), 5, null, clock);
+        ZonedDateTime dayBeforeTheChange = LocalDateTime.of(2024, 3, 30, 0, 0).atZone(paris);
+        ZonedDateTime next = logFileAuditLogger.nextPeriodStart(dayBeforeTheChange);
+        Assert.assertEquals(LocalDateTime.of(2024, 3, 31, 0, 0).atZone(paris), next);
+        Assert.assertEquals(
+                LocalDateTime.of(2024, 4, 1, 0, 0).atZone(paris), logFileAuditLogger.nextPeriodStart(next));
+        Assert.assertEquals(Duration.ofHours(23), Duration.between(next, logFileAuditLogger.nextPeriodStart(next)));
+        logFileAuditLogger.cleanUp();
+    }
+
+    /**
+     * Ensures that the file to reuse at startup is read from the manifest, and that the directory is only listed when
+     * the manifest is corrupt
+     */
+    @Test
+    public void latestFileIsReadFromTheManifestAndListedWhenItIsCorrupt() throws IOException {
+        MutableClock clock = new MutableClock(ZonedDateTime.now());
+        Path logFile = folder.getRoot().toPath().resolve("file");
+        LogFileDailyRotationAuditLogger logFileAuditLogger =
+                new LogFileDailyRotationAuditLogger(logFile.toString(), 5, null, clock);
+        String firstDay = logFileAuditLogger.computePattern();
+        clock.advance(Duration.ofDays(1));
+        logFileAuditLogger.log("manifest - line1");
+        String secondDay = logFileAuditLogger.computePattern();
+        logFileAuditLogger.cleanUp();
+        Assert.assertTrue(Files.exists(logFileAuditLogger.getManifestPath()));
+
+        // the order of the manifest prevails over the modification times
+        Assert.assertTrue(new File(firstDay).setLastModified(System.currentTimeMillis() + 60_000));
+        logFileAuditLogger = new LogFileDailyRotationAuditLogger(logFile.toString(), 5, null, clock);
+        Assert.assertEquals(secondDay, logFileAuditLogger.computePattern());
+        logFileAuditLogger.cleanUp();
+
+        // without a valid manifest, the most recently modified file is reused
+        Files.write(logFileAuditLogger.getManifestPath(), "corrupt".getBytes(StandardCharsets.UTF_8));
+        logFileAuditLogger = new LogFileDailyRotationAuditLogger(logFile.toString(), 5, null, clock);
+        Assert.assertEquals(firstDay, logFileAuditLogger.computePattern());
+        logFileAuditLogger.cleanUp();
+        AuditLogManifest manifest = AuditLogManifest.read(logFileAuditLogger.getManifestPath());
+        Assert.assertNotNull(manifest);
+        Assert.assertEquals(2, manifest.getEntries().size());
+    }
+
+    /**
+     * Ensures that rotated files are compressed in the background, and that compressed files count for the retention
+     */
+    @Test
+    public void rotatedFilesAreCompressedAndCountedByTheRetention() throws Exception {
+        MutableClock clock = new MutableClock(ZonedDateTime.now());
+        Path logFile = folder.getRoot().toPath().resolve("file");
+        LogFileDailyRotationAuditLogger logFileAuditLogger =
+                new LogFileDailyRotationAuditLogger(logFile.toString(), 2, null, clock);
+        logFileAuditLogger.setCompression(Compression.GZIP);
+        logFileAuditLogger.log("compression - line1");
+        File firstDay = new File(logFileAuditLogger.computePattern());
+        clock.advance(Duration.ofDays(1));
+        logFileAuditLogger.log("compression - line2");
+
+        // the manifest is updated once the file is compressed
+        String compressedName = firstDay.getName() + Compression.GZIP.getSuffix();
+        AuditLogManifest manifest = null;
+        for (int i = 0; i < 500; i++) {
+            manifest = AuditLogManifest.read(logFileAuditLogger.getManifestPath());
+            if (manifest != null && manifest.getEntries().get(0).name.equals(compressedName)) {
+                break;
+            }
+            Thread.sleep(10);
+        }
+        Assert.assertNotNull(manifest);
+        Assert.assertEquals(compressedName, manifest.getEntries().get(0).name);
+        File firstDayCompressed = new File(firstDay.getParentFile(), compressedName);
+        Assert.assertEquals(firstDayCompressed.length(), manifest.getEntries().get(0).size);
+        Assert.assertFalse(firstDay.exists());
+        Assert.assertEquals(1, logFileAuditLogger.getCompressedFileCount());
+
+        clock.advance(Duration.ofDays(1));
+        logFileAuditLogger.log("compression - line3");
+        Assert.assertFalse(firstDayCompressed.exists());
+        logFileAuditLogger.cleanUp();
+    }
+
+    /**
+     * Ensures that a file reaching the limit is rotated before the end of its period, the period going on in a new file
+     */
+    @Test
+    public void fileReachingTheLimitIsRotatedBeforeTheEndOfItsPeriod() throws IOException {
+        MutableClock clock = new MutableClock(ZonedDateTime.now());
+        Path logFile = folder.getRoot().toPath().resolve("file");
+        LogFileDailyRotationAuditLogger logFileAuditLogger =
+                new LogFileDailyRotationAuditLogger(logFile.toString(), 0, null, clock);
+        logFileAuditLogger.setLimit(1);
+        String firstPart = logFileAuditLogger.computePattern();
+        logFileAuditLogger.log("x".repeat(1024 * 1024));
+        logFileAuditLogger.log("limit - line2");
+        // the delivery thread flushes at the end of each batch
+        logFileAuditLogger.flush();
+        Assert.assertEquals(firstPart + ".1", logFileAuditLogger.computePattern());
+        String log = Util.loadFile(new File(logFileAuditLogger.computePattern()), StandardCharsets.UTF_8);
+        Assert.assertTrue(log.contains("limit - line2"));
+        logFileAuditLogger.cleanUp();
+
+        // restarting goes on with the latest file of the period
+        logFileAuditLogger = new LogFileDailyRotationAuditLogger(logFile.toString(), 0, null, clock);
+        Assert.assertEquals(firstPart + ".1", logFileAuditLogger.computePattern());
+
+        // the next period starts over
+        clock.advance(Duration.ofDays(1));
+        logFileAuditLogger.log("limit - line3");
+        Assert.assertFalse(logFileAuditLogger.computePattern().endsWith(".1"));
+        Assert.assertTrue(new File(firstPart).exists());
+        logFileAuditLogger.cleanUp();
+    }
+
+    /**
+     * Ensures that the rotation scheduled for the end of the period switches files without waiting for an event, and
+     * leaves a logger cleaned up meanwhile closed
+     */
+    @Test
+    public void scheduledRotationSkipsALoggerCleanedUp() {
+        MutableClock clock = new MutableClock(ZonedDateTime.now());
+        Path logFile = folder.getRoot().toPath().resolve("file");
+        LogFileDailyRotationAuditLogger logFileAuditLogger =
+                new LogFileDailyRotationAuditLogger(logFile.toString(), 5, null, clock);
+        logFileAuditLogger.start();
+        String firstDay = logFileAuditLogger.computePattern();
+        clock.advance(Duration.ofDays(1));
+        logFileAuditLogger.rotateOnTime();
+        String secondDay = logFileAuditLogger.computePattern();
+        Assert.assertNotEquals(firstDay, secondDay);
+        Assert.assertTrue(new File(secondDay).exists());
+
+        logFileAuditLogger.cleanUp();
+        clock.advance(Duration.ofDays(1));
+        logFileAuditLogger.rotateOnTime();
+        Assert.assertEquals(secondDay, logFileAuditLogger.computePattern());
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant instant;
+        private final ZoneId zone;
+
+        MutableClock(ZonedDateTime start) {
+            this.instant = start.toInstant();
+            this.zone = start.getZone();
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
         }
     }
 }
@@ -47,6 +47,7 @@ public class ScriptUsageListenerTest {
         when(req.getView(r.jenkins, "_scriptText.jelly")).thenReturn(view);
         r.jenkins.doScriptText(req, rsp);
 
+        SimpleAuditTrailPluginConfiguratorHelper.waitForAuditEvents();
         String log = Util.loadFile(new File(tmpDir.getRoot(), logFileName + ".0"), StandardCharsets.UTF_8);
         assertTrue(
                 "logged actions: " + log,
@@ -70,6 +71,7 @@ public class ScriptUsageListenerTest {
         InputStream scriptStream = new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8));
         cmd.main(new ArrayList<>(), Locale.ENGLISH, scriptStream, System.out, System.err);
 
+        SimpleAuditTrailPluginConfiguratorHelper.waitForAuditEvents();
         String log = Util.loadFile(new File(tmpDir.getRoot(), logFileName + ".0"), StandardCharsets.UTF_8);
         assertTrue(
                 "logged actions: " + log,
@@ -92,6 +94,7 @@ public class ScriptUsageListenerTest {
         InputStream scriptStream = new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8));
         cmd.main(new ArrayList<>(), Locale.ENGLISH, scriptStream, System.out, System.err);
 
+        SimpleAuditTrailPluginConfiguratorHelper.waitForAuditEvents();
         String log = Util.loadFile(new File(tmpDir.getRoot(), logFileName + ".0"), StandardCharsets.UTF_8);
         assertTrue(
                 "logged actions: " + log,
@@ -117,6 +120,7 @@ public class ScriptUsageListenerTest {
         InputStream scriptStream = new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8));
         cmd.main(new ArrayList<>(), Locale.ENGLISH, scriptStream, System.out, System.err);
 
+        SimpleAuditTrailPluginConfiguratorHelper.waitForAuditEvents();
         String log = Util.loadFile(new File(tmpDir.getRoot(), logFileName + ".0"), StandardCharsets.UTF_8);
         assertTrue(log.isEmpty());
     }
@@ -2,7 +2,9 @@ package hudson.plugins.audit_trail;
 
 import static hudson.plugins.audit_trail.LogFileAuditLogger.DEFAULT_LOG_SEPARATOR;
 
+import hudson.ExtensionList;
 import java.io.File;
+import java.util.concurrent.TimeUnit;
 import org.htmlunit.html.HtmlForm;
 import org.htmlunit.html.HtmlPage;
 import org.jvnet.hudson.test.JenkinsRule;
@@ -12,6 +14,7 @@ import org.jvnet.hudson.test.JenkinsRule;
  */
 public class SimpleAuditTrailPluginConfiguratorHelper {
     private static final int TIMEOUT = 2000;
+    private static final int AUDIT_EVENTS_TIMEOUT = 50000;
     private static final String LOG_LOCATION_INPUT_NAME = "_.log";
     private static final String LOG_FILE_SIZE_INPUT_NAME = "_.limit";
     private static final String LOG_FILE_COUNT_INPUT_NAME = "_.count";
@@ -78,4 +81,14 @@ public class SimpleAuditTrailPluginConfiguratorHelper {
         form.getInputByName(LOG_SCRIPT_USAGE_INPUT_NAME).setChecked(logScriptUsage);
         j.submit(form);
     }
+
+    /**
+     * Audit events are logged asynchronously, waits until the pending ones have been handed over to the loggers.
+     */
+    public static void waitForAuditEvents() throws InterruptedException {
+        ExtensionList.lookupSingleton(AuditTrailFilter.class)
+                .getDispatchQueue()
+                .awaitIdle(AUDIT_EVENTS_TIMEOUT, TimeUnit.MILLISECONDS);
+        AuditEventBus.get().awaitIdle(AUDIT_EVENTS_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
 }
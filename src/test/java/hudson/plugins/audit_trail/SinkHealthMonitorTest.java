@@ -0,0 +1,43 @@
+package hudson.plugins.audit_trail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SinkHealthMonitorTest {
+
+    @Mock
+    private AuditTrailPlugin plugin;
+
+    @InjectMocks
+    private SinkHealthMonitor monitor;
+
+    @Test
+    public void onlyLoggersWithAnOpenCircuitTriggerTheMonitor() {
+        CircuitBreaker breaker = new CircuitBreaker("syslog server localhost:514", 1, 60000, 60000);
+        AuditLogger remote = mock(AuditLogger.class);
+        when(remote.getCircuitBreaker()).thenReturn(breaker);
+        AuditLogger local = mock(AuditLogger.class);
+        when(plugin.getLoggers()).thenReturn(Arrays.asList(local, remote));
+        assertFalse(monitor.isActivated());
+
+        breaker.recordFailure(new IOException("Network is unreachable"));
+        assertTrue(monitor.isActivated());
+        assertEquals(Collections.singletonList(breaker), monitor.getOpenCircuits());
+
+        breaker.recordSuccess();
+        assertFalse(monitor.isActivated());
+    }
+}
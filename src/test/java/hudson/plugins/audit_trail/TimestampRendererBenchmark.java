@@ -0,0 +1,37 @@
+package hudson.plugins.audit_trail;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Compares, for concurrent loggers, the synchronized {@link SimpleDateFormat} the file loggers used to render their
+ * timestamps with to the {@link TimestampRenderer}.
+ */
+@JmhBenchmark
+@State(Scope.Benchmark)
+public class TimestampRendererBenchmark {
+
+    private static final String PATTERN = "MMM d, yyyy h:mm:ss,SSS aa";
+
+    private final SimpleDateFormat simpleDateFormat = new SimpleDateFormat(PATTERN);
+    private final TimestampRenderer renderer = TimestampRenderer.of(PATTERN);
+
+    @Benchmark
+    @Threads(4)
+    public String simpleDateFormat() {
+        synchronized (simpleDateFormat) {
+            return simpleDateFormat.format(new Date());
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String timestampRenderer() {
+        return renderer.format(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,58 @@
+package hudson.plugins.audit_trail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import org.junit.Test;
+
+public class TimestampRendererTest {
+
+    private static final String[] PATTERNS = {
+        "MMM d, yyyy h:mm:ss,SSS aa",
+        "yyyy-MM-dd HH:mm:ss:SSS",
+        "yyyy-MM-dd'T'HH:mm:ss.SSSZ",
+        "'at' HH:mm:ss [S] 'o''clock'",
+        "EEE, d MMM yyyy HH:mm:ss",
+        "dd/MM/yy",
+        "G yyyy GGGG GGGGG HH:mm:ss"
+    };
+
+    @Test
+    public void rendersLikeSimpleDateFormat() {
+        long start = 1_700_000_000_000L;
+        for (String pattern : PATTERNS) {
+            TimestampRenderer renderer = TimestampRenderer.of(pattern);
+            assertTrue(pattern, renderer.isCached());
+            SimpleDateFormat expected = new SimpleDateFormat(pattern);
+            for (long millis = start; millis < start + 3_000; millis += 7) {
+                assertEquals(pattern, expected.format(new Date(millis)), renderer.format(millis));
+            }
+            assertEquals(pattern, expected.format(new Date(-1)), renderer.format(-1));
+        }
+    }
+
+    @Test
+    public void patternsWithDifferentMeaningsAreRenderedLikeSimpleDateFormatToo() {
+        long millis = 1_700_000_123_045L;
+        for (String pattern : new String[] {"u yyyy", "ddd HH:mm:ss.SSS.SSS", "MMMMM", "HH:mm z"}) {
+            TimestampRenderer renderer = TimestampRenderer.of(pattern);
+            assertFalse(pattern, renderer.isCached());
+            assertEquals(pattern, new SimpleDateFormat(pattern).format(new Date(millis)), renderer.format(millis));
+        }
+    }
+
+    @Test
+    public void renderersAreSharedByPattern() {
+        assertSame(TimestampRenderer.of("yyyy-MM-dd HH:mm:ss:SSS"), TimestampRenderer.of("yyyy-MM-dd HH:mm:ss:SSS"));
+    }
+
+    @Test
+    public void invalidPatternsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> TimestampRenderer.of("yyyy-MM-dd HH:mm:ss:SSS b"));
+    }
+}
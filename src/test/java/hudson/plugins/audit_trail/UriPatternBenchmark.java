@@ -0,0 +1,59 @@
+package hudson.plugins.audit_trail;
+
+import static hudson.plugins.audit_trail.AuditTrailPlugin.DEFAULT_PATTERN;
+
+import java.util.regex.Pattern;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares matching the default audit pattern with and without the {@link KeywordPrefilter} over URIs resembling the
+ * traffic of a Jenkins controller: mostly static resources, polling and pages, seldom an audited action.
+ */
+@JmhBenchmark
+@State(Scope.Benchmark)
+public class UriPatternBenchmark {
+
+    static final String[] URIS = {
+        "/static/6a8c1e8b/jsbundles/vendors.js",
+        "/static/6a8c1e8b/jsbundles/app.js",
+        "/static/6a8c1e8b/css/responsive-grid.css",
+        "/adjuncts/6a8c1e8b/lib/layout/breadcrumbs.js",
+        "/images/svgs/logo.svg",
+        "/ajaxBuildQueue",
+        "/ajaxExecutors",
+        "/job/folder/job/pipeline/",
+        "/job/folder/job/pipeline/lastBuild/console",
+        "/job/folder/job/pipeline/42/wfapi/describe",
+        "/job/folder/job/pipeline/42/logText/progressiveHtml",
+        "/job/folder/job/pipeline/buildHistory/ajax",
+        "/job/folder/job/pipeline/api/json",
+        "/computer/agent-1/",
+        "/view/all/builds",
+        "/i18n/resourceBundle",
+        "/job/folder/job/pipeline/configSubmit",
+        "/job/folder/job/pipeline/42/stop",
+        "/job/folder/job/other/doDelete",
+        "/manage/configure"
+    };
+
+    private final Pattern pattern = Pattern.compile(DEFAULT_PATTERN);
+    private final PrefilteredPattern prefiltered = PrefilteredPattern.compile(DEFAULT_PATTERN);
+
+    @Benchmark
+    public void regexOnly(Blackhole blackhole) {
+        for (String uri : URIS) {
+            blackhole.consume(pattern.matcher(uri).matches());
+        }
+    }
+
+    @Benchmark
+    public void prefiltered(Blackhole blackhole) {
+        for (String uri : URIS) {
+            blackhole.consume(prefiltered.matches(uri));
+        }
+    }
+}